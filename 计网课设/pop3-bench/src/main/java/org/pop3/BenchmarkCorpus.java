@@ -0,0 +1,93 @@
+package org.pop3;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 基准测试语料
+ * 所有样本都由固定种子的SyntheticMailbox生成，每次运行、每台机器上逐字节相同，
+ * 解析器修改前后的测量结果可以直接比较。
+ */
+final class BenchmarkCorpus {
+    static final long SEED = 20240601L;    // 语料的随机种子，修改会使历史基线失效
+    static final int MESSAGES = 64;        // 每类语料的邮件数，基准方法在其中轮换
+
+    private BenchmarkCorpus() {
+    }
+
+    /**
+     * 语料类别
+     */
+    enum Kind {
+        PLAIN(SyntheticMailbox.Shape.PLAIN_TEXT, 4 * 1024),
+        QP(SyntheticMailbox.Shape.QUOTED_PRINTABLE, 8 * 1024),
+        BASE64(SyntheticMailbox.Shape.ATTACHMENT, 16 * 1024),
+        NESTED(SyntheticMailbox.Shape.NESTED_MULTIPART, 32 * 1024),
+        LARGE_ATTACHMENT(SyntheticMailbox.Shape.ATTACHMENT, 2 * 1024 * 1024);
+
+        final SyntheticMailbox.Shape shape;
+        final int size;
+
+        Kind(SyntheticMailbox.Shape shape, int size) {
+            this.shape = shape;
+            this.size = size;
+        }
+    }
+
+    /**
+     * 生成某类语料的邮箱，大小固定（σ=0）
+     * @param kind 语料类别
+     * @param count 邮件数
+     * @return 邮箱
+     */
+    static SyntheticMailbox mailbox(Kind kind, int count) {
+        return new SyntheticMailbox(SEED, count, kind.size, 0, kind.size, kind.shape);
+    }
+
+    /**
+     * 某类语料的全部邮件原始字节
+     */
+    static byte[][] messages(Kind kind) {
+        int count = kind == Kind.LARGE_ATTACHMENT ? 4 : MESSAGES;
+        SyntheticMailbox mailbox = mailbox(kind, count);
+        byte[][] messages = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            messages[i] = mailbox.getMessage(i + 1);
+        }
+        return messages;
+    }
+
+    /**
+     * 从全部结构的语料中收集指定邮件头的值（已展开折行）
+     * @param name 邮件头名称，如"Subject"
+     * @return 邮件头值列表
+     */
+    static List<String> headerValues(String name) {
+        SyntheticMailbox mailbox = new SyntheticMailbox(SEED, MESSAGES);
+        String prefix = name.toLowerCase() + ":";
+        List<String> values = new ArrayList<>();
+        for (int i = 1; i <= mailbox.getCount(); i++) {
+            String text = new String(mailbox.getMessage(i), StandardCharsets.ISO_8859_1);
+            for (String line : text.substring(0, text.indexOf("\r\n\r\n")).split("\r\n(?![ \t])")) {
+                if (line.toLowerCase().startsWith(prefix)) {
+                    values.add(line.substring(prefix.length()).replace("\r\n", "").trim());
+                }
+            }
+        }
+        return values;
+    }
+
+    /**
+     * 从QP语料中提取正文（邮件头之后的全部内容）
+     * @return 各邮件的QP编码正文
+     */
+    static List<String> quotedPrintableBodies() {
+        List<String> bodies = new ArrayList<>();
+        for (byte[] message : messages(Kind.QP)) {
+            String text = new String(message, StandardCharsets.ISO_8859_1);
+            bodies.add(text.substring(text.indexOf("\r\n\r\n") + 4));
+        }
+        return bodies;
+    }
+}
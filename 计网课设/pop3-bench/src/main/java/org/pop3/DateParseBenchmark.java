@@ -0,0 +1,31 @@
+package org.pop3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Date;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 邮件日期解析的基准测试
+ * 标准格式在第一个模式即可匹配；省略星期或时区的格式需要先尝试失败的模式
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class DateParseBenchmark {
+    @Param({
+            "Wed, 27 Oct 2021 14:30:00 +0800",
+            "27 Oct 2021 14:30:00 +0800",
+            "Wed, 27 Oct 2021 14:30:00",
+            "not a date"
+    })
+    public String date;
+
+    @Benchmark
+    public Date parseDate() {
+        return EmailMessage.parseDate(date);
+    }
+}
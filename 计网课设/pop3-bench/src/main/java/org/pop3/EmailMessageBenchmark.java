@@ -0,0 +1,47 @@
+package org.pop3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * EmailMessage构造（完整解析）的基准测试
+ * 按语料类别分别测量：纯文本、QP、base64附件、多层嵌套multipart和2MB大附件；
+ * 字节构造与字符串构造两条路径分开测量。每次调用在同类语料的不同邮件之间轮换。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class EmailMessageBenchmark {
+    @Param({"PLAIN", "QP", "BASE64", "NESTED", "LARGE_ATTACHMENT"})
+    public String corpus;
+
+    private byte[][] messages;
+    private String[] strings;
+    private int next;
+
+    @Setup
+    public void setup() {
+        messages = BenchmarkCorpus.messages(BenchmarkCorpus.Kind.valueOf(corpus));
+        strings = new String[messages.length];
+        for (int i = 0; i < messages.length; i++) {
+            strings[i] = new String(messages[i], StandardCharsets.UTF_8);
+        }
+    }
+
+    @Benchmark
+    public EmailMessage parseBytes() {
+        int i = next++ % messages.length;
+        return new EmailMessage(i + 1, messages[i]);
+    }
+
+    @Benchmark
+    public EmailMessage parseString() {
+        int i = next++ % strings.length;
+        return new EmailMessage(i + 1, strings[i]);
+    }
+}
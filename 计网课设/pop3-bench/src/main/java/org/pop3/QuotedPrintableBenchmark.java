@@ -0,0 +1,50 @@
+package org.pop3;
+
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Quoted-Printable解码的基准测试：整段正文解码为字符串（decodeQuotedPrintable）和以流的方式解码为字节
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class QuotedPrintableBenchmark {
+    private String[] bodies;
+    private byte[][] encoded;
+    private final ByteArrayOutputStream sink = new ByteArrayOutputStream();
+    private int next;
+
+    @Setup
+    public void setup() {
+        List<String> list = BenchmarkCorpus.quotedPrintableBodies();
+        bodies = list.toArray(new String[0]);
+        encoded = new byte[bodies.length][];
+        for (int i = 0; i < bodies.length; i++) {
+            encoded[i] = bodies[i].getBytes(StandardCharsets.ISO_8859_1);
+        }
+    }
+
+    @Benchmark
+    public String decodeBody() {
+        return EmailMessage.decodeQuotedPrintable(bodies[next++ % bodies.length], "UTF-8");
+    }
+
+    @Benchmark
+    public int decodeStream() throws IOException {
+        byte[] data = encoded[next++ % encoded.length];
+        sink.reset();
+        QuotedPrintableDecodingOutputStream decoder = new QuotedPrintableDecodingOutputStream(sink);
+        decoder.write(data, 0, data.length);
+        decoder.finish();
+        return sink.size();
+    }
+}
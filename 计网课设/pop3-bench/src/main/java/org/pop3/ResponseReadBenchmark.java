@@ -0,0 +1,78 @@
+package org.pop3;
+
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * RETR响应读取循环的基准测试
+ * readLoop在内存中重放线路格式数据，只测量POP3LineReader的分行、字节填充还原和拷贝，与retrieveMessage的读取循环相同；
+ * retrieveOverLoopback经本机回环连接从模拟服务器下载，包含套接字读写和命令往返。
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class ResponseReadBenchmark {
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    @Param({"PLAIN", "NESTED", "LARGE_ATTACHMENT"})
+    public String corpus;
+
+    private byte[][] wire;          // 线路格式：状态行之后的数据部分，含结束行
+    private MockPOP3Server server;
+    private POP3SSLClient client;
+    private int count;
+    private int next;
+
+    @Setup
+    public void setup() throws IOException {
+        BenchmarkCorpus.Kind kind = BenchmarkCorpus.Kind.valueOf(corpus);
+        count = kind == BenchmarkCorpus.Kind.LARGE_ATTACHMENT ? 4 : BenchmarkCorpus.MESSAGES;
+        SyntheticMailbox mailbox = BenchmarkCorpus.mailbox(kind, count);
+        wire = new byte[count][];
+        for (int i = 0; i < count; i++) {
+            byte[] data = mailbox.getWireMessage(i + 1);
+            wire[i] = new byte[data.length + 3];
+            System.arraycopy(data, 0, wire[i], 0, data.length);
+            wire[i][data.length] = '.';
+            wire[i][data.length + 1] = '\r';
+            wire[i][data.length + 2] = '\n';
+        }
+
+        server = new MockPOP3Server(mailbox, false).start();
+        client = server.createClient();
+        if (!client.connect() || !client.login(server.getUsername(), server.getPassword())) {
+            throw new IOException("无法登录模拟服务器");
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        client.quit();
+        server.close();
+    }
+
+    @Benchmark
+    public int readLoop() throws IOException {
+        POP3LineReader reader = new POP3LineReader(new ByteArrayInputStream(wire[next++ % count]));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        int length;
+        while ((length = reader.readDataLine()) >= 0) {
+            out.write(reader.getBuffer(), reader.getLineOffset(), length);
+            out.write(CRLF, 0, CRLF.length);
+        }
+        return out.size();
+    }
+
+    @Benchmark
+    public void retrieveOverLoopback(Blackhole blackhole) {
+        blackhole.consume(client.retrieveMessageBytes(next++ % count + 1));
+    }
+}
@@ -0,0 +1,48 @@
+package org.pop3;
+
+/**
+ * 邮箱账户配置类
+ * 描述一个需要收取的邮箱：服务器、端口、是否使用SSL以及登录凭证
+ */
+public class AccountProfile {
+    private final String server;     // 服务器地址
+    private final int port;          // 服务器端口
+    private final boolean useSSL;    // 是否使用SSL
+    private final String username;   // 用户名
+    private final String password;   // 密码或授权码
+
+    /**
+     * 构造函数
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param useSSL 是否使用SSL加密
+     * @param username 用户名
+     * @param password 密码或授权码
+     */
+    public AccountProfile(String server, int port, boolean useSSL, String username, String password) {
+        this.server = server;
+        this.port = port;
+        this.useSSL = useSSL;
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * 创建该账户的客户端实例
+     * @return 未连接的客户端
+     */
+    public POP3SSLClient createClient() {
+        return new POP3SSLClient(server, port, useSSL);
+    }
+
+    public String getServer() { return server; }
+    public int getPort() { return port; }
+    public boolean isUseSSL() { return useSSL; }
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+
+    @Override
+    public String toString() {
+        return username + "@" + server + ":" + port;
+    }
+}
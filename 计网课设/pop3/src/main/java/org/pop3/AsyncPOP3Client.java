@@ -0,0 +1,272 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 异步POP3客户端
+ * 在POP3SSLClient之上提供返回CompletableFuture的接口。每个会话有一个有序执行器，
+ * 命令按提交顺序在同一个线程中执行，调用方可以一次提交多个操作再组合结果，而无需自己创建线程。
+ * 失败以异常完成Future：网络异常为IOException，服务器拒绝为POP3Exception，登录失败为POP3AuthenticationException。
+ * 取消尚未开始的操作会将其跳过；已经开始的操作会执行完毕，但结果被丢弃。
+ * 邮件解析在公共线程池中进行，不占用会话的执行器，下一条命令可以与解析同时进行。
+ */
+public class AsyncPOP3Client implements AutoCloseable {
+    private final POP3SSLClient client;
+    private final ExecutorService executor;   // 会话的有序执行器
+    private final Executor parseExecutor;     // 解析邮件使用的执行器
+
+    /**
+     * 会话中执行的操作
+     */
+    private interface SessionTask<T> {
+        T run() throws IOException;
+    }
+
+    /**
+     * 构造函数
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param useSSL 是否使用SSL加密
+     */
+    public AsyncPOP3Client(String server, int port, boolean useSSL) {
+        this(new POP3SSLClient(server, port, useSSL));
+    }
+
+    /**
+     * 构造函数，包装一个已有的客户端
+     * 包装后不应再直接调用该客户端的方法
+     * @param client 客户端
+     */
+    public AsyncPOP3Client(POP3SSLClient client) {
+        this(client, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * 构造函数
+     * @param client 客户端
+     * @param parseExecutor 解析邮件使用的执行器
+     */
+    public AsyncPOP3Client(POP3SSLClient client, Executor parseExecutor) {
+        this.client = client;
+        this.parseExecutor = parseExecutor;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "pop3-async");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 连接到服务器
+     * @return 以服务器能力完成的Future
+     */
+    public CompletableFuture<POP3Capabilities> connect() {
+        return submit(() -> {
+            if (!client.connect()) {
+                throw new IOException("连接服务器失败");
+            }
+            return client.getCapabilities();
+        });
+    }
+
+    /**
+     * 登录
+     * @param username 用户名
+     * @param password 密码或授权码
+     * @return 登录成功后完成的Future
+     */
+    public CompletableFuture<Void> login(String username, String password) {
+        return submit(() -> {
+            if (!client.login(username, password)) {
+                if (!client.isConnected()) {
+                    throw new IOException("登录时连接断开");
+                }
+                throw new POP3AuthenticationException("用户名或密码错误");
+            }
+            return null;
+        });
+    }
+
+    /**
+     * 获取邮箱统计信息
+     * @return 以[邮件数, 总大小]完成的Future
+     */
+    public CompletableFuture<int[]> stat() {
+        return submit(() -> {
+            String[] parts = executeOk("STAT").getStatusLine().split(" ");
+            try {
+                return new int[]{Integer.parseInt(parts[1]), Integer.parseInt(parts[2])};
+            } catch (ArrayIndexOutOfBoundsException | NumberFormatException e) {
+                throw new IOException("STAT响应格式错误: " + String.join(" ", parts));
+            }
+        });
+    }
+
+    /**
+     * 获取邮件列表
+     * @return 以序号到大小的映射（按序号顺序）完成的Future
+     */
+    public CompletableFuture<Map<Integer, Long>> list() {
+        return submit(() -> {
+            Map<Integer, Long> sizes = new LinkedHashMap<>();
+            for (String line : executeOk("LIST").getLines()) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length >= 2) {
+                    sizes.put(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+                }
+            }
+            return sizes;
+        });
+    }
+
+    /**
+     * 获取唯一标识列表
+     * @return 以序号到唯一标识的映射（按序号顺序）完成的Future
+     */
+    public CompletableFuture<Map<Integer, String>> uidl() {
+        return submit(() -> {
+            Map<Integer, String> uidlMap = new LinkedHashMap<>();
+            for (String line : executeOk("UIDL").getLines()) {
+                String[] parts = line.trim().split("\\s+");
+                if (parts.length >= 2) {
+                    uidlMap.put(Integer.parseInt(parts[0]), parts[1]);
+                }
+            }
+            return uidlMap;
+        });
+    }
+
+    /**
+     * 批量获取邮件头摘要（TOP n 0，支持时以流水线方式发送）
+     * @param messageNumbers 邮件序号列表
+     * @return 以邮件头列表完成的Future，服务器拒绝的邮件不包含在内
+     */
+    public CompletableFuture<List<MessageHeader>> headers(List<Integer> messageNumbers) {
+        return submit(() -> {
+            List<String> commands = new ArrayList<>(messageNumbers.size());
+            for (int number : messageNumbers) {
+                commands.add("TOP " + number + " 0");
+            }
+            List<MessageHeader> headers = new ArrayList<>();
+            client.executeBatch(commands, (index, response) -> {
+                if (response.isOk()) {
+                    headers.add(MessageHeader.parse(messageNumbers.get(index), response.getLines()));
+                }
+            });
+            return headers;
+        });
+    }
+
+    /**
+     * 获取邮件原始字节
+     * @param messageNumber 邮件序号
+     * @return 以邮件原始字节（各行以CRLF结尾）完成的Future
+     */
+    public CompletableFuture<byte[]> retrieve(int messageNumber) {
+        return submit(() -> executeOk("RETR " + messageNumber).getData());
+    }
+
+    /**
+     * 获取并解析邮件
+     * 下载在会话执行器中进行，解析在解析执行器中进行
+     * @param messageNumber 邮件序号
+     * @return 以解析后的邮件完成的Future
+     */
+    public CompletableFuture<EmailMessage> retrieveMessage(int messageNumber) {
+        return retrieve(messageNumber).thenApplyAsync(bytes -> new EmailMessage(messageNumber, bytes), parseExecutor);
+    }
+
+    /**
+     * 标记删除邮件
+     * @param messageNumber 邮件序号
+     * @return 标记成功后完成的Future
+     */
+    public CompletableFuture<Void> delete(int messageNumber) {
+        return submit(() -> {
+            executeOk("DELE " + messageNumber);
+            return null;
+        });
+    }
+
+    /**
+     * 执行任意命令，不检查响应状态
+     * @param command 命令内容
+     * @return 以服务器响应完成的Future
+     */
+    public CompletableFuture<POP3Response> execute(String command) {
+        return submit(() -> executeOne(command));
+    }
+
+    /**
+     * 退出会话，标记删除的邮件在此时被删除
+     * @return 会话结束后完成的Future
+     */
+    public CompletableFuture<Void> quit() {
+        return submit(() -> {
+            client.quit();
+            return null;
+        });
+    }
+
+    /**
+     * 获取底层客户端
+     * @return 客户端
+     */
+    public POP3SSLClient getClient() {
+        return client;
+    }
+
+    /**
+     * 在会话执行器中执行操作
+     * 操作开始前检查Future是否已被取消，已取消则跳过
+     */
+    private <T> CompletableFuture<T> submit(SessionTask<T> task) {
+        CompletableFuture<T> future = new CompletableFuture<>();
+        try {
+            executor.execute(() -> {
+                if (future.isDone()) {
+                    return;  // 已取消
+                }
+                try {
+                    future.complete(task.run());
+                } catch (Throwable e) {
+                    future.completeExceptionally(e);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            future.completeExceptionally(new IOException("客户端已关闭"));
+        }
+        return future;
+    }
+
+    private POP3Response executeOne(String command) throws IOException {
+        return client.executeBatch(Collections.singletonList(command)).get(0);
+    }
+
+    /**
+     * 执行一条命令，-ERR响应时抛出POP3Exception
+     */
+    private POP3Response executeOk(String command) throws IOException {
+        POP3Response response = executeOne(command);
+        if (!response.isOk()) {
+            throw POP3Exception.of(response);
+        }
+        return response;
+    }
+
+    /**
+     * 退出会话并停止执行器，已提交的操作会先执行完毕
+     */
+    @Override
+    public void close() {
+        quit();
+        executor.shutdown();
+        try {
+            executor.awaitTermination(10, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,178 @@
+package org.pop3;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+
+/**
+ * 附件提取器
+ * 用MimeStreamParser单遍扫描邮件流，遇到附件时打开文件，把正文片段经AttachmentWriter边解码边写入，
+ * 整封邮件和单个附件都不会完整地放在内存中，堆占用只有几个固定大小的缓冲区。
+ * 可以提取一封邮件的全部附件，也可以配合retrieveMessageStream()逐封提取整个邮箱的附件。
+ */
+public class AttachmentExtractor implements MimeStreamParser.Handler {
+    private final File targetDirectory;                              // 附件保存目录
+    private final MimeStreamParser parser = new MimeStreamParser(this);
+    private final Deque<EmailMessage.EmailPart> openParts = new ArrayDeque<>(); // 尚未结束的部分（不含邮件本身）
+
+    private File directory;            // 当前邮件的附件保存目录
+    private List<File> files;          // 当前邮件已保存的附件
+    private File currentFile;          // 正在写入的附件
+    private FileChannel channel;
+    private AttachmentWriter writer;
+
+    /**
+     * 构造函数
+     * @param targetDirectory 附件保存目录，不存在时在保存第一个附件时创建
+     */
+    public AttachmentExtractor(File targetDirectory) {
+        this.targetDirectory = targetDirectory;
+    }
+
+    /**
+     * 提取一封邮件的全部附件到保存目录
+     * @param message 原始邮件字节流
+     * @return 已保存的附件文件（按邮件中的顺序）
+     * @throws IOException 读取或写入失败，未写完的附件文件会被删除
+     */
+    public List<File> extract(InputStream message) throws IOException {
+        return extract(message, targetDirectory);
+    }
+
+    /**
+     * 提取邮箱中所有邮件的附件
+     * 每封邮件通过retrieveMessageStream()边接收边解析，附件保存在保存目录下的message_序号子目录中
+     * @param client 已登录的客户端
+     * @return 邮件序号到已保存附件的映射，只包含有附件的邮件
+     * @throws IOException 获取邮件或写入失败
+     */
+    public Map<Integer, List<File>> extractMailbox(POP3SSLClient client) throws IOException {
+        int[] stat = client.getMailboxStat();
+        if (stat == null) {
+            throw new IOException("获取邮箱状态失败");
+        }
+        List<Integer> messageNumbers = new ArrayList<>(stat[0]);
+        for (int i = 1; i <= stat[0]; i++) {
+            messageNumbers.add(i);
+        }
+        return extractMailbox(client, messageNumbers);
+    }
+
+    /**
+     * 提取指定邮件的附件
+     * @param client 已登录的客户端
+     * @param messageNumbers 邮件序号列表
+     * @return 邮件序号到已保存附件的映射，只包含有附件的邮件
+     * @throws IOException 获取邮件或写入失败
+     */
+    public Map<Integer, List<File>> extractMailbox(POP3SSLClient client, List<Integer> messageNumbers) throws IOException {
+        Map<Integer, List<File>> result = new LinkedHashMap<>();
+        for (int messageNumber : messageNumbers) {
+            InputStream stream = client.retrieveMessageStream(messageNumber);
+            if (stream == null) {
+                throw new IOException("获取邮件 #" + messageNumber + " 失败");
+            }
+            try (InputStream message = stream) {
+                List<File> saved = extract(message, new File(targetDirectory, "message_" + messageNumber));
+                if (!saved.isEmpty()) {
+                    result.put(messageNumber, saved);
+                }
+            }
+        }
+        return result;
+    }
+
+    private List<File> extract(InputStream message, File directory) throws IOException {
+        this.directory = directory;
+        this.files = new ArrayList<>();
+        openParts.clear();
+        try {
+            parser.parse(message);
+        } finally {
+            if (channel != null) {
+                // 解析中途失败，删除未写完的附件
+                closeChannel();
+                currentFile.delete();
+            }
+        }
+        return files;
+    }
+
+    @Override
+    public void startPart(int depth) {
+        if (depth > 0) {
+            openParts.push(new EmailMessage.EmailPart());
+        }
+    }
+
+    @Override
+    public void header(String name, String value) {
+        if (!openParts.isEmpty()) {
+            EmailMessage.parsePartHeaderLine(openParts.peek(), EmailMessage.headerText(name + ": " + value));
+        }
+    }
+
+    @Override
+    public void endHeaders() throws IOException {
+        EmailMessage.EmailPart part = openParts.peek();
+        if (part == null || !part.isAttachment() || (part.isMultipart() && part.getBoundary() != null)) {
+            return;
+        }
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("无法创建目录: " + directory.getAbsolutePath());
+        }
+        currentFile = uniqueFile(part.getFileName() != null ? part.getFileName() : "attachment_" + (files.size() + 1));
+        channel = FileChannel.open(currentFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING);
+        writer = new AttachmentWriter(channel, part.getTransferEncoding());
+    }
+
+    @Override
+    public void body(byte[] buffer, int offset, int length) throws IOException {
+        if (writer != null) {
+            writer.write(buffer, offset, length);
+        }
+    }
+
+    @Override
+    public void endPart() throws IOException {
+        if (openParts.isEmpty()) {
+            return;
+        }
+        openParts.pop();
+        if (writer == null) {
+            return;
+        }
+        writer.finish();
+        closeChannel();
+        files.add(currentFile);
+    }
+
+    private void closeChannel() throws IOException {
+        FileChannel open = channel;
+        channel = null;
+        writer = null;
+        open.close();
+    }
+
+    /**
+     * 生成附件文件，与同一封邮件中已保存的附件重名时加序号，文件名中的路径分隔符等字符替换为下划线
+     */
+    private File uniqueFile(String fileName) {
+        String safeName = fileName.replaceAll("[\\\\/:*?\"<>|\\p{Cntrl}]", "_");
+        if (safeName.isEmpty() || safeName.equals(".") || safeName.equals("..")) {
+            safeName = "attachment_" + (files.size() + 1);
+        }
+        File file = new File(directory, safeName);
+        int dot = safeName.lastIndexOf('.');
+        String stem = dot > 0 ? safeName.substring(0, dot) : safeName;
+        String extension = dot > 0 ? safeName.substring(dot) : "";
+        for (int n = 2; files.contains(file); n++) {
+            file = new File(directory, stem + " (" + n + ")" + extension);
+        }
+        return file;
+    }
+}
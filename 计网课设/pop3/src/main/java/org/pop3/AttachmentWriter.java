@@ -0,0 +1,66 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.WritableByteChannel;
+
+/**
+ * 附件写入器
+ * 按传输编码边接收编码数据边解码（DecodingOutputStream），解码结果经固定大小的缓冲区写入通道（通常是FileChannel），
+ * 内存占用与附件大小无关。
+ */
+class AttachmentWriter {
+    private final DecodingOutputStream decoder;
+    private long written;              // 已写入的解码后字节数
+
+    /**
+     * 构造函数
+     * @param channel 目标通道
+     * @param transferEncoding 传输编码，null按原样写入
+     */
+    AttachmentWriter(WritableByteChannel channel, String transferEncoding) {
+        OutputStream sink = new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                ByteBuffer buffer = ByteBuffer.wrap(b, off, len);
+                while (buffer.hasRemaining()) {
+                    written += channel.write(buffer);
+                }
+            }
+        };
+        this.decoder = DecodingOutputStream.forEncoding(sink, transferEncoding);
+    }
+
+    /**
+     * 写入一段编码数据
+     * @param buffer 缓冲区
+     * @param offset 起始位置
+     * @param length 长度
+     * @throws IOException 写入失败
+     */
+    void write(byte[] buffer, int offset, int length) throws IOException {
+        decoder.write(buffer, offset, length);
+    }
+
+    /**
+     * 解码剩余数据并全部写入通道，不关闭通道
+     * @throws IOException 写入失败
+     */
+    void finish() throws IOException {
+        decoder.finish();
+    }
+
+    /**
+     * 获取已写入的解码后字节数
+     * @return 字节数
+     */
+    long getWritten() {
+        return written;
+    }
+}
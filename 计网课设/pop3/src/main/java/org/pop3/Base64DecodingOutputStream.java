@@ -0,0 +1,87 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Base64解码输出流
+ * 用256项的查找表逐字节解码，每凑满4个字符写出3个字节；按RFC 2045跳过字母表以外的字符（包括换行和空白），
+ * 不需要预先去掉空白。'='结束当前的4字符组，之后的数据作为新的编码数据继续解码。
+ */
+public class Base64DecodingOutputStream extends DecodingOutputStream {
+    private static final byte SKIP = -1;    // 字母表以外的字符
+    private static final byte PAD = -2;     // 填充符'='
+    private static final byte[] DECODE = new byte[256]; // 字符到6位值的查找表
+
+    static {
+        String alphabet = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789+/";
+        Arrays.fill(DECODE, SKIP);
+        for (int i = 0; i < alphabet.length(); i++) {
+            DECODE[alphabet.charAt(i)] = (byte) i;
+        }
+        DECODE['='] = PAD;
+    }
+
+    private int bits;      // 当前4字符组已读入的位
+    private int quantum;   // 当前4字符组已读入的字符数
+
+    /**
+     * 构造函数
+     * @param out 下层输出流
+     */
+    public Base64DecodingOutputStream(OutputStream out) {
+        this(out, DEFAULT_BUFFER_SIZE);
+    }
+
+    Base64DecodingOutputStream(OutputStream out, int bufferSize) {
+        super(out, bufferSize);
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        int bits = this.bits;
+        int quantum = this.quantum;
+        for (int i = offset; i < offset + length; i++) {
+            int value = DECODE[data[i] & 0xFF];
+            if (value >= 0) {
+                bits = bits << 6 | value;
+                if (++quantum == 4) {
+                    put((byte) (bits >> 16));
+                    put((byte) (bits >> 8));
+                    put((byte) bits);
+                    bits = 0;
+                    quantum = 0;
+                }
+            } else if (value == PAD && quantum > 0) {
+                this.bits = bits;
+                this.quantum = quantum;
+                endQuantum();
+                bits = 0;
+                quantum = 0;
+            }
+        }
+        this.bits = bits;
+        this.quantum = quantum;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        endQuantum();
+        flushBuffer();
+    }
+
+    /**
+     * 结束不完整的4字符组：2个字符对应1个字节，3个字符对应2个字节，1个字符不足一个字节，丢弃
+     */
+    private void endQuantum() throws IOException {
+        if (quantum == 2) {
+            put((byte) (bits >> 4));
+        } else if (quantum == 3) {
+            put((byte) (bits >> 10));
+            put((byte) (bits >> 2));
+        }
+        bits = 0;
+        quantum = 0;
+    }
+}
@@ -0,0 +1,125 @@
+package org.pop3;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * multipart分隔行扫描器
+ * 用Boyer-Moore-Horspool算法在字节数组或ByteBuffer中查找"--boundary"，按RFC 2046只接受位于行首的匹配。
+ * 实际查找的模式是"\n--boundary"，跳转表在构造时按模式预先计算，每次比较失败时按窗口末字节跳过，
+ * 在不含'-'的base64正文中大多数位置都会整段跳过，扫描是亚线性的。只返回位置，不复制数据；
+ * 分隔行之后是否为"--"结束标记或空白由调用方判断。
+ */
+public class BoundaryScanner {
+    private final byte[] pattern;  // "\n--boundary"
+    private final int[] skip = new int[256]; // 窗口末字节对应的跳转距离
+
+    /**
+     * 构造函数
+     * @param boundary Content-Type中的boundary参数（不含前导的"--"）
+     */
+    public BoundaryScanner(String boundary) {
+        byte[] delimiter = ("--" + boundary).getBytes(StandardCharsets.ISO_8859_1);
+        pattern = new byte[delimiter.length + 1];
+        pattern[0] = '\n';
+        System.arraycopy(delimiter, 0, pattern, 1, delimiter.length);
+
+        int last = pattern.length - 1;
+        for (int i = 0; i < skip.length; i++) {
+            skip[i] = pattern.length;
+        }
+        for (int i = 0; i < last; i++) {
+            skip[pattern[i] & 0xFF] = last - i;
+        }
+    }
+
+    /**
+     * 获取分隔行前缀"--boundary"的长度
+     * @return 长度
+     */
+    public int getDelimiterLength() {
+        return pattern.length - 1;
+    }
+
+    /**
+     * 在字节数组中查找下一个位于行首的分隔行
+     * @param data 数据
+     * @param from 起始位置，必须位于行首
+     * @param to 结束位置（不含）
+     * @return 分隔行"--boundary"的起始位置，找不到时返回-1
+     */
+    public int find(byte[] data, int from, int to) {
+        if (matches(data, from, to)) {
+            return from;
+        }
+        int last = pattern.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (data[i + j] == pattern[j]) {
+                if (j == 0) {
+                    return i + 1;
+                }
+                j--;
+            }
+            i += skip[data[i + last] & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * 在ByteBuffer中查找下一个位于行首的分隔行，使用绝对位置读取，不改变缓冲区的position
+     * @param buffer 数据
+     * @param from 起始位置，必须位于行首
+     * @param to 结束位置（不含）
+     * @return 分隔行"--boundary"的起始位置，找不到时返回-1
+     */
+    public int find(ByteBuffer buffer, int from, int to) {
+        if (buffer.hasArray()) {
+            int base = buffer.arrayOffset();
+            int index = find(buffer.array(), base + from, base + to);
+            return index < 0 ? -1 : index - base;
+        }
+        if (to - from >= pattern.length - 1) {
+            int k = 1;
+            while (k < pattern.length && buffer.get(from + k - 1) == pattern[k]) {
+                k++;
+            }
+            if (k == pattern.length) {
+                return from;
+            }
+        }
+        int last = pattern.length - 1;
+        int i = from;
+        while (i + last < to) {
+            int j = last;
+            while (buffer.get(i + j) == pattern[j]) {
+                if (j == 0) {
+                    return i + 1;
+                }
+                j--;
+            }
+            i += skip[buffer.get(i + last) & 0xFF];
+        }
+        return -1;
+    }
+
+    /**
+     * 判断指定位置是否以"--boundary"开头
+     * @param data 数据
+     * @param from 位置
+     * @param to 结束位置（不含）
+     * @return 是否匹配
+     */
+    public boolean matches(byte[] data, int from, int to) {
+        if (to - from < pattern.length - 1) {
+            return false;
+        }
+        for (int k = 1; k < pattern.length; k++) {
+            if (data[from + k - 1] != pattern[k]) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,198 @@
+package org.pop3;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 服务器能力缓存
+ * 按"服务器:端口"保存CAPA结果，并记录每个账户最近一次登录的时间，
+ * 使后续会话无需额外往返即可选择流水线、TOP、SASL等快速路径，并遵守LOGIN-DELAY限制。
+ * 缓存文件与pop3client.properties位于同一目录。
+ * 更新只修改内存中的数据，写盘延迟SAVE_DELAY毫秒在后台线程中进行并合并期间的所有更新，
+ * 并行登录不会因为逐次重写文件而互相等待；进程退出时写出尚未保存的更新。
+ */
+public class CapabilityCache {
+    private static final String CACHE_FILE = "pop3capabilities.properties";
+    private static final long DEFAULT_TTL = 24L * 60 * 60 * 1000; // 能力缓存有效期：24小时
+    private static final long SAVE_DELAY = 1000;                   // 延迟写盘的时间（毫秒）
+    private static final Set<CapabilityCache> UNSAVED = Collections.synchronizedSet(new HashSet<>()); // 有未保存更新的缓存
+    private static final ScheduledExecutorService SAVER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "pop3-capability-cache");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private static final CapabilityCache DEFAULT = new CapabilityCache(new File(CACHE_FILE), DEFAULT_TTL);
+
+    static {
+        Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+            for (CapabilityCache cache : new ArrayList<>(UNSAVED)) {
+                cache.flush();
+            }
+        }, "pop3-capability-cache-flush"));
+    }
+
+    private final File cacheFile;
+    private final long ttlMillis;
+    private final Properties properties = new Properties();
+    private final Object saveLock = new Object();  // 保证快照按顺序写盘
+    private boolean savePending;                   // 是否已安排写盘
+
+    /**
+     * 构造函数
+     * @param cacheFile 缓存文件
+     * @param ttlMillis 能力缓存有效期（毫秒）
+     */
+    public CapabilityCache(File cacheFile, long ttlMillis) {
+        this.cacheFile = cacheFile;
+        this.ttlMillis = ttlMillis;
+        loadCache();
+    }
+
+    /**
+     * 获取默认的共享缓存实例
+     * @return 默认缓存
+     */
+    public static CapabilityCache getDefault() {
+        return DEFAULT;
+    }
+
+    // 加载缓存
+    private void loadCache() {
+        if (cacheFile.exists()) {
+            try (FileInputStream fis = new FileInputStream(cacheFile)) {
+                properties.load(fis);
+            } catch (IOException e) {
+                System.err.println("加载能力缓存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    // 安排延迟保存，调用时需持有对象锁
+    private void saveCache() {
+        if (!savePending) {
+            savePending = true;
+            UNSAVED.add(this);
+            SAVER.schedule(this::flush, SAVE_DELAY, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    /**
+     * 立即把尚未保存的更新写入缓存文件
+     * 写盘在对象锁之外进行，不阻塞并发的查询和登录记录
+     */
+    public void flush() {
+        synchronized (saveLock) {
+            Properties snapshot;
+            synchronized (this) {
+                if (!savePending) {
+                    return;
+                }
+                savePending = false;
+                UNSAVED.remove(this);
+                snapshot = (Properties) properties.clone();
+            }
+            try (FileOutputStream fos = new FileOutputStream(cacheFile)) {
+                snapshot.store(fos, "POP3 Server Capability Cache");
+            } catch (IOException e) {
+                System.err.println("保存能力缓存失败: " + e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * 获取缓存的服务器能力
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @return 未过期的能力集，不存在或已过期时返回null
+     */
+    public synchronized POP3Capabilities get(String server, int port) {
+        String key = serverKey(server, port);
+        String lines = properties.getProperty(key + ".capa");
+        long fetchedAt = parseLong(properties.getProperty(key + ".time"));
+        if (lines == null || System.currentTimeMillis() - fetchedAt > ttlMillis) {
+            return null;
+        }
+        return new POP3Capabilities(lines.isEmpty() ?
+                Collections.emptyList() : Arrays.asList(lines.split("\n")));
+    }
+
+    /**
+     * 保存服务器能力
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param capabilities 能力集
+     */
+    public synchronized void put(String server, int port, POP3Capabilities capabilities) {
+        String key = serverKey(server, port);
+        properties.setProperty(key + ".capa", String.join("\n", capabilities.getRawLines()));
+        properties.setProperty(key + ".time", String.valueOf(System.currentTimeMillis()));
+        saveCache();
+    }
+
+    /**
+     * 删除服务器能力缓存
+     * @param server 服务器地址
+     * @param port 服务器端口
+     */
+    public synchronized void invalidate(String server, int port) {
+        String key = serverKey(server, port);
+        properties.remove(key + ".capa");
+        properties.remove(key + ".time");
+        saveCache();
+    }
+
+    /**
+     * 记录一次登录
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param username 用户名
+     */
+    public synchronized void recordLogin(String server, int port, String username) {
+        properties.setProperty(serverKey(server, port) + "." + username + ".lastLogin",
+                String.valueOf(System.currentTimeMillis()));
+        saveCache();
+    }
+
+    /**
+     * 计算距离允许再次登录还需等待的时间
+     * 依据缓存的LOGIN-DELAY能力和该账户最近一次登录时间
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param username 用户名
+     * @return 剩余等待时间（毫秒），无需等待时返回0
+     */
+    public synchronized long getRemainingLoginDelay(String server, int port, String username) {
+        POP3Capabilities capabilities = get(server, port);
+        if (capabilities == null || capabilities.getLoginDelay() <= 0) {
+            return 0;
+        }
+        long lastLogin = parseLong(properties.getProperty(
+                serverKey(server, port) + "." + username + ".lastLogin"));
+        long elapsed = System.currentTimeMillis() - lastLogin;
+        return Math.max(0, capabilities.getLoginDelay() * 1000L - elapsed);
+    }
+
+    /**
+     * 生成服务器键
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @return 形如"pop.163.com:995"的键
+     */
+    private static String serverKey(String server, int port) {
+        return server.toLowerCase() + ":" + port;
+    }
+
+    private static long parseLong(String text) {
+        if (text == null) {
+            return 0;
+        }
+        try {
+            return Long.parseLong(text);
+        } catch (NumberFormatException e) {
+            return 0;
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package org.pop3;
 
 import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Properties;
 
 public class ConfigManager {
@@ -92,4 +94,70 @@ public class ConfigManager {
     public void setLastViewedMessage(int messageNumber) {
         properties.setProperty("lastViewed", String.valueOf(messageNumber));
     }
-}
\ No newline at end of file
+
+    // 获取多账户配置：account.1.server、account.1.username、account.1.password等，序号从1开始连续编号
+    public List<AccountProfile> getAccounts() {
+        List<AccountProfile> accounts = new ArrayList<>();
+        for (int i = 1; properties.getProperty("account." + i + ".username") != null; i++) {
+            String prefix = "account." + i + ".";
+            boolean useSSL = Boolean.parseBoolean(properties.getProperty(prefix + "useSSL", "true"));
+            accounts.add(new AccountProfile(
+                    properties.getProperty(prefix + "server", getServer()),
+                    Integer.parseInt(properties.getProperty(prefix + "port", useSSL ? "995" : "110")),
+                    useSSL,
+                    properties.getProperty(prefix + "username"),
+                    properties.getProperty(prefix + "password", "")));
+        }
+        return accounts;
+    }
+
+    // 多账户收取时的全局并发上限
+    public int getMaxConcurrentSessions() {
+        return Integer.parseInt(properties.getProperty("maxConcurrentSessions", "64"));
+    }
+
+    // 多账户收取时每台服务器的连接数上限
+    public int getMaxConnectionsPerServer() {
+        return Integer.parseInt(properties.getProperty("maxConnectionsPerServer", "8"));
+    }
+
+    // 启用的TLS协议，逗号分隔，按偏好顺序排列
+    public String getTlsProtocols() {
+        return properties.getProperty("tls.protocols", "TLSv1.3,TLSv1.2");
+    }
+
+    // 启用的TLS密码套件，逗号分隔，为空时使用JDK默认值
+    public String getTlsCipherSuites() {
+        return properties.getProperty("tls.cipherSuites", "");
+    }
+
+    // TLS会话缓存有效期（秒）
+    public int getTlsSessionTimeout() {
+        return Integer.parseInt(properties.getProperty("tls.sessionTimeout", "86400"));
+    }
+
+    // 建立TCP连接的总超时（毫秒），所有候选地址共用
+    public long getConnectTimeout() {
+        return Long.parseLong(properties.getProperty("timeout.connect", "10000"));
+    }
+
+    // 并行建连时相邻两次连接尝试的间隔（毫秒）
+    public long getConnectAttemptDelay() {
+        return Long.parseLong(properties.getProperty("timeout.attemptDelay", "250"));
+    }
+
+    // TLS握手和读取欢迎消息的超时（毫秒）
+    public int getGreetingTimeout() {
+        return Integer.parseInt(properties.getProperty("timeout.greeting", "30000"));
+    }
+
+    // 普通命令等待响应的超时（毫秒）
+    public int getCommandTimeout() {
+        return Integer.parseInt(properties.getProperty("timeout.command", "30000"));
+    }
+
+    // 接收多行数据时两次读取之间的最长间隔（毫秒）
+    public int getTransferTimeout() {
+        return Integer.parseInt(properties.getProperty("timeout.transfer", "120000"));
+    }
+}
@@ -0,0 +1,126 @@
+package org.pop3;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * 传输解码输入流
+ * 从下层流读入编码数据，经DecodingOutputStream解码后供读取，与解码输出流共用同一套查表解码逻辑。
+ * 适合把附件、正文等以流的方式交给只接受InputStream的接口。
+ */
+public class DecodingInputStream extends FilterInputStream {
+    private static final int READ_SIZE = 8192; // 每次从下层流读取的编码数据量
+
+    private final byte[] raw = new byte[READ_SIZE];
+    private final Buffer decoded = new Buffer();
+    private final DecodingOutputStream decoder;
+    private boolean eof;
+
+    /**
+     * 解码结果的缓冲区
+     */
+    private static class Buffer extends OutputStream {
+        byte[] data = new byte[READ_SIZE];
+        int start;
+        int end;
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (end + len > data.length) {
+                // 先把未读的数据移到开头，仍然不够时扩容
+                System.arraycopy(data, start, data, 0, end - start);
+                end -= start;
+                start = 0;
+                if (end + len > data.length) {
+                    data = Arrays.copyOf(data, Math.max(data.length * 2, end + len));
+                }
+            }
+            System.arraycopy(b, off, data, end, len);
+            end += len;
+        }
+    }
+
+    /**
+     * 构造函数
+     * @param in 编码数据流
+     * @param transferEncoding Content-Transfer-Encoding，base64和quoted-printable以外的编码原样读出
+     */
+    public DecodingInputStream(InputStream in, String transferEncoding) {
+        super(in);
+        this.decoder = DecodingOutputStream.forEncoding(decoded, transferEncoding);
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (!fill()) {
+            return -1;
+        }
+        return decoded.data[decoded.start++] & 0xFF;
+    }
+
+    @Override
+    public int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        if (!fill()) {
+            return -1;
+        }
+        int n = Math.min(len, decoded.end - decoded.start);
+        System.arraycopy(decoded.data, decoded.start, b, off, n);
+        decoded.start += n;
+        return n;
+    }
+
+    @Override
+    public int available() {
+        return decoded.end - decoded.start;
+    }
+
+    @Override
+    public long skip(long n) throws IOException {
+        long skipped = 0;
+        while (skipped < n && fill()) {
+            int step = (int) Math.min(n - skipped, decoded.end - decoded.start);
+            decoded.start += step;
+            skipped += step;
+        }
+        return skipped;
+    }
+
+    @Override
+    public boolean markSupported() {
+        return false;
+    }
+
+    /**
+     * 确保缓冲区中有可读的解码数据
+     * @return 是否有数据，false表示已读完
+     */
+    private boolean fill() throws IOException {
+        while (decoded.start == decoded.end) {
+            if (eof) {
+                return false;
+            }
+            decoded.start = 0;
+            decoded.end = 0;
+            int n = in.read(raw, 0, raw.length);
+            if (n < 0) {
+                eof = true;
+                decoder.finish();
+            } else {
+                decoder.write(raw, 0, n);
+                decoder.flushBuffer();
+            }
+        }
+        return true;
+    }
+}
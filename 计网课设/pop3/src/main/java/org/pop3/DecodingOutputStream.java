@@ -0,0 +1,130 @@
+package org.pop3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * 传输解码输出流的基类
+ * 写入的是编码数据，解码结果先放入内部缓冲区，缓冲区满或finish()时整段写入下层流。
+ * 子类逐字节查表解码，不生成中间字符串；finish()写出剩余数据但不关闭下层流，close()会先调用finish()。
+ */
+public abstract class DecodingOutputStream extends FilterOutputStream {
+    protected static final int DEFAULT_BUFFER_SIZE = 8192; // 默认的输出缓冲区大小
+
+    private final byte[] buffer;   // 解码结果的输出缓冲区
+    private int count;
+    private final byte[] single = new byte[1];
+
+    /**
+     * 构造函数
+     * @param out 下层输出流
+     * @param bufferSize 输出缓冲区大小
+     */
+    protected DecodingOutputStream(OutputStream out, int bufferSize) {
+        super(out);
+        this.buffer = new byte[Math.max(16, bufferSize)];
+    }
+
+    /**
+     * 按传输编码创建解码输出流
+     * @param out 下层输出流
+     * @param transferEncoding Content-Transfer-Encoding，base64和quoted-printable以外的编码原样写入
+     * @return 解码输出流
+     */
+    public static DecodingOutputStream forEncoding(OutputStream out, String transferEncoding) {
+        return forEncoding(out, transferEncoding, DEFAULT_BUFFER_SIZE);
+    }
+
+    private static DecodingOutputStream forEncoding(OutputStream out, String transferEncoding, int bufferSize) {
+        String encoding = transferEncoding != null ? transferEncoding.trim() : "";
+        if (encoding.equalsIgnoreCase("base64")) {
+            return new Base64DecodingOutputStream(out, bufferSize);
+        }
+        if (encoding.equalsIgnoreCase("quoted-printable")) {
+            return new QuotedPrintableDecodingOutputStream(out, false, bufferSize);
+        }
+        return new DecodingOutputStream(out, bufferSize) {
+            @Override
+            public void write(byte[] data, int offset, int length) throws IOException {
+                for (int i = offset; i < offset + length; i++) {
+                    put(data[i]);
+                }
+            }
+
+            @Override
+            public void finish() throws IOException {
+                flushBuffer();
+            }
+        };
+    }
+
+    /**
+     * 解码一段数据
+     * @param data 编码数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @param transferEncoding Content-Transfer-Encoding
+     * @return 解码后的数据
+     */
+    public static byte[] decode(byte[] data, int offset, int length, String transferEncoding) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(length);
+        try (DecodingOutputStream decoder = forEncoding(result, transferEncoding, Math.min(length + 16, DEFAULT_BUFFER_SIZE))) {
+            decoder.write(data, offset, length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // 写入内存不会失败
+        }
+        return result.toByteArray();
+    }
+
+    /**
+     * 写出已解码但还在缓冲区中的数据（包括不完整的末尾），不关闭下层流
+     * @throws IOException 写入失败
+     */
+    public abstract void finish() throws IOException;
+
+    @Override
+    public abstract void write(byte[] data, int offset, int length) throws IOException;
+
+    @Override
+    public void write(int b) throws IOException {
+        single[0] = (byte) b;
+        write(single, 0, 1);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        try {
+            finish();
+        } finally {
+            out.close();
+        }
+    }
+
+    /**
+     * 向输出缓冲区追加一个解码后的字节
+     */
+    protected final void put(byte b) throws IOException {
+        if (count == buffer.length) {
+            flushBuffer();
+        }
+        buffer[count++] = b;
+    }
+
+    /**
+     * 把输出缓冲区写入下层流
+     */
+    protected final void flushBuffer() throws IOException {
+        if (count > 0) {
+            out.write(buffer, 0, count);
+            count = 0;
+        }
+    }
+}
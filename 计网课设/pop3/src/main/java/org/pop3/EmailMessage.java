@@ -4,6 +4,12 @@ import java.text.SimpleDateFormat;
 import java.util.*;
 import java.io.File;
 import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
 
 /**
  * 邮件消息类
@@ -21,6 +27,8 @@ public class EmailMessage {
     private Date date;                 // 邮件日期
     private String content;            // 邮件内容（解码后）
     private String contentRaw;         // 邮件内容（原始格式）
+    private byte[] rawBytes;           // 原始邮件字节（按字节构造时保存）
+    private boolean byteExact = false; // 是否按原始字节解析（字符集解码推迟到各部分）
     private String rawHeader;          // 原始邮件头
     private String charset = "UTF-8";  // 字符集，默认UTF-8
     private String contentType;        // 内容类型
@@ -48,6 +56,11 @@ public class EmailMessage {
         private String boundary;           // 嵌套multipart的分隔符
         private boolean isMultipart = false; // 是否为multipart类型
         private List<EmailPart> subParts = new ArrayList<>(); // 子部分列表
+        private byte[] source;             // 正文所在的原始邮件字节
+        private int bodyOffset;            // 正文在原始字节中的起始位置
+        private int bodyLength;            // 正文长度
+        private boolean byteExact;         // 原始字节是否为邮件的原始编码（否则为UTF-8）
+        private boolean decoded = true;    // 是否已解码，有正文视图时推迟到首次访问解码内容
 
         /**
          * 默认构造函数，设置默认字符集为UTF-8
@@ -65,12 +78,9 @@ public class EmailMessage {
         public void setCharset(String charset) { this.charset = charset; }
         public String getTransferEncoding() { return transferEncoding; }
         public void setTransferEncoding(String transferEncoding) { this.transferEncoding = transferEncoding; }
-        public String getContent() { return content; }
         public void setContent(String content) { this.content = content; }
-        public String getDecodedContent() { return decodedContent; }
-        public void setDecodedContent(String decodedContent) { this.decodedContent = decodedContent; }
-        public byte[] getDecodedBytes() { return decodedBytes; }
-        public void setDecodedBytes(byte[] decodedBytes) { this.decodedBytes = decodedBytes; }
+        public synchronized void setDecodedContent(String decodedContent) { this.decodedContent = decodedContent; decoded = true; }
+        public synchronized void setDecodedBytes(byte[] decodedBytes) { this.decodedBytes = decodedBytes; decoded = true; }
         public String getFileName() { return fileName; }
         public void setFileName(String fileName) { this.fileName = fileName; }
         public String getContentDisposition() { return contentDisposition; }
@@ -84,6 +94,128 @@ public class EmailMessage {
         public boolean isMultipart() { return isMultipart; }
         public void setMultipart(boolean multipart) { isMultipart = multipart; }
         public List<EmailPart> getSubParts() { return subParts; }
+
+        /**
+         * 获取原始内容（未做传输解码），有正文视图时在首次访问时由原始字节生成
+         * @return 原始内容，换行统一为\n
+         */
+        public String getContent() {
+            if (content == null && source != null) {
+                content = new String(source, bodyOffset, bodyLength,
+                        byteExact ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8)
+                        .replace("\r\n", "\n").trim();
+            }
+            return content;
+        }
+
+        /**
+         * 获取解码后的文本内容，首次访问时解码
+         * @return 解码后的文本
+         */
+        public String getDecodedContent() {
+            decode();
+            return decodedContent;
+        }
+
+        /**
+         * 获取解码后的二进制数据，首次访问时解码
+         * @return 解码后的数据
+         */
+        public byte[] getDecodedBytes() {
+            decode();
+            return decodedBytes;
+        }
+
+        /**
+         * 设置正文视图：只记录正文在原始邮件字节中的位置，解码推迟到首次访问，
+         * 解码前按编码后的长度估算大小
+         * @param source 原始邮件字节
+         * @param offset 正文起始位置
+         * @param length 正文长度
+         * @param byteExact 原始字节是否为邮件的原始编码
+         */
+        void setBody(byte[] source, int offset, int length, boolean byteExact) {
+            this.source = source;
+            this.bodyOffset = offset;
+            this.bodyLength = length;
+            this.byteExact = byteExact;
+            this.content = null;
+            this.decoded = isMultipart;  // multipart部分不解码
+            this.size = isMultipart ? 0 : estimateSize();
+        }
+
+        /**
+         * 正文是否为空（只含空白）
+         */
+        boolean isBlank() {
+            if (source == null) {
+                return content == null || content.trim().isEmpty();
+            }
+            for (int i = bodyOffset; i < bodyOffset + bodyLength; i++) {
+                if (source[i] > ' ') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 按编码后的长度估算解码后的大小
+         * base64按每76个字符一行（加CRLF）计算，其他编码按原长度计算
+         */
+        private long estimateSize() {
+            if (transferEncoding != null && transferEncoding.equalsIgnoreCase("base64")) {
+                long chars = bodyLength - bodyLength / 78 * 2;
+                return chars * 3 / 4;
+            }
+            return bodyLength;
+        }
+
+        /**
+         * 把解码后的内容写入通道：尚未解码时直接从正文视图边解码边写入，不生成完整的解码结果；写入的字节与getDecodedBytes()相同
+         * @param channel 目标通道
+         * @return 是否有可写入的内容
+         * @throws IOException 写入失败
+         */
+        boolean writeTo(WritableByteChannel channel) throws IOException {
+            if (isDecoded() || source == null || !byteExact) {
+                byte[] bytes = getDecodedBytes();
+                if (bytes == null) {
+                    return false;
+                }
+                ByteBuffer buffer = ByteBuffer.wrap(bytes);
+                while (buffer.hasRemaining()) {
+                    channel.write(buffer);
+                }
+                return true;
+            }
+            AttachmentWriter writer = new AttachmentWriter(channel, transferEncoding);
+            writer.write(source, bodyOffset, bodyLength);
+            writer.finish();
+            size = writer.getWritten();
+            return true;
+        }
+
+        private synchronized boolean isDecoded() {
+            return decoded;
+        }
+
+        /**
+         * 首次访问时解码
+         * 部分可能被界面线程、保存线程和预取线程同时访问，解码在锁内完成，
+         * 其他线程在解码结果全部写入之后才能看到已解码的状态
+         */
+        private synchronized void decode() {
+            if (decoded) {
+                return;
+            }
+            try {
+                decodePartContent(this, byteExact);
+                size = decodedBytes != null ? decodedBytes.length : 0;
+            } finally {
+                decoded = true;
+            }
+        }
     }
 
     /**
@@ -94,66 +226,37 @@ public class EmailMessage {
     public EmailMessage(int messageNumber, String rawContent) {
         this.messageNumber = messageNumber;
         this.contentRaw = rawContent;
-        parseMessage(rawContent);
+        long start = System.nanoTime();
+        parseMessage(rawContent != null ? rawContent.getBytes(StandardCharsets.UTF_8) : null);
+        POP3Metrics.getDefault().recordParse(System.nanoTime() - start, rawContent != null ? rawContent.length() : 0);
+    }
+
+    /**
+     * 构造函数，从原始字节解析邮件
+     * 各部分的正文保持原始字节，按该部分声明的字符集解码，因此GBK等非UTF-8的8bit内容也能正确显示
+     * @param messageNumber 邮件序号
+     * @param rawBytes 原始邮件字节，如retrieveMessageBytes()的返回值
+     */
+    public EmailMessage(int messageNumber, byte[] rawBytes) {
+        this.messageNumber = messageNumber;
+        this.rawBytes = rawBytes;
+        this.byteExact = true;
+        long start = System.nanoTime();
+        parseMessage(rawBytes);
+        POP3Metrics.getDefault().recordParse(System.nanoTime() - start, rawBytes.length);
     }
 
     /**
      * 解析邮件内容
-     * @param rawContent 原始邮件内容
+     * 由MimeStreamParser单遍扫描原始字节，按解析事件建立各部分
+     * @param data 原始邮件字节
      */
-    private void parseMessage(String rawContent) {
-        if (rawContent == null || rawContent.isEmpty()) {
+    private void parseMessage(byte[] data) {
+        if (data == null || data.length == 0) {
             return;
         }
 
-        String[] lines = rawContent.split("\r?\n");
-        StringBuilder headerBuilder = new StringBuilder();
-        StringBuilder contentBuilder = new StringBuilder();
-        boolean inHeader = true;  // 标记是否在处理邮件头
-        String currentHeaderLine = "";  // 当前正在处理的头部行
-
-        // 逐行解析邮件
-        for (String line : lines) {
-            if (inHeader) {
-                // 空行表示邮件头结束
-                if (line.trim().isEmpty()) {
-                    if (!currentHeaderLine.isEmpty()) {
-                        parseHeaderLine(currentHeaderLine);
-                    }
-                    inHeader = false;
-                    continue;
-                }
-
-                // 处理折叠的头部行（以空格或制表符开头的行是上一行的延续）
-                if (line.startsWith(" ") || line.startsWith("\t")) {
-                    currentHeaderLine += " " + line.trim();
-                } else {
-                    // 解析上一个完整的头部行
-                    if (!currentHeaderLine.isEmpty()) {
-                        parseHeaderLine(currentHeaderLine);
-                    }
-                    currentHeaderLine = line;
-                }
-                headerBuilder.append(line).append("\n");
-            } else {
-                // 收集邮件正文内容
-                contentBuilder.append(line).append("\n");
-            }
-        }
-
-        // 处理最后一个头部行
-        if (!currentHeaderLine.isEmpty()) {
-            parseHeaderLine(currentHeaderLine);
-        }
-
-        this.rawHeader = headerBuilder.toString();
-
-        // 根据邮件类型处理内容
-        if (isMultipart && boundary != null) {
-            parseMultipartContent(contentBuilder.toString());
-        } else {
-            this.content = decodeContent(contentBuilder.toString());
-        }
+        new MessageBuilder(data).parse();
     }
 
     /**
@@ -178,6 +281,37 @@ public class EmailMessage {
         }
     }
 
+    /**
+     * 将按字节读入的头部文本还原为Unicode文本
+     * 头部一般为ASCII（非ASCII内容使用=?charset?B?...?=编码），
+     * 含有8bit字符时按RFC 6532视为UTF-8
+     * @param text 头部文本
+     * @return 还原后的文本
+     */
+    static String headerText(String text) {
+        for (int i = 0; i < text.length(); i++) {
+            if (text.charAt(i) >= 0x80) {
+                return new String(text.getBytes(StandardCharsets.ISO_8859_1), StandardCharsets.UTF_8);
+            }
+        }
+        return text;
+    }
+
+    /**
+     * 将按字节读入的正文按指定字符集解码
+     * @param text 正文（每个字符对应一个原始字节）
+     * @param charsetName 字符集名称
+     * @return 解码后的文本，字符集不受支持时按UTF-8解码
+     */
+    private static String bodyText(String text, String charsetName) {
+        byte[] bytes = text.getBytes(StandardCharsets.ISO_8859_1);
+        try {
+            return new String(bytes, charsetName);
+        } catch (Exception e) {
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
     /**
      * 解析Content-Type头部
      * @param contentTypeValue Content-Type的值
@@ -209,7 +343,7 @@ public class EmailMessage {
      * @param boundaryPart 包含boundary的字符串部分
      * @return boundary值
      */
-    private String extractBoundary(String boundaryPart) {
+    private static String extractBoundary(String boundaryPart) {
         // 处理带引号的boundary
         if (boundaryPart.startsWith("\"")) {
             int endQuote = boundaryPart.indexOf("\"", 1);
@@ -228,157 +362,88 @@ public class EmailMessage {
     }
 
     /**
-     * 解析多部分邮件内容
-     * @param rawContent 原始内容
+     * 解析事件处理器
+     * 邮件头逐个交给parseHeaderLine/parsePartHeaderLine，叶子部分只记录正文在原始字节中的位置，
+     * 按文档顺序加入parts和attachments，嵌套的multipart部分挂到父部分的subParts下
      */
-    private void parseMultipartContent(String rawContent) {
-        if (boundary == null) {
-            this.content = rawContent;
-            return;
-        }
-
-        // 使用boundary分割邮件各部分
-        String[] parts = rawContent.split("--" + boundary);
+    private class MessageBuilder implements MimeStreamParser.Handler {
+        private final byte[] data;                                       // 原始邮件字节
+        private final MimeStreamParser parser = new MimeStreamParser(this);
+        private final Deque<EmailPart> openParts = new ArrayDeque<>();   // 尚未结束的部分（不含邮件本身）
+        private final StringBuilder headerBuilder = new StringBuilder(); // 邮件头
+        private int bodyStart;                                           // 当前部分正文的起始位置
 
-        for (int i = 0; i < parts.length; i++) {
-            String part = parts[i];
-            part = part.replaceFirst("^[\r\n]+", "");
+        MessageBuilder(byte[] data) {
+            this.data = data;
+        }
 
-            // 跳过空部分和结束标记
-            if (part.trim().isEmpty() || part.trim().equals("--")) {
-                continue;
-            }
+        void parse() {
+            parser.parse(data, 0, data.length);
+        }
 
-            EmailPart emailPart = parsePart(part);
-            if (emailPart != null) {
-                // 如果这个部分本身也是multipart，递归处理
-                if (emailPart.isMultipart() && emailPart.getBoundary() != null) {
-                    parseNestedMultipart(emailPart);
-                    // 递归添加所有子部分
-                    addPartsRecursively(emailPart);
-                } else {
-                    this.parts.add(emailPart);
-                    if (emailPart.isAttachment()) {
-                        this.attachments.add(emailPart);
-                    }
-                }
+        @Override
+        public void startPart(int depth) {
+            if (depth > 0) {
+                openParts.push(new EmailPart());
             }
         }
 
-        // 生成合并后的邮件正文
-        generateCompositeContent();
-    }
-
-    /**
-     * 递归添加邮件部分
-     * @param parentPart 父部分
-     */
-    private void addPartsRecursively(EmailPart parentPart) {
-        for (EmailPart subPart : parentPart.getSubParts()) {
-            if (subPart.isMultipart() && subPart.getBoundary() != null) {
-                // 如果子部分也是multipart，继续递归
-                parseNestedMultipart(subPart);
-                addPartsRecursively(subPart);
+        @Override
+        public void header(String name, String value) {
+            String line = headerText(name + ": " + value);
+            if (openParts.isEmpty()) {
+                headerBuilder.append(line).append("\n");
+                parseHeaderLine(line);
             } else {
-                this.parts.add(subPart);
-                if (subPart.isAttachment()) {
-                    this.attachments.add(subPart);
-                }
+                parsePartHeaderLine(openParts.peek(), line);
             }
         }
-    }
 
-    /**
-     * 解析嵌套的多部分邮件
-     * @param parentPart 父部分
-     */
-    private void parseNestedMultipart(EmailPart parentPart) {
-        String content = parentPart.getContent();
-        if (content == null || parentPart.getBoundary() == null) {
-            return;
+        @Override
+        public void endHeaders() {
+            if (openParts.isEmpty()) {
+                rawHeader = headerBuilder.toString();
+            }
+            bodyStart = (int) parser.getOffset();
         }
 
-        String[] subParts = content.split("--" + parentPart.getBoundary());
-
-        for (String subPartContent : subParts) {
-            subPartContent = subPartContent.replaceFirst("^[\r\n]+", "");
+        @Override
+        public void endPart() {
+            if (openParts.isEmpty()) {
+                endMessage();
+                return;
+            }
 
-            if (subPartContent.trim().isEmpty() || subPartContent.trim().equals("--")) {
-                continue;
+            EmailPart part = openParts.pop();
+            if (!openParts.isEmpty()) {
+                openParts.peek().getSubParts().add(part);
+            }
+            if (part.isMultipart() && part.getBoundary() != null) {
+                return;  // 子部分已在各自结束时处理
             }
 
-            EmailPart subPart = parsePart(subPartContent);
-            if (subPart != null) {
-                parentPart.getSubParts().add(subPart);
+            // 只记录正文位置，解码推迟到首次访问
+            part.setBody(data, bodyStart, (int) parser.getOffset() - bodyStart, byteExact);
+            parts.add(part);
+            if (part.isAttachment()) {
+                attachments.add(part);
             }
         }
-    }
-
-    /**
-     * 解析邮件的一个部分
-     * @param partContent 部分内容
-     * @return 解析后的EmailPart对象
-     */
-    private EmailPart parsePart(String partContent) {
-        if (partContent.trim().isEmpty()) {
-            return null;
-        }
-
-        EmailPart part = new EmailPart();
-        String[] lines = partContent.split("\r?\n");
-        StringBuilder contentBuilder = new StringBuilder();
-        boolean inPartHeader = true;  // 标记是否在处理部分头
-        String currentHeaderLine = "";
-
-        // 逐行解析部分内容
-        for (String line : lines) {
-            if (inPartHeader) {
-                // 空行表示部分头结束
-                if (line.trim().isEmpty()) {
-                    if (!currentHeaderLine.isEmpty()) {
-                        parsePartHeaderLine(part, currentHeaderLine);
-                    }
-                    inPartHeader = false;
-                    continue;
-                }
 
-                // 处理折叠的头部行
-                if (line.startsWith(" ") || line.startsWith("\t")) {
-                    currentHeaderLine += " " + line.trim();
-                } else {
-                    if (!currentHeaderLine.isEmpty()) {
-                        parsePartHeaderLine(part, currentHeaderLine);
-                    }
-                    currentHeaderLine = line;
-                }
+        private void endMessage() {
+            if (rawHeader == null) {
+                rawHeader = headerBuilder.toString();
+            }
+            // 根据邮件类型处理内容
+            if (isMultipart && boundary != null) {
+                generateCompositeContent();
             } else {
-                contentBuilder.append(line).append("\n");
+                int end = (int) parser.getOffset();
+                String body = new String(data, bodyStart, end - bodyStart,
+                        byteExact ? StandardCharsets.ISO_8859_1 : StandardCharsets.UTF_8);
+                content = decodeContent(body.replace("\r\n", "\n"));
             }
         }
-
-        // 处理最后一个头部行
-        if (!currentHeaderLine.isEmpty() && inPartHeader) {
-            parsePartHeaderLine(part, currentHeaderLine);
-        }
-
-        String rawPartContent = contentBuilder.toString().trim();
-        part.setContent(rawPartContent);
-
-        // 检查是否是multipart类型
-        if (part.getContentType() != null && part.getContentType().toLowerCase().startsWith("multipart/")) {
-            part.setMultipart(true);
-            // boundary已在parsePartHeaderLine中提取
-        } else {
-            // 只有非multipart部分才解码内容
-            decodePartContent(part);
-        }
-
-        // 设置附件大小
-        if (part.getDecodedBytes() != null) {
-            part.setSize(part.getDecodedBytes().length);
-        }
-
-        return part;
     }
 
     /**
@@ -386,7 +451,7 @@ public class EmailMessage {
      * @param part EmailPart对象
      * @param line 头部行内容
      */
-    private void parsePartHeaderLine(EmailPart part, String line) {
+    static void parsePartHeaderLine(EmailPart part, String line) {
         if (line.toLowerCase().startsWith("content-type:")) {
             String contentTypeLine = line.substring(13).trim();
             part.setFullContentType(contentTypeLine);  // 保存完整的Content-Type
@@ -456,7 +521,7 @@ public class EmailMessage {
      * @param filenamePart 包含文件名的字符串部分
      * @return 文件名
      */
-    private String extractFileName(String filenamePart) {
+    private static String extractFileName(String filenamePart) {
         // 处理带引号的文件名
         if (filenamePart.startsWith("\"")) {
             int endQuote = filenamePart.indexOf("\"", 1);
@@ -477,14 +542,19 @@ public class EmailMessage {
     /**
      * 解码部分内容
      * @param part EmailPart对象
+     * @param byteExact 是否按原始字节解析
      */
-    private void decodePartContent(EmailPart part) {
-        String content = part.getContent();
+    private static void decodePartContent(EmailPart part, boolean byteExact) {
         String encoding = part.getTransferEncoding();
         String charset = part.getCharset();
 
-        if (encoding == null || content.trim().isEmpty()) {
-            part.setDecodedContent(content);
+        if (byteExact && part.source != null) {
+            decodeBodyView(part, encoding, charset);
+            return;
+        }
+
+        if (encoding == null || part.isBlank()) {
+            part.setDecodedContent(part.getContent());
             return;
         }
 
@@ -492,17 +562,18 @@ public class EmailMessage {
             byte[] decodedBytes = null;
 
             // 根据传输编码方式解码
-            if (encoding.equalsIgnoreCase("base64")) {
-                // Base64解码
-                String cleanContent = content.replaceAll("\\s+", "");
-                decodedBytes = Base64.getDecoder().decode(cleanContent);
-            } else if (encoding.equalsIgnoreCase("quoted-printable")) {
-                // Quoted-Printable解码
-                String decodedString = decodeQuotedPrintable(content, charset != null ? charset : "UTF-8");
-                decodedBytes = decodedString.getBytes(charset != null ? charset : "UTF-8");
-            } else if (encoding.equalsIgnoreCase("7bit") || encoding.equalsIgnoreCase("8bit")) {
-                // 7bit或8bit编码
-                decodedBytes = content.getBytes("ISO-8859-1");
+            if (encoding.equalsIgnoreCase("base64") || encoding.equalsIgnoreCase("quoted-printable")) {
+                // Base64或Quoted-Printable查表解码，直接在原始字节上跳过空白和软换行，不生成中间字符串
+                if (part.source != null) {
+                    decodedBytes = DecodingOutputStream.decode(part.source, part.bodyOffset, part.bodyLength, encoding);
+                } else {
+                    byte[] encoded = part.getContent().getBytes(StandardCharsets.ISO_8859_1);
+                    decodedBytes = DecodingOutputStream.decode(encoded, 0, encoded.length, encoding);
+                }
+            } else if (encoding.equalsIgnoreCase("7bit") || encoding.equalsIgnoreCase("8bit")
+                    || encoding.equalsIgnoreCase("binary")) {
+                // 7bit、8bit或binary编码
+                decodedBytes = part.getContent().getBytes("ISO-8859-1");
             }
 
             if (decodedBytes != null) {
@@ -513,14 +584,46 @@ public class EmailMessage {
                     part.setDecodedContent(new String(decodedBytes, charset != null ? charset : "UTF-8"));
                 }
             } else {
-                part.setDecodedContent(content);
+                part.setDecodedContent(part.getContent());
             }
         } catch (Exception e) {
             System.err.println("解码失败 (编码:" + encoding + ", 字符集:" + charset + "): " + e.getMessage());
-            part.setDecodedContent(content);
+            part.setDecodedContent(part.getContent());
         }
     }
 
+    /**
+     * 按原始字节解码正文视图
+     * 解码后的字节与writeTo()边解码边写入的结果完全相同（base64和quoted-printable以外的编码按原样保留，
+     * 不去首尾空白、不转换换行），保存附件的结果与之前是否访问过解码内容无关；
+     * 只有用于显示的文本才去掉首尾空白并把换行统一为\n
+     * @param part 有正文视图的部分
+     * @param encoding 传输编码
+     * @param charset 字符集
+     */
+    private static void decodeBodyView(EmailPart part, String encoding, String charset) {
+        byte[] decodedBytes = DecodingOutputStream.decode(part.source, part.bodyOffset, part.bodyLength, encoding);
+        part.setDecodedBytes(decodedBytes);
+        if (part.isBlank()) {
+            part.setDecodedContent(part.getContent());
+            return;
+        }
+        if (part.getContentType() == null || !part.getContentType().toLowerCase().startsWith("text/")) {
+            return;
+        }
+        String text;
+        try {
+            text = new String(decodedBytes, charset != null ? charset : "UTF-8");
+        } catch (Exception e) {
+            System.err.println("解码失败 (编码:" + encoding + ", 字符集:" + charset + "): " + e.getMessage());
+            part.setDecodedContent(part.getContent());
+            return;
+        }
+        boolean transferDecoded = encoding != null
+                && (encoding.trim().equalsIgnoreCase("base64") || encoding.trim().equalsIgnoreCase("quoted-printable"));
+        part.setDecodedContent(transferDecoded ? text : text.replace("\r\n", "\n").trim());
+    }
+
     /**
      * 保存附件到文件
      * @param attachment 附件对象
@@ -528,17 +631,22 @@ public class EmailMessage {
      * @return 是否保存成功
      */
     public boolean saveAttachment(EmailPart attachment, File targetFile) {
-        if (!attachment.isAttachment() || attachment.getDecodedBytes() == null) {
+        if (!attachment.isAttachment()) {
             return false;
         }
 
-        try (FileOutputStream fos = new FileOutputStream(targetFile)) {
-            fos.write(attachment.getDecodedBytes());
-            return true;
+        // 尚未解码的附件从原始字节边解码边写入，不在内存中生成完整的解码结果
+        boolean saved = false;
+        try (FileChannel channel = FileChannel.open(targetFile.toPath(), StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            saved = attachment.writeTo(channel);
         } catch (Exception e) {
             System.err.println("保存附件失败: " + e.getMessage());
-            return false;
         }
+        if (!saved) {
+            targetFile.delete();
+        }
+        return saved;
     }
 
     /**
@@ -633,9 +741,8 @@ public class EmailMessage {
         // 检查是否使用Base64编码
         if (rawHeader.toLowerCase().contains("content-transfer-encoding: base64")) {
             try {
-                String cleanContent = rawContent.replaceAll("\\s+", "");
-                byte[] decodedBytes = Base64.getDecoder().decode(cleanContent);
-                return new String(decodedBytes, charset);
+                byte[] encoded = rawContent.getBytes(StandardCharsets.ISO_8859_1);
+                return new String(DecodingOutputStream.decode(encoded, 0, encoded.length, "base64"), charset);
             } catch (Exception e) {
                 return rawContent;
             }
@@ -646,6 +753,11 @@ public class EmailMessage {
             return decodeQuotedPrintable(rawContent, charset);
         }
 
+        // 按字节解析时，7bit/8bit正文按声明的字符集解码
+        if (byteExact) {
+            return bodyText(rawContent, charset);
+        }
+
         // 默认使用MIME解码
         return MimeDecoder.decode(rawContent);
     }
@@ -656,63 +768,24 @@ public class EmailMessage {
      * @param charset 字符集
      * @return 解码后的内容
      */
-    private String decodeQuotedPrintable(String content, String charset) {
-        StringBuilder result = new StringBuilder();
-        String[] lines = content.split("\n");
-
-        // 逐行处理
-        for (String line : lines) {
-            // 处理软换行（以=结尾的行）
-            if (line.endsWith("=")) {
-                result.append(decodeQPLine(line.substring(0, line.length() - 1)));
-            } else {
-                result.append(decodeQPLine(line)).append("\n");
-            }
-        }
-
+    static String decodeQuotedPrintable(String content, String charset) {
+        byte[] encoded = content.getBytes(StandardCharsets.ISO_8859_1);
+        byte[] decoded = DecodingOutputStream.decode(encoded, 0, encoded.length, "quoted-printable");
         try {
-            // 将结果转换为指定字符集
-            byte[] bytes = result.toString().getBytes("ISO-8859-1");
-            return new String(bytes, charset);
+            // 按指定字符集还原文本
+            return new String(decoded, charset);
         } catch (Exception e) {
-            return result.toString();
+            return new String(decoded, StandardCharsets.ISO_8859_1);
         }
     }
 
-    /**
-     * 解码Quoted-Printable编码的单行
-     * @param line 编码行
-     * @return 解码后的行
-     */
-    private String decodeQPLine(String line) {
-        StringBuilder result = new StringBuilder();
-        for (int i = 0; i < line.length(); i++) {
-            char c = line.charAt(i);
-            // =XX表示一个编码字符，其中XX是十六进制值
-            if (c == '=' && i + 2 < line.length()) {
-                try {
-                    String hex = line.substring(i + 1, i + 3);
-                    int value = Integer.parseInt(hex, 16);
-                    result.append((char) value);
-                    i += 2;  // 跳过已处理的两个字符
-                } catch (NumberFormatException e) {
-                    // 解析失败，保留原字符
-                    result.append(c);
-                }
-            } else {
-                result.append(c);
-            }
-        }
-        return result.toString();
-    }
-
     /**
      * 解析日期字符串
      * 支持多种日期格式
      * @param dateStr 日期字符串
      * @return 解析后的Date对象
      */
-    private Date parseDate(String dateStr) {
+    static Date parseDate(String dateStr) {
         // 支持的日期格式列表
         String[] patterns = {
                 "EEE, dd MMM yyyy HH:mm:ss Z",     // 标准格式: Wed, 27 Oct 2021 14:30:00 +0800
@@ -796,7 +869,14 @@ public class EmailMessage {
     public String getSubjectRaw() { return subjectRaw; }
     public Date getDate() { return date; }
     public String getContent() { return content; }
-    public String getContentRaw() { return contentRaw; }
+    public String getContentRaw() {
+        // 按字节构造时，原始内容在首次访问时才解码
+        if (contentRaw == null && rawBytes != null) {
+            contentRaw = new String(rawBytes, StandardCharsets.UTF_8);
+        }
+        return contentRaw;
+    }
+    public byte[] getRawBytes() { return rawBytes; }
     public String getRawHeader() { return rawHeader; }
     public String getCharset() { return charset; }
     public boolean isMultipart() { return isMultipart; }
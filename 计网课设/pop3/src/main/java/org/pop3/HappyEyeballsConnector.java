@@ -0,0 +1,246 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.net.*;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * 并行建连器（RFC 8305 "Happy Eyeballs"）
+ * 服务器解析出多个地址时，IPv6与IPv4地址交替排列，每隔一小段时间（默认250毫秒）发起下一个连接尝试，
+ * 或在前一个尝试失败时立即发起，最先建立的连接胜出，其余连接被关闭。
+ * 某条路由不通时不会再卡住操作系统默认的一分多钟；胜出的地址按主机名缓存，下次优先尝试。
+ * 同时集中管理连接各阶段的超时：建立连接、TLS握手与欢迎消息、普通命令、多行数据传输。
+ */
+public class HappyEyeballsConnector {
+    private static final long DEFAULT_CONNECT_TIMEOUT = 10 * 1000; // 建立连接的总超时：10秒
+    private static final long DEFAULT_ATTEMPT_DELAY = 250;         // 相邻两次连接尝试的间隔（RFC 8305推荐值）
+    private static final long ADDRESS_CACHE_TTL = 10 * 60 * 1000;  // 胜出地址的缓存时间：10分钟
+    private static final int DEFAULT_GREETING_TIMEOUT = 30 * 1000;  // TLS握手和欢迎消息的超时：30秒
+    private static final int DEFAULT_COMMAND_TIMEOUT = 30 * 1000;   // 普通命令的读取超时：30秒
+    private static final int DEFAULT_TRANSFER_TIMEOUT = 120 * 1000; // 多行数据的读取超时：2分钟
+
+    private static HappyEyeballsConnector defaultConnector;
+
+    private final ExecutorService executor;
+    private final ConcurrentHashMap<String, CachedAddress> addressCache = new ConcurrentHashMap<>();
+    private volatile long connectTimeout = DEFAULT_CONNECT_TIMEOUT;
+    private volatile long attemptDelay = DEFAULT_ATTEMPT_DELAY;
+    private volatile int greetingTimeout = DEFAULT_GREETING_TIMEOUT;
+    private volatile int commandTimeout = DEFAULT_COMMAND_TIMEOUT;
+    private volatile int transferTimeout = DEFAULT_TRANSFER_TIMEOUT;
+
+    /**
+     * 缓存的胜出地址
+     */
+    private static class CachedAddress {
+        final InetAddress address;
+        final long expireTime;
+
+        CachedAddress(InetAddress address, long expireTime) {
+            this.address = address;
+            this.expireTime = expireTime;
+        }
+    }
+
+    /**
+     * 构造函数
+     */
+    public HappyEyeballsConnector() {
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "pop3-connect");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 获取全局共享的建连器
+     * @return 默认建连器
+     */
+    public static synchronized HappyEyeballsConnector getDefault() {
+        if (defaultConnector == null) {
+            defaultConnector = new HappyEyeballsConnector();
+        }
+        return defaultConnector;
+    }
+
+    /**
+     * 应用配置文件中的超时设置（timeout.connect、timeout.attemptDelay、timeout.greeting、timeout.command、timeout.transfer）
+     * @param config 配置管理器
+     */
+    public void configure(ConfigManager config) {
+        setConnectTimeout(config.getConnectTimeout());
+        setAttemptDelay(config.getConnectAttemptDelay());
+        setGreetingTimeout(config.getGreetingTimeout());
+        setCommandTimeout(config.getCommandTimeout());
+        setTransferTimeout(config.getTransferTimeout());
+    }
+
+    /**
+     * 建立TCP连接
+     * @param host 服务器地址
+     * @param port 服务器端口
+     * @return 已连接的套接字
+     * @throws IOException 所有地址都连接失败或超时
+     */
+    public Socket connect(String host, int port) throws IOException {
+        List<InetAddress> addresses = sortAddresses(host, InetAddress.getAllByName(host));
+        long deadline = System.currentTimeMillis() + connectTimeout;
+
+        CompletionService<Socket> completion = new ExecutorCompletionService<>(executor);
+        List<Future<Socket>> attempts = new ArrayList<>();
+        ConcurrentLinkedQueue<Socket> opened = new ConcurrentLinkedQueue<>(); // 所有尝试创建的套接字
+        AtomicBoolean finished = new AtomicBoolean(); // 竞争是否已结束
+        IOException lastError = null;
+        Socket winner = null;
+        int next = 0;
+        int running = 0;
+
+        try {
+            while (winner == null) {
+                long now = System.currentTimeMillis();
+                if (now >= deadline) {
+                    break;
+                }
+                // 没有进行中的尝试，或者距上次尝试已经过了间隔时间，发起下一个尝试
+                if (next < addresses.size() && running == 0) {
+                    attempts.add(completion.submit(attempt(addresses.get(next++), port, deadline, opened, finished)));
+                    running++;
+                }
+
+                long wait = next < addresses.size() ? Math.min(attemptDelay, deadline - now) : deadline - now;
+                Future<Socket> done = completion.poll(wait, TimeUnit.MILLISECONDS);
+                if (done == null) {
+                    if (next < addresses.size()) {
+                        attempts.add(completion.submit(attempt(addresses.get(next++), port, deadline, opened, finished)));
+                        running++;
+                    }
+                    continue;
+                }
+
+                running--;
+                try {
+                    winner = done.get();
+                } catch (ExecutionException e) {
+                    lastError = e.getCause() instanceof IOException ?
+                            (IOException) e.getCause() : new IOException(e.getCause());
+                    if (running == 0 && next >= addresses.size()) {
+                        break;  // 所有地址都已失败
+                    }
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("连接被中断");
+        } finally {
+            // 取消未完成的尝试，关闭胜出者以外的套接字
+            finished.set(true);
+            for (Future<Socket> attempt : attempts) {
+                attempt.cancel(true);
+            }
+            for (Socket socket : opened) {
+                if (socket != winner) {
+                    closeQuietly(socket);
+                }
+            }
+        }
+
+        if (winner == null) {
+            addressCache.remove(host.toLowerCase());
+            if (lastError != null && System.currentTimeMillis() < deadline) {
+                throw lastError;
+            }
+            throw new SocketTimeoutException("连接 " + host + ":" + port + " 超时（" + connectTimeout + " ms）");
+        }
+        addressCache.put(host.toLowerCase(), new CachedAddress(winner.getInetAddress(),
+                System.currentTimeMillis() + ADDRESS_CACHE_TTL));
+        return winner;
+    }
+
+    /**
+     * 创建一个连接尝试
+     */
+    private Callable<Socket> attempt(InetAddress address, int port, long deadline,
+                                     ConcurrentLinkedQueue<Socket> opened, AtomicBoolean finished) {
+        return () -> {
+            Socket socket = new Socket();
+            opened.add(socket);
+            try {
+                int timeout = (int) Math.max(1, deadline - System.currentTimeMillis());
+                socket.connect(new InetSocketAddress(address, port), timeout);
+            } finally {
+                if (finished.get()) {
+                    closeQuietly(socket);  // 竞争结束后才建立的连接不会被使用
+                }
+            }
+            return socket;
+        };
+    }
+
+    /**
+     * 排列候选地址：缓存的胜出地址最先，其余按IPv6、IPv4交替排列
+     * @param host 主机名
+     * @param resolved 解析结果
+     * @return 尝试顺序
+     */
+    List<InetAddress> sortAddresses(String host, InetAddress[] resolved) {
+        List<InetAddress> v6 = new ArrayList<>();
+        List<InetAddress> v4 = new ArrayList<>();
+        for (InetAddress address : resolved) {
+            (address instanceof Inet6Address ? v6 : v4).add(address);
+        }
+
+        List<InetAddress> ordered = new ArrayList<>(resolved.length);
+        for (int i = 0; i < Math.max(v6.size(), v4.size()); i++) {
+            if (i < v6.size()) {
+                ordered.add(v6.get(i));
+            }
+            if (i < v4.size()) {
+                ordered.add(v4.get(i));
+            }
+        }
+
+        CachedAddress cached = addressCache.get(host.toLowerCase());
+        if (cached != null) {
+            if (cached.expireTime > System.currentTimeMillis() && ordered.remove(cached.address)) {
+                ordered.add(0, cached.address);
+            } else {
+                addressCache.remove(host.toLowerCase());
+            }
+        }
+        return ordered;
+    }
+
+    /**
+     * 获取主机缓存的胜出地址
+     * @param host 主机名
+     * @return 地址，未缓存或已过期时返回null
+     */
+    public InetAddress getCachedAddress(String host) {
+        CachedAddress cached = addressCache.get(host.toLowerCase());
+        return cached != null && cached.expireTime > System.currentTimeMillis() ? cached.address : null;
+    }
+
+    public long getConnectTimeout() { return connectTimeout; }
+    public void setConnectTimeout(long connectTimeout) { this.connectTimeout = connectTimeout; }
+    public long getAttemptDelay() { return attemptDelay; }
+    public void setAttemptDelay(long attemptDelay) { this.attemptDelay = attemptDelay; }
+    public int getGreetingTimeout() { return greetingTimeout; }
+    public void setGreetingTimeout(int greetingTimeout) { this.greetingTimeout = greetingTimeout; }
+    public int getCommandTimeout() { return commandTimeout; }
+    public void setCommandTimeout(int commandTimeout) { this.commandTimeout = commandTimeout; }
+    public int getTransferTimeout() { return transferTimeout; }
+    public void setTransferTimeout(int transferTimeout) { this.transferTimeout = transferTimeout; }
+
+    private static void closeQuietly(Socket socket) {
+        try {
+            socket.close();
+        } catch (IOException e) {
+            // 静默处理关闭异常
+        }
+    }
+}
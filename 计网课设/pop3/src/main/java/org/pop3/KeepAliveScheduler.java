@@ -0,0 +1,226 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 保持连接调度器
+ * 所有会话共用一个守护计时线程，只有会话真正空闲达到间隔时才发送NOOP，传输过程中不会产生多余的往返。
+ * NOOP的网络往返在一个固定大小的小线程池中进行，计时线程不会被慢服务器阻塞，会话数再多也不会为每个会话占用一个线程。
+ * 间隔按服务器学习：NOOP在空闲后仍成功说明服务器的空闲超时更长，间隔逐步放宽；
+ * 空闲后连接被断开则记录该空闲时长为服务器超时的上界，之后的间隔取其一半。
+ */
+public class KeepAliveScheduler {
+    private static final long INITIAL_INTERVAL = 30 * 1000;     // 初始间隔：30秒
+    private static final long MIN_INTERVAL = 10 * 1000;         // 最小间隔：10秒
+    private static final long MAX_INTERVAL = 5 * 60 * 1000;     // 最大间隔：5分钟（RFC 1939要求服务器空闲超时不少于10分钟）
+    private static final double STRETCH_FACTOR = 1.5;           // 空闲后NOOP成功时间隔放宽的倍数
+    private static final int PING_THREADS = 4;                  // 执行NOOP往返的线程数，多个会话同时到期时排队
+
+    private static KeepAliveScheduler defaultScheduler;
+
+    private final ScheduledThreadPoolExecutor executor;
+    private final ExecutorService pingExecutor;    // 执行NOOP往返的线程池
+    private final long initialInterval;        // 新服务器使用的初始间隔
+    private final long minInterval;            // 学习后的间隔下限
+    private final ConcurrentHashMap<String, IdleProfile> profiles = new ConcurrentHashMap<>();
+
+    /**
+     * 单台服务器的空闲超时学习结果
+     */
+    private class IdleProfile {
+        private long interval = initialInterval;  // 当前保持连接间隔
+        private long timeoutBound = -1;           // 已观察到的空闲超时上界，-1表示未知
+
+        synchronized long getInterval() {
+            return interval;
+        }
+
+        /**
+         * 空闲指定时长后NOOP仍然成功，在已知上界以内放宽间隔
+         */
+        synchronized void onIdleSurvived(long idleMillis) {
+            long limit = timeoutBound > 0 ? timeoutBound / 2 : MAX_INTERVAL;
+            long stretched = (long) (Math.max(interval, idleMillis) * STRETCH_FACTOR);
+            interval = Math.max(interval, Math.min(stretched, limit));
+        }
+
+        /**
+         * 空闲指定时长后连接已断开，该时长即服务器超时的上界
+         */
+        synchronized void onIdleTimeout(long idleMillis) {
+            timeoutBound = timeoutBound > 0 ? Math.min(timeoutBound, idleMillis) : idleMillis;
+            interval = Math.max(minInterval, Math.min(interval, timeoutBound / 2));
+        }
+    }
+
+    /**
+     * 单个会话的注册，取消后不再发送NOOP
+     */
+    public class Registration {
+        private final POP3SSLClient client;
+        private final IdleProfile profile;
+        private volatile ScheduledFuture<?> future;
+        private volatile boolean cancelled;
+
+        private Registration(POP3SSLClient client, IdleProfile profile) {
+            this.client = client;
+            this.profile = profile;
+        }
+
+        /**
+         * 在会话空闲满一个间隔的时刻安排下一次检查
+         */
+        private void schedule() {
+            long idle = System.currentTimeMillis() - client.getLastActivity();
+            schedule(Math.max(0, profile.getInterval() - idle));
+        }
+
+        private void schedule(long delay) {
+            if (cancelled) {
+                return;
+            }
+            future = executor.schedule(this::check, delay, TimeUnit.MILLISECONDS);
+        }
+
+        /**
+         * 检查会话：期间有过命令则顺延，真正空闲时交给线程池发送NOOP
+         */
+        private void check() {
+            if (cancelled || !client.isConnected()) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - client.getLastActivity();
+            if (idle < profile.getInterval()) {
+                schedule();
+                return;
+            }
+            pingExecutor.execute(this::ping);
+        }
+
+        /**
+         * 发送NOOP；会话正忙（执行长命令、流未读完等）时不发送，一个完整间隔后再检查
+         * 在线程池中排队期间会话可能已有新的活动，此时只顺延
+         */
+        private void ping() {
+            if (cancelled || !client.isConnected()) {
+                return;
+            }
+            long idle = System.currentTimeMillis() - client.getLastActivity();
+            if (idle < profile.getInterval()) {
+                schedule();
+                return;
+            }
+            try {
+                if (client.sendKeepAlive()) {
+                    profile.onIdleSurvived(idle);
+                    schedule();
+                } else {
+                    schedule(profile.getInterval());
+                }
+            } catch (IOException e) {
+                // 空闲期间连接被服务器断开，客户端处理断开时已将空闲时长记录到调度器
+                System.err.println("保持连接失败，服务器空闲 " + idle / 1000 + " 秒后断开: " + e.getMessage());
+            }
+        }
+
+        /**
+         * 取消注册
+         */
+        public void cancel() {
+            cancelled = true;
+            ScheduledFuture<?> current = future;
+            if (current != null) {
+                current.cancel(false);
+            }
+        }
+    }
+
+    /**
+     * 构造函数，使用默认的初始间隔
+     */
+    public KeepAliveScheduler() {
+        this(INITIAL_INTERVAL);
+    }
+
+    /**
+     * 构造函数，创建一个守护调度线程
+     * @param initialInterval 新服务器使用的初始保持连接间隔（毫秒）
+     */
+    public KeepAliveScheduler(long initialInterval) {
+        this.initialInterval = initialInterval;
+        this.minInterval = Math.min(MIN_INTERVAL, initialInterval);
+        executor = new ScheduledThreadPoolExecutor(1, r -> {
+            Thread thread = new Thread(r, "pop3-keepalive");
+            thread.setDaemon(true);
+            return thread;
+        });
+        executor.setRemoveOnCancelPolicy(true);
+        ThreadPoolExecutor pool = new ThreadPoolExecutor(PING_THREADS, PING_THREADS,
+                60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(), r -> {
+            Thread thread = new Thread(r, "pop3-keepalive-ping");
+            thread.setDaemon(true);
+            return thread;
+        });
+        pool.allowCoreThreadTimeOut(true);  // 没有会话到期时不保留线程
+        pingExecutor = pool;
+    }
+
+    /**
+     * 获取全局共享的调度器
+     * @return 默认调度器
+     */
+    public static synchronized KeepAliveScheduler getDefault() {
+        if (defaultScheduler == null) {
+            defaultScheduler = new KeepAliveScheduler();
+        }
+        return defaultScheduler;
+    }
+
+    /**
+     * 注册一个已登录的会话
+     * @param client 客户端
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @return 注册对象，会话结束时应调用cancel()
+     */
+    public Registration register(POP3SSLClient client, String server, int port) {
+        Registration registration = new Registration(client, profileOf(server, port));
+        registration.schedule();
+        return registration;
+    }
+
+    /**
+     * 记录一次空闲后的断开（例如执行命令时发现连接已被服务器关闭）
+     * 空闲时长小于最小间隔的断开不是空闲超时造成的，予以忽略
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param idleMillis 断开前的空闲时长
+     */
+    public void recordIdleTimeout(String server, int port, long idleMillis) {
+        if (idleMillis < minInterval) {
+            return;
+        }
+        profileOf(server, port).onIdleTimeout(idleMillis);
+    }
+
+    /**
+     * 获取某台服务器当前使用的保持连接间隔
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @return 间隔（毫秒）
+     */
+    public long getInterval(String server, int port) {
+        return profileOf(server, port).getInterval();
+    }
+
+    private IdleProfile profileOf(String server, int port) {
+        return profiles.computeIfAbsent(server.toLowerCase() + ":" + port, key -> new IdleProfile());
+    }
+}
@@ -0,0 +1,142 @@
+package org.pop3;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * 延迟直方图
+ * 采用HDR Histogram的对数-线性分桶：每个2的幂区间再等分为32个子桶，相对误差不超过约3%，
+ * 可覆盖0到约18分钟（2^40纳秒）的取值。桶数固定，记录时只做几次原子加，不分配任何对象，
+ * 可以放在每条命令的热路径上；统计在snapshot()时进行。
+ */
+public class LatencyHistogram {
+    private static final int SUB_BUCKET_BITS = 5;                        // 每个区间的子桶数为2^5
+    private static final int SUB_BUCKET_COUNT = 1 << SUB_BUCKET_BITS;    // 32
+    private static final int MAX_EXPONENT = 40;                          // 最大可记录值约为2^40
+    private static final long MAX_VALUE = (1L << MAX_EXPONENT) - 1;
+    private static final int BUCKET_COUNT = indexOf(MAX_VALUE) + 1;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKET_COUNT);
+    private final AtomicLong totalCount = new AtomicLong();
+    private final AtomicLong totalSum = new AtomicLong();
+    private final AtomicLong maxValue = new AtomicLong();
+
+    /**
+     * 记录一个值
+     * @param value 取值（如纳秒），负数按0记录，超出范围按最大值记录
+     */
+    public void record(long value) {
+        if (value < 0) {
+            value = 0;
+        } else if (value > MAX_VALUE) {
+            value = MAX_VALUE;
+        }
+        counts.incrementAndGet(indexOf(value));
+        totalCount.incrementAndGet();
+        totalSum.addAndGet(value);
+        long max;
+        while (value > (max = maxValue.get()) && !maxValue.compareAndSet(max, value)) {
+            // 其他线程更新了最大值，重试
+        }
+    }
+
+    /**
+     * 计算值所在的桶
+     * 小于64的值每个值一个桶；更大的值取最高的6位有效位，按指数分组
+     */
+    private static int indexOf(long value) {
+        if (value < 2 * SUB_BUCKET_COUNT) {
+            return (int) value;
+        }
+        int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BUCKET_BITS;
+        return shift * SUB_BUCKET_COUNT + (int) (value >>> shift);
+    }
+
+    /**
+     * 桶中可能的最大值
+     */
+    private static long highestValueOf(int index) {
+        if (index < 2 * SUB_BUCKET_COUNT) {
+            return index;
+        }
+        int shift = index / SUB_BUCKET_COUNT - 1;
+        long sub = index - (long) shift * SUB_BUCKET_COUNT;
+        return ((sub + 1) << shift) - 1;
+    }
+
+    /**
+     * 清空所有记录
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            counts.set(i, 0);
+        }
+        totalCount.set(0);
+        totalSum.set(0);
+        maxValue.set(0);
+    }
+
+    /**
+     * 获取当前统计的快照
+     * 与并发的记录之间不加锁，快照中各项可能相差正在进行的几次记录
+     * @return 快照
+     */
+    public Snapshot snapshot() {
+        long[] copy = new long[BUCKET_COUNT];
+        long count = 0;
+        for (int i = 0; i < BUCKET_COUNT; i++) {
+            copy[i] = counts.get(i);
+            count += copy[i];
+        }
+        return new Snapshot(copy, count, totalSum.get(), maxValue.get());
+    }
+
+    /**
+     * 直方图快照，不随之后的记录变化
+     */
+    public static class Snapshot {
+        private final long[] counts;
+        private final long count;
+        private final long sum;
+        private final long max;
+
+        private Snapshot(long[] counts, long count, long sum, long max) {
+            this.counts = counts;
+            this.count = count;
+            this.sum = sum;
+            this.max = max;
+        }
+
+        /**
+         * 获取百分位数
+         * @param percentile 百分位，如50、99、99.9
+         * @return 该百分位所在桶的上界，没有记录时返回0
+         */
+        public long getValueAtPercentile(double percentile) {
+            if (count == 0) {
+                return 0;
+            }
+            long target = Math.max(1, (long) Math.ceil(count * Math.min(percentile, 100.0) / 100.0));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= target) {
+                    return Math.min(highestValueOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        public long getCount() { return count; }
+        public long getMax() { return max; }
+        public double getMean() { return count == 0 ? 0 : (double) sum / count; }
+
+        @Override
+        public String toString() {
+            // 按纳秒记录，以毫秒显示
+            return String.format("count=%d mean=%.2fms p50=%.2fms p90=%.2fms p99=%.2fms max=%.2fms",
+                    count, getMean() / 1e6, getValueAtPercentile(50) / 1e6, getValueAtPercentile(90) / 1e6,
+                    getValueAtPercentile(99) / 1e6, max / 1e6);
+        }
+    }
+}
@@ -1,5 +1,7 @@
 package org.pop3;
 import javax.swing.*;
+import java.io.File;
+import java.util.List;
 
 /**
  * 主程序入口类
@@ -11,12 +13,14 @@ public class Main {
      * 程序主入口
      * @param args 命令行参数
      *           --cli 或 -c: 使用命令行界面
+     *           --fetch-all 或 -f: 并行收取配置文件中的所有账户
      *           --help 或 -h: 显示帮助信息
      */
     public static void main(String[] args) {
         // 检查命令行参数
         boolean useCLI = false;      // 是否使用命令行界面
         boolean showHelp = false;    // 是否显示帮助信息
+        boolean fetchAll = false;    // 是否并行收取所有账户
 
         // 解析命令行参数
         for (String arg : args) {
@@ -24,6 +28,8 @@ public class Main {
                 useCLI = true;
             } else if (arg.equalsIgnoreCase("--help") || arg.equalsIgnoreCase("-h")) {
                 showHelp = true;
+            } else if (arg.equalsIgnoreCase("--fetch-all") || arg.equalsIgnoreCase("-f")) {
+                fetchAll = true;
             }
         }
 
@@ -39,7 +45,18 @@ public class Main {
         System.out.println("功能: 连接POP3服务器、SSL加密、认证、邮件管理");
         System.out.println();
 
-        if (useCLI) {
+        // 所有连接共用一个TLS配置和建连器，重新连接时可以恢复会话、优先使用上次连通的地址
+        ConfigManager config = new ConfigManager();
+        TLSConfig tlsConfig = TLSConfig.getDefault();
+        if (tlsConfig != null) {
+            tlsConfig.configure(config);
+        }
+        HappyEyeballsConnector.getDefault().configure(config);
+
+        if (fetchAll) {
+            // 无界面批量收取
+            fetchAllAccounts();
+        } else if (useCLI) {
             // 启动命令行界面
             System.out.println("启动命令行界面...\n");
             POP3SSLClientCLI cli = new POP3SSLClientCLI();
@@ -60,6 +77,43 @@ public class Main {
         }
     }
 
+    /**
+     * 并行收取配置文件中的所有账户
+     * 每个账户只下载新邮件，保存到下载目录下以用户名命名的子目录中
+     */
+    private static void fetchAllAccounts() {
+        ConfigManager config = new ConfigManager();
+        List<AccountProfile> accounts = config.getAccounts();
+        if (accounts.isEmpty()) {
+            System.err.println("配置文件中没有账户，请添加 account.1.username、account.1.password 等配置项");
+            return;
+        }
+
+        File baseDirectory = new File(config.getDownloadDirectory());
+        try (MultiAccountFetcher fetcher = new MultiAccountFetcher(
+                config.getMaxConcurrentSessions(), config.getMaxConnectionsPerServer())) {
+            System.out.println("开始收取 " + accounts.size() + " 个账户（" +
+                    (fetcher.isUsingVirtualThreads() ? "虚拟线程" : "平台线程池") + "）...");
+
+            long start = System.currentTimeMillis();
+            List<MultiAccountFetcher.FetchResult> results =
+                    fetcher.fetchAll(accounts, MultiAccountFetcher.syncTask(baseDirectory));
+
+            int success = 0;
+            int messages = 0;
+            for (MultiAccountFetcher.FetchResult result : results) {
+                System.out.println(result);
+                if (result.isSuccess()) {
+                    success++;
+                    messages += result.getMessageCount();
+                }
+            }
+            System.out.println("完成: " + success + "/" + accounts.size() + " 个账户成功，新邮件 " +
+                    messages + " 封，总耗时 " + (System.currentTimeMillis() - start) + " ms");
+            System.out.println("命令统计:\n" + POP3Metrics.getDefault().snapshot());
+        }
+    }
+
     /**
      * 打印帮助信息
      * 显示程序的使用说明和支持的邮件服务器
@@ -72,6 +126,7 @@ public class Main {
         System.out.println();
         System.out.println("选项:");
         System.out.println("  --cli, -c    使用命令行界面");
+        System.out.println("  --fetch-all, -f  并行收取配置文件中的所有账户（account.N.*）");
         System.out.println("  --help, -h   显示此帮助信息");
         System.out.println();
         System.out.println("默认启动图形界面，使用 --cli 参数启动命令行界面");
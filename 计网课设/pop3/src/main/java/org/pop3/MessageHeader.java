@@ -0,0 +1,89 @@
+package org.pop3;
+import java.util.Date;
+import java.util.List;
+
+/**
+ * 邮件头部摘要类
+ * 由"TOP n 0"命令返回的邮件头解析而来，只包含列表显示所需的字段，不含邮件正文
+ */
+public class MessageHeader {
+    private final int messageNumber;   // 邮件序号
+    private long size = -1;            // 邮件大小（字节），未知时为-1
+    private String from;               // 发件人（解码后）
+    private String subject;            // 主题（解码后）
+    private Date date;                 // 邮件日期
+    private String contentType;        // 内容类型
+
+    /**
+     * 构造函数
+     * @param messageNumber 邮件序号
+     */
+    public MessageHeader(int messageNumber) {
+        this.messageNumber = messageNumber;
+    }
+
+    /**
+     * 解析邮件头
+     * @param messageNumber 邮件序号
+     * @param headerLines 邮件头各行（遇到空行即停止）
+     * @return 邮件头摘要
+     */
+    public static MessageHeader parse(int messageNumber, List<String> headerLines) {
+        MessageHeader header = new MessageHeader(messageNumber);
+        String currentHeaderLine = "";
+
+        for (String line : headerLines) {
+            // 空行表示邮件头结束
+            if (line.trim().isEmpty()) {
+                break;
+            }
+            // 处理折叠的头部行（以空格或制表符开头的行是上一行的延续）
+            if (line.startsWith(" ") || line.startsWith("\t")) {
+                currentHeaderLine += " " + line.trim();
+            } else {
+                header.parseHeaderLine(currentHeaderLine);
+                currentHeaderLine = line;
+            }
+        }
+        header.parseHeaderLine(currentHeaderLine);
+        return header;
+    }
+
+    /**
+     * 解析单个头部字段
+     * @param line 完整的头部行
+     */
+    private void parseHeaderLine(String line) {
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            return;
+        }
+
+        String name = line.substring(0, colon).trim().toLowerCase();
+        String value = line.substring(colon + 1).trim();
+        switch (name) {
+            case "from":
+                from = MimeDecoder.decode(value);
+                break;
+            case "subject":
+                subject = MimeDecoder.decode(value);
+                break;
+            case "date":
+                date = EmailMessage.parseDate(value);
+                break;
+            case "content-type":
+                contentType = value.split(";")[0].trim();
+                break;
+            default:
+                break;
+        }
+    }
+
+    public int getMessageNumber() { return messageNumber; }
+    public long getSize() { return size; }
+    public void setSize(long size) { this.size = size; }
+    public String getFrom() { return from; }
+    public String getSubject() { return subject; }
+    public Date getDate() { return date; }
+    public String getContentType() { return contentType; }
+}
@@ -0,0 +1,252 @@
+package org.pop3;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * 邮件预取器
+ * 打开第N封邮件后，在后台按距离由近到远下载并解析相邻的邮件，放入以UIDL为键的LRU缓存，
+ * 用方向键浏览上一封、下一封时可以立即显示。每轮预取的数据量和缓存总量都受字节预算限制。
+ * 客户端的命令锁保证预取与界面发出的命令不会交错；打开新邮件时未完成的预取轮次被放弃。
+ */
+public class MessagePrefetcher implements AutoCloseable {
+    private static final long DEFAULT_CACHE_BUDGET = 32L * 1024 * 1024;   // 缓存总量上限：32MB
+    private static final long DEFAULT_PREFETCH_BUDGET = 4L * 1024 * 1024; // 每轮预取的数据量上限：4MB
+    private static final int DEFAULT_PREFETCH_COUNT = 2;                  // 向前、向后各预取的邮件数
+
+    private final POP3SSLClient client;
+    private final long cacheBudget;
+    private final long prefetchBudget;
+    private final ExecutorService executor;
+    private final LinkedHashMap<String, EmailMessage> cache = new LinkedHashMap<>(16, 0.75f, true); // 按访问顺序排列
+    private final Map<String, Future<EmailMessage>> loading = new HashMap<>(); // 正在预取的邮件
+    private long cachedBytes;                       // 缓存中邮件的原始字节总数
+    private Map<Integer, String> uidlMap;           // 序号 -> UIDL，服务器不支持UIDL时为空
+    private volatile int round;                     // 预取轮次，打开新邮件时加一
+
+    /**
+     * 构造函数，使用默认的字节预算
+     * @param client 已登录的客户端
+     */
+    public MessagePrefetcher(POP3SSLClient client) {
+        this(client, DEFAULT_CACHE_BUDGET, DEFAULT_PREFETCH_BUDGET);
+    }
+
+    /**
+     * 构造函数
+     * @param client 已登录的客户端
+     * @param cacheBudget 缓存总量上限（字节）
+     * @param prefetchBudget 每轮预取的数据量上限（字节）
+     */
+    public MessagePrefetcher(POP3SSLClient client, long cacheBudget, long prefetchBudget) {
+        this.client = client;
+        this.cacheBudget = cacheBudget;
+        this.prefetchBudget = prefetchBudget;
+        this.executor = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "pop3-prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 重新获取UIDL列表，在邮件列表刷新后调用
+     * 服务器不支持UIDL时以本次会话的序号作为缓存键
+     */
+    public void refreshUidl() {
+        Map<Integer, String> map = client.getUidlList();
+        synchronized (this) {
+            uidlMap = map != null ? map : Collections.emptyMap();
+        }
+    }
+
+    /**
+     * 获取邮件：优先使用缓存，正在预取时等待预取完成，否则立即下载
+     * 直接下载同样登记为正在加载，同时进行的预取不会重复下载同一封邮件
+     * 会阻塞调用线程，应在后台线程中调用
+     * @param messageNumber 邮件序号
+     * @return 解析后的邮件，下载失败时返回null
+     */
+    public EmailMessage load(int messageNumber) {
+        String key = keyOf(messageNumber);
+        while (true) {
+            Future<EmailMessage> pending;
+            CompletableFuture<EmailMessage> own = null;
+            synchronized (this) {
+                EmailMessage cached = cache.get(key);
+                if (cached != null) {
+                    return renumber(cached, messageNumber);
+                }
+                pending = loading.get(key);
+                if (pending == null) {
+                    own = new CompletableFuture<>();
+                    loading.put(key, own);
+                }
+            }
+            if (own != null) {
+                EmailMessage email = null;
+                try {
+                    email = fetch(messageNumber, key);
+                    return email;
+                } finally {
+                    own.complete(email);
+                }
+            }
+            try {
+                EmailMessage email = pending.get();
+                if (email != null) {
+                    return renumber(email, messageNumber);
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return null;
+            } catch (ExecutionException | CancellationException e) {
+                // 预取失败，重新检查后直接下载
+            }
+        }
+    }
+
+    /**
+     * 查询缓存，不触发下载
+     * @param messageNumber 邮件序号
+     * @return 缓存的邮件，不存在时返回null
+     */
+    public synchronized EmailMessage getCached(int messageNumber) {
+        EmailMessage cached = cache.get(keyOf(messageNumber));
+        return cached != null ? renumber(cached, messageNumber) : null;
+    }
+
+    /**
+     * 打开第N封邮件后预取相邻的邮件
+     * 按与当前邮件的距离交替向后、向前预取，跳过已缓存的邮件和超出本轮预算的邮件
+     * @param messageNumbers 列表中邮件序号的显示顺序
+     * @param currentIndex 当前邮件在列表中的位置
+     * @param sizes 邮件序号到大小的映射（来自LIST），未知时可以为空
+     */
+    public void prefetchAround(List<Integer> messageNumbers, int currentIndex, Map<Integer, Long> sizes) {
+        int myRound = ++round;
+        List<Integer> candidates = new ArrayList<>();
+        for (int distance = 1; distance <= DEFAULT_PREFETCH_COUNT; distance++) {
+            if (currentIndex + distance < messageNumbers.size()) {
+                candidates.add(messageNumbers.get(currentIndex + distance));
+            }
+            if (currentIndex - distance >= 0) {
+                candidates.add(messageNumbers.get(currentIndex - distance));
+            }
+        }
+
+        long budget = prefetchBudget;
+        for (int number : candidates) {
+            long size = sizes.getOrDefault(number, 0L);
+            if (size > budget) {
+                continue;  // 太大的邮件不预取，打开时再下载
+            }
+            String key = keyOf(number);
+            synchronized (this) {
+                if (cache.containsKey(key) || loading.containsKey(key)) {
+                    continue;
+                }
+                budget -= size;
+                loading.put(key, executor.submit(() -> {
+                    if (myRound != round) {
+                        // 已打开其他邮件，放弃本轮剩余的预取
+                        synchronized (this) {
+                            loading.remove(key);
+                        }
+                        return null;
+                    }
+                    return fetch(number, key);
+                }));
+            }
+        }
+    }
+
+    /**
+     * 下载并解析一封邮件，放入缓存
+     */
+    private EmailMessage fetch(int messageNumber, String key) {
+        try {
+            byte[] content = client.retrieveMessageBytes(messageNumber);
+            if (content == null) {
+                return null;
+            }
+            EmailMessage email = new EmailMessage(messageNumber, content);
+            put(key, email, content.length);
+            return email;
+        } finally {
+            synchronized (this) {
+                loading.remove(key);
+            }
+        }
+    }
+
+    /**
+     * 放入缓存，超出预算时淘汰最久未访问的邮件
+     */
+    private synchronized void put(String key, EmailMessage email, long size) {
+        if (size > cacheBudget) {
+            return;
+        }
+        EmailMessage old = cache.put(key, email);
+        if (old != null) {
+            cachedBytes -= old.getRawBytes().length;
+        }
+        cachedBytes += size;
+        Iterator<EmailMessage> it = cache.values().iterator();
+        while (cachedBytes > cacheBudget && it.hasNext()) {
+            cachedBytes -= it.next().getRawBytes().length;
+            it.remove();
+        }
+    }
+
+    /**
+     * 缓存键：有UIDL时使用UIDL，重新连接后序号变化仍能命中；否则使用本次会话的序号
+     */
+    private synchronized String keyOf(int messageNumber) {
+        String uid = uidlMap != null ? uidlMap.get(messageNumber) : null;
+        return uid != null ? uid : "#" + messageNumber;
+    }
+
+    /**
+     * 重新连接后同一封邮件的序号可能不同，按当前序号重新构造邮件对象
+     */
+    private static EmailMessage renumber(EmailMessage email, int messageNumber) {
+        return email.getMessageNumber() == messageNumber ? email : new EmailMessage(messageNumber, email.getRawBytes());
+    }
+
+    /**
+     * 从缓存中移除一封邮件，删除邮件后调用
+     * @param messageNumber 邮件序号
+     */
+    public synchronized void invalidate(int messageNumber) {
+        EmailMessage removed = cache.remove(keyOf(messageNumber));
+        if (removed != null) {
+            cachedBytes -= removed.getRawBytes().length;
+        }
+    }
+
+    /**
+     * 清空缓存并放弃未完成的预取，断开连接时调用
+     */
+    public synchronized void clear() {
+        round++;
+        for (Future<EmailMessage> future : loading.values()) {
+            future.cancel(false);
+        }
+        loading.clear();
+        cache.clear();
+        cachedBytes = 0;
+    }
+
+    public synchronized int getCachedCount() { return cache.size(); }
+    public synchronized long getCachedBytes() { return cachedBytes; }
+
+    /**
+     * 停止预取线程
+     */
+    @Override
+    public void close() {
+        clear();
+        executor.shutdownNow();
+    }
+}
@@ -0,0 +1,213 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Flow;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 邮件发布者
+ * 以Flow.Publisher的形式逐封发布邮箱中的邮件，只在订阅者请求时才发送RETR：
+ * 每次最多下载订阅者尚未满足的请求数量（服务器支持PIPELINING时这些RETR以流水线方式发送），
+ * 下游处理变慢时下载随之放慢，内存中不会积压整个邮箱。
+ * 服务器拒绝的邮件（例如已被其他客户端删除）被跳过；网络异常以onError结束订阅。
+ * 每个发布者只能被订阅一次。
+ */
+public class MessagePublisher implements Flow.Publisher<EmailMessage> {
+    private static final int MAX_BATCH = 64; // 单批最多发送的RETR数量
+    // 默认执行器：空闲线程60秒后回收，不会为每个发布者常驻一个线程
+    private static final Executor DEFAULT_EXECUTOR = Executors.newCachedThreadPool(r -> {
+        Thread thread = new Thread(r, "pop3-publisher");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final POP3SSLClient client;
+    private final List<Integer> messageNumbers; // 要发布的邮件序号，为null时订阅时从LIST获取
+    private final Executor executor;            // 下载和发送信号使用的执行器
+    private final AtomicBoolean subscribed = new AtomicBoolean();
+
+    /**
+     * 构造函数，发布邮箱中的全部邮件
+     * @param client 已登录的客户端
+     */
+    public MessagePublisher(POP3SSLClient client) {
+        this(client, null);
+    }
+
+    /**
+     * 构造函数
+     * @param client 已登录的客户端
+     * @param messageNumbers 要发布的邮件序号，为null时发布全部邮件
+     */
+    public MessagePublisher(POP3SSLClient client, List<Integer> messageNumbers) {
+        this(client, messageNumbers, DEFAULT_EXECUTOR);
+    }
+
+    /**
+     * 构造函数
+     * @param client 已登录的客户端
+     * @param messageNumbers 要发布的邮件序号，为null时发布全部邮件
+     * @param executor 下载和发送信号使用的执行器
+     */
+    public MessagePublisher(POP3SSLClient client, List<Integer> messageNumbers, Executor executor) {
+        this.client = client;
+        this.messageNumbers = messageNumbers;
+        this.executor = executor;
+    }
+
+    @Override
+    public void subscribe(Flow.Subscriber<? super EmailMessage> subscriber) {
+        if (subscriber == null) {
+            throw new NullPointerException("subscriber");
+        }
+        MessageSubscription subscription = new MessageSubscription(subscriber);
+        if (!subscribed.compareAndSet(false, true)) {
+            subscriber.onSubscribe(subscription);
+            subscription.terminate(new IllegalStateException("该发布者只能被订阅一次"));
+            return;
+        }
+        subscriber.onSubscribe(subscription);
+    }
+
+    /**
+     * 订阅
+     * 所有下载和信号都在drain()中串行执行，同一时刻最多一个线程在处理
+     */
+    private class MessageSubscription implements Flow.Subscription {
+        private final Flow.Subscriber<? super EmailMessage> subscriber;
+        private final AtomicLong demand = new AtomicLong();      // 尚未满足的请求数量
+        private final AtomicInteger wip = new AtomicInteger();   // 待处理的drain次数
+        private volatile boolean cancelled;
+        private volatile Throwable pendingError;                 // request()参数非法等待发送的错误
+        private List<Integer> numbers;                           // 邮件序号，首次drain时确定
+        private int next;                                        // 下一封要下载的邮件下标
+
+        MessageSubscription(Flow.Subscriber<? super EmailMessage> subscriber) {
+            this.subscriber = subscriber;
+        }
+
+        @Override
+        public void request(long n) {
+            if (n <= 0) {
+                pendingError = new IllegalArgumentException("请求数量必须为正数: " + n);  // 规范3.9
+            } else {
+                // 累加请求数量，溢出时视为无限
+                demand.getAndAccumulate(n, (current, add) -> current + add < 0 ? Long.MAX_VALUE : current + add);
+            }
+            schedule();
+        }
+
+        @Override
+        public void cancel() {
+            cancelled = true;
+        }
+
+        private void schedule() {
+            if (wip.getAndIncrement() == 0) {
+                executor.execute(this::drain);
+            }
+        }
+
+        /**
+         * 按请求数量分批下载并发布邮件，直到请求满足、邮件发完或订阅结束
+         */
+        private void drain() {
+            int missed = 1;
+            while (true) {
+                if (cancelled) {
+                    return;
+                }
+                if (pendingError != null) {
+                    terminate(pendingError);
+                    return;
+                }
+                try {
+                    if (numbers == null) {
+                        numbers = messageNumbers != null ? messageNumbers : listAll();
+                    }
+                    while (!cancelled && demand.get() > 0 && next < numbers.size()) {
+                        publishBatch((int) Math.min(Math.min(demand.get(), MAX_BATCH), numbers.size() - next));
+                    }
+                    if (!cancelled && next >= numbers.size()) {
+                        cancelled = true;
+                        subscriber.onComplete();
+                        return;
+                    }
+                } catch (IOException | RuntimeException e) {
+                    terminate(e);
+                    return;
+                }
+
+                missed = wip.addAndGet(-missed);
+                if (missed == 0) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 下载一批邮件，每收到一封就解析并发布
+         * @param count 本批数量，不超过当前请求数量
+         */
+        private void publishBatch(int count) throws IOException {
+            List<Integer> batch = new ArrayList<>(numbers.subList(next, next + count));
+            List<String> commands = new ArrayList<>(count);
+            for (int number : batch) {
+                commands.add("RETR " + number);
+            }
+            next += count;
+
+            client.executeBatch(commands, (index, response) -> {
+                if (cancelled) {
+                    return;  // 已取消：继续读完本批响应以保持连接可用，但不再发布
+                }
+                if (!response.isOk()) {
+                    System.err.println("获取邮件 " + batch.get(index) + " 失败: " + response.getStatusLine());
+                    return;
+                }
+                demand.decrementAndGet();
+                try {
+                    subscriber.onNext(new EmailMessage(batch.get(index), response.getData()));
+                } catch (RuntimeException e) {
+                    // 订阅者抛出异常视为取消订阅（规范2.13）
+                    System.err.println("订阅者处理邮件失败，订阅已取消: " + e);
+                    cancelled = true;
+                }
+            });
+        }
+
+        /**
+         * 获取邮箱中全部邮件的序号
+         */
+        private List<Integer> listAll() throws IOException {
+            POP3Response response = client.executeBatch(List.of("LIST")).get(0);
+            if (!response.isOk()) {
+                throw POP3Exception.of(response);
+            }
+            List<Integer> all = new ArrayList<>();
+            for (String line : response.getLines()) {
+                String[] parts = line.trim().split("\\s+");
+                if (!parts[0].isEmpty()) {
+                    all.add(Integer.parseInt(parts[0]));
+                }
+            }
+            return all;
+        }
+
+        /**
+         * 以错误结束订阅
+         */
+        private void terminate(Throwable error) {
+            if (!cancelled) {
+                cancelled = true;
+                subscriber.onError(error);
+            }
+        }
+    }
+}
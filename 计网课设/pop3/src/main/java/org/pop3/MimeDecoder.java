@@ -1,9 +1,12 @@
 package org.pop3;
-import java.io.ByteArrayInputStream;
-import java.io.ByteArrayOutputStream;
-import java.util.Base64;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
 
 /**
  * MIME解码器类
@@ -11,16 +14,29 @@ import java.util.regex.Pattern;
  * 支持Base64和Quoted-Printable两种编码方式
  */
 public class MimeDecoder {
+    private static final int MAX_CACHED_CHARSETS = 64; // 字符集缓存的上限，字符集名来自邮件，避免无限增长
+
     /**
-     * 编码字符串的正则表达式模式
-     * 匹配格式: =?字符集?编码方式?编码数据?=
-     * 例如: =?UTF-8?B?5Lit5paH?= 或 =?GB2312?Q?=D6=D0=CE=C4?=
+     * 字符集别名
+     * 很多邮件客户端标为GB2312，实际使用GBK中的字符，按GBK解码才不会出现乱码
+     */
+    private static final Map<String, String> CHARSET_ALIASES = Map.of(
+            "gb2312", "GBK",
+            "euc-cn", "GBK",
+            "x-gbk", "GBK",
+            "cp936", "GBK",
+            "utf8", "UTF-8",
+            "latin1", "ISO-8859-1");
+
+    /**
+     * 已查找过的字符集，键为小写的字符集名；不支持的字符集同样缓存为空值
      */
-    private static final Pattern ENCODED_WORD_PATTERN =
-            Pattern.compile("=\\?([^?]+)\\?([BbQq])\\?([^?]+)\\?=");
+    private static final Map<String, Optional<Charset>> CHARSETS = new ConcurrentHashMap<>();
 
     /**
      * 解码MIME编码的文本
+     * 编码字的格式: =?字符集?编码方式?编码数据?=
+     * 例如: =?UTF-8?B?5Lit5paH?= 或 =?GB2312?Q?=D6=D0=CE=C4?=
      * @param encodedText 编码的文本
      * @return 解码后的文本
      */
@@ -29,102 +45,195 @@ public class MimeDecoder {
         if (encodedText == null || encodedText.isEmpty()) {
             return encodedText;
         }
-        // 调用手动解码方法
-        return manualDecode(encodedText);
+        // 不含编码字的文本直接返回
+        int start = encodedText.indexOf("=?");
+        if (start < 0) {
+            return encodedText;
+        }
+        return new WordDecoder(encodedText).decode(start);
     }
 
     /**
-     * 手动解码MIME编码的文本
-     * 使用正则表达式匹配所有编码部分并逐个解码
-     * @param encodedText 编码的文本
-     * @return 解码后的文本
+     * 按名称查找字符集，结果会被缓存
+     * @param name 字符集名，可以带RFC 2231的语言后缀（如UTF-8*zh）
+     * @return 字符集，不支持时返回null
      */
-    private static String manualDecode(String encodedText) {
-        Matcher matcher = ENCODED_WORD_PATTERN.matcher(encodedText);
-        StringBuffer result = new StringBuffer();
-
-        // 查找所有匹配的编码部分
-        while (matcher.find()) {
-            String charset = matcher.group(1);      // 字符集 (如 UTF-8, GB2312)
-            String encoding = matcher.group(2).toUpperCase();  // 编码方式 (B=Base64, Q=Quoted-Printable)
-            String encodedData = matcher.group(3);  // 编码的数据
-
-            // 解码单个编码字符串
-            String decodedWord = decodeWord(charset, encoding, encodedData);
-            // 替换原文中的编码部分为解码后的文本
-            matcher.appendReplacement(result, decodedWord);
+    private static Charset charsetFor(String name) {
+        String key = name.toLowerCase(Locale.ROOT);
+        Optional<Charset> charset = CHARSETS.get(key);
+        if (charset == null) {
+            charset = Optional.ofNullable(lookupCharset(key));
+            if (CHARSETS.size() < MAX_CACHED_CHARSETS) {
+                CHARSETS.put(key, charset);
+            }
         }
+        return charset.orElse(null);
+    }
 
-        // 添加剩余的非编码部分
-        matcher.appendTail(result);
-        return result.toString();
+    private static Charset lookupCharset(String name) {
+        int language = name.indexOf('*');
+        if (language >= 0) {
+            name = name.substring(0, language);
+        }
+        try {
+            return Charset.forName(CHARSET_ALIASES.getOrDefault(name, name));
+        } catch (IllegalArgumentException e) {
+            // 字符集名不合法或不受支持
+            return null;
+        }
     }
 
     /**
-     * 解码单个编码字符串
-     * @param charset 字符集
-     * @param encoding 编码方式 (B或Q)
-     * @param encodedData 编码的数据
-     * @return 解码后的字符串
+     * 单个头部值的解码过程
+     * 逐个扫描编码字，解码结果先以字节暂存：按RFC 2047，相邻编码字之间的空白被忽略，字符集相同时字节直接拼接，
+     * 最后再一起转换为字符串，这样被拆到两个编码字中的多字节字符（如GBK汉字）也能正确解码。
+     * 无法解码的编码字（字符集不受支持）保留原文。
      */
-    private static String decodeWord(String charset, String encoding, String encodedData) {
-        try {
-            byte[] decodedBytes;
-
-            if ("B".equals(encoding)) {
-                // Base64解码
-                decodedBytes = Base64.getDecoder().decode(encodedData);
-            } else if ("Q".equals(encoding)) {
-                // Quoted-Printable解码
-                decodedBytes = decodeQuotedPrintable(encodedData);
-            } else {
-                // 未知编码方式，返回原文
-                return "=?" + charset + "?" + encoding + "?" + encodedData + "?=";
+    private static class WordDecoder extends OutputStream {
+        private final String text;
+        private final StringBuilder result;
+        private byte[] pending = new byte[64]; // 暂存的解码字节
+        private int pendingLength;
+        private Charset pendingCharset;        // 暂存字节的字符集，null表示没有暂存
+        private byte[] encoded;                // 编码数据转为字节的临时缓冲区
+        private DecodingOutputStream base64Decoder;
+        private DecodingOutputStream qDecoder;
+
+        // 当前编码字的各段位置
+        private int charsetEnd;
+        private char encoding;
+        private int dataStart;
+        private int dataEnd;
+
+        WordDecoder(String text) {
+            this.text = text;
+            this.result = new StringBuilder(text.length());
+        }
+
+        String decode(int start) {
+            int copied = 0;          // text中已处理到的位置
+            int lastWordEnd = -1;    // 上一个成功解码的编码字的结束位置
+            int pos = start;
+            while (pos >= 0) {
+                int end = parseWord(pos);
+                if (end < 0) {
+                    // 不是编码字，按普通文本处理
+                    pos = text.indexOf("=?", pos + 1);
+                    continue;
+                }
+                Charset charset = charsetFor(text.substring(pos + 2, charsetEnd));
+                if (charset == null) {
+                    // 字符集不受支持，保留原文
+                    flushPending();
+                    result.append(text, copied, end);
+                    lastWordEnd = -1;
+                } else {
+                    boolean adjacent = copied == lastWordEnd && isWhitespace(copied, pos);
+                    if (!adjacent || !charset.equals(pendingCharset)) {
+                        flushPending();
+                        if (!adjacent) {
+                            result.append(text, copied, pos);
+                        }
+                        pendingCharset = charset;
+                    }
+                    decodeData();
+                    lastWordEnd = end;
+                }
+                copied = end;
+                pos = text.indexOf("=?", end);
             }
+            flushPending();
+            result.append(text, copied, text.length());
+            return result.toString();
+        }
 
-            // 使用指定字符集创建字符串
-            return new String(decodedBytes, charset);
-        } catch (Exception e) {
-            // 解码失败，返回原文
-            return "=?" + charset + "?" + encoding + "?" + encodedData + "?=";
+        /**
+         * 解析pos处的编码字，成功时记录各段位置
+         * @param pos "=?"的位置
+         * @return 编码字的结束位置（"?="之后），不是编码字时返回-1
+         */
+        private int parseWord(int pos) {
+            int length = text.length();
+            charsetEnd = text.indexOf('?', pos + 2);
+            if (charsetEnd <= pos + 2 || charsetEnd + 2 >= length || text.charAt(charsetEnd + 2) != '?') {
+                return -1;
+            }
+            encoding = Character.toUpperCase(text.charAt(charsetEnd + 1));
+            if (encoding != 'B' && encoding != 'Q') {
+                return -1;
+            }
+            dataStart = charsetEnd + 3;
+            dataEnd = text.indexOf('?', dataStart);
+            if (dataEnd <= dataStart || dataEnd + 1 >= length || text.charAt(dataEnd + 1) != '=') {
+                return -1;
+            }
+            return dataEnd + 2;
         }
-    }
 
-    /**
-     * 解码Quoted-Printable编码的数据
-     * Quoted-Printable编码规则：
-     * - 下划线(_)表示空格
-     * - =XX表示一个字节，XX是该字节的十六进制表示
-     *
-     * @param encoded 编码的字符串
-     * @return 解码后的字节数组
-     */
-    private static byte[] decodeQuotedPrintable(String encoded) {
-        // 将下划线替换为空格
-        encoded = encoded.replace('_', ' ');
-
-        ByteArrayInputStream bais = new ByteArrayInputStream(encoded.getBytes());
-        ByteArrayOutputStream baos = new ByteArrayOutputStream();
-
-        int b;
-        // 逐字节处理
-        while ((b = bais.read()) != -1) {
-            if (b == '=') {
-                // 读取接下来的两个字符作为十六进制数
-                int b1 = bais.read();
-                int b2 = bais.read();
-                if (b1 != -1 && b2 != -1) {
-                    // 将十六进制字符转换为字节值
-                    int value = Character.digit((char) b1, 16) * 16 +
-                            Character.digit((char) b2, 16);
-                    baos.write(value);
+        /**
+         * 解码当前编码字的数据，结果追加到暂存字节
+         */
+        private void decodeData() {
+            int length = dataEnd - dataStart;
+            if (encoded == null || encoded.length < length) {
+                encoded = new byte[Math.max(length, text.length())];
+            }
+            for (int i = 0; i < length; i++) {
+                encoded[i] = (byte) text.charAt(dataStart + i);
+            }
+            DecodingOutputStream decoder;
+            if (encoding == 'B') {
+                if (base64Decoder == null) {
+                    base64Decoder = new Base64DecodingOutputStream(this, text.length());
                 }
+                decoder = base64Decoder;
             } else {
-                // 普通字符，直接写入
-                baos.write(b);
+                if (qDecoder == null) {
+                    qDecoder = new QuotedPrintableDecodingOutputStream(this, true, text.length());
+                }
+                decoder = qDecoder;
+            }
+            try {
+                decoder.write(encoded, 0, length);
+                decoder.finish();
+            } catch (IOException e) {
+                throw new IllegalStateException(e);  // 写入内存不会失败
             }
         }
-        return baos.toByteArray();
-    }
 
-}
\ No newline at end of file
+        private boolean isWhitespace(int from, int to) {
+            for (int i = from; i < to; i++) {
+                char c = text.charAt(i);
+                if (c != ' ' && c != '\t' && c != '\r' && c != '\n') {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        /**
+         * 把暂存的字节按字符集转换为字符串，追加到结果
+         */
+        private void flushPending() {
+            if (pendingCharset != null) {
+                result.append(new String(pending, 0, pendingLength, pendingCharset));
+                pendingLength = 0;
+                pendingCharset = null;
+            }
+        }
+
+        @Override
+        public void write(int b) {
+            write(new byte[]{(byte) b}, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            if (pendingLength + len > pending.length) {
+                pending = Arrays.copyOf(pending, Math.max(pending.length * 2, pendingLength + len));
+            }
+            System.arraycopy(b, off, pending, pendingLength, len);
+            pendingLength += len;
+        }
+    }
+}
@@ -0,0 +1,453 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 事件驱动的MIME流式解析器
+ * 对原始邮件字节只扫描一遍，按文档顺序回调开始部分、邮件头、正文片段、结束部分等事件（类似SAX），
+ * 不把邮件拆成行数组，也不按boundary切分字符串。multipart的分隔行只在行首识别（RFC 2046），
+ * 外层boundary同样会结束内层尚未关闭的部分；分隔行之前的换行属于分隔符，不计入正文。
+ * 正文区域用BoundaryScanner查找下一个候选分隔行，其间的数据整段回调，不逐行处理。
+ * 从输入流解析时只保留一个固定大小的读缓冲区和当前部分的邮件头，内存占用与邮件大小无关；
+ * 从字节数组解析时直接在原数组上回调正文片段，不复制数据。
+ * 正文片段按原始字节回调（未做传输解码），邮件头的值按ISO-8859-1还原为字符串，每个字符对应一个原始字节。
+ */
+public class MimeStreamParser {
+    private static final int DEFAULT_BUFFER_SIZE = 8192; // 输入流模式的读缓冲区大小
+    private static final byte[] LF = {'\n'};
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * 解析事件处理器
+     */
+    public interface Handler {
+        /**
+         * 开始一个部分
+         * @param depth 嵌套深度，邮件本身为0
+         */
+        default void startPart(int depth) throws IOException {}
+
+        /**
+         * 一个完整的邮件头（折叠行已展开）
+         * @param name 名称
+         * @param value 值，已去掉首尾空白
+         */
+        default void header(String name, String value) throws IOException {}
+
+        /**
+         * 当前部分的邮件头结束，此时getOffset()为正文的起始位置
+         */
+        default void endHeaders() throws IOException {}
+
+        /**
+         * 一段正文原始字节，只对非multipart部分回调；缓冲区在回调返回后可能被覆盖
+         * @param buffer 缓冲区
+         * @param offset 起始位置
+         * @param length 长度
+         */
+        default void body(byte[] buffer, int offset, int length) throws IOException {}
+
+        /**
+         * 结束当前部分，此时getOffset()为正文的结束位置（不含分隔行之前的换行）
+         */
+        default void endPart() throws IOException {}
+    }
+
+    /**
+     * 解析栈中的一个部分
+     */
+    private static class Frame {
+        BoundaryScanner scanner; // multipart的分隔行扫描器，非multipart为null
+        boolean inHeaders = true;
+    }
+
+    private final Handler handler;
+    private final int bufferSize;
+    private final List<Frame> stack = new ArrayList<>();
+    private final StringBuilder pendingHeader = new StringBuilder(); // 尚未结束的邮件头（可能跨多个折叠行）
+
+    private InputStream in;        // 输入流，按字节数组解析时为null
+    private byte[] buf;
+    private int pos;               // 下一行在缓冲区中的起始位置
+    private int limit;             // 缓冲区中有效数据的结束位置
+    private long base;             // 缓冲区下标0对应的输入位置
+    private boolean eof;
+
+    private int lineStart;         // 当前行的起始位置
+    private int contentEnd;        // 当前行内容的结束位置（不含换行）
+    private int lineEnd;           // 当前行的结束位置（含换行）
+    private boolean atLineStart = true; // 当前片段是否位于行首（超长行被分段时后续片段不在行首）
+    private boolean nextAtLineStart;
+    private byte[] pendingEol;     // 上一行正文的换行，遇到分隔行时丢弃
+    private long bodyEnd;          // 当前部分正文的结束位置
+    private long offset;           // 当前事件的输入位置
+
+    /**
+     * 构造函数
+     * @param handler 事件处理器
+     */
+    public MimeStreamParser(Handler handler) {
+        this(handler, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 构造函数
+     * @param handler 事件处理器
+     * @param bufferSize 输入流模式的读缓冲区大小，超过该长度的行会分段回调
+     */
+    public MimeStreamParser(Handler handler, int bufferSize) {
+        this.handler = handler;
+        this.bufferSize = bufferSize;
+    }
+
+    /**
+     * 解析输入流中的邮件，读到流结束为止
+     * @param input 原始邮件字节流（CRLF或LF分行，不含POP3的字节填充）
+     * @throws IOException 读取失败或处理器抛出的异常
+     */
+    public void parse(InputStream input) throws IOException {
+        this.in = input;
+        this.buf = new byte[bufferSize];
+        this.pos = 0;
+        this.limit = 0;
+        this.base = 0;
+        run();
+    }
+
+    /**
+     * 解析字节数组中的邮件，正文片段直接指向该数组
+     * @param data 原始邮件字节
+     * @param from 起始位置
+     * @param length 长度
+     */
+    public void parse(byte[] data, int from, int length) {
+        this.in = null;
+        this.buf = data;
+        this.pos = from;
+        this.limit = from + length;
+        this.base = -from;  // 位置从邮件开头算起
+        try {
+            run();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);  // 处理器抛出的异常
+        }
+    }
+
+    /**
+     * 获取当前事件在输入中的位置（从邮件开头算起的字节数）
+     * 在endHeaders()中为正文起始位置，在endPart()中为正文结束位置
+     * @return 位置
+     */
+    public long getOffset() {
+        return offset;
+    }
+
+    private void run() throws IOException {
+        stack.clear();
+        pendingHeader.setLength(0);
+        pendingEol = null;
+        eof = false;
+        atLineStart = true;
+        startPart();
+
+        while (true) {
+            Frame frame = stack.get(stack.size() - 1);
+            if (!frame.inHeaders && atLineStart) {
+                skipBody(frame);
+            }
+            if (!nextLine()) {
+                break;
+            }
+            if (frame.inHeaders) {
+                headerLine(frame);
+            } else if (!atLineStart || !boundaryLine()) {
+                bodyLine(frame);
+            }
+            pos = lineEnd;
+            atLineStart = nextAtLineStart;
+        }
+
+        // 输入结束：最后一个部分的正文包含末尾的换行，multipart部分在输入末尾结束
+        lineStart = limit;
+        Frame top = stack.get(stack.size() - 1);
+        if (top.inHeaders) {
+            endHeaders(top);
+        } else if (pendingEol != null && top.scanner == null) {
+            handler.body(pendingEol, 0, pendingEol.length);
+            bodyEnd += pendingEol.length;
+        }
+        pendingEol = null;
+        while (!stack.isEmpty()) {
+            endPart();
+        }
+    }
+
+    /**
+     * 读取下一行（或超长行的下一段）
+     * @return 是否还有数据
+     */
+    private boolean nextLine() throws IOException {
+        int scan = pos;
+        while (true) {
+            for (int i = scan; i < limit; i++) {
+                if (buf[i] == '\n') {
+                    lineStart = pos;
+                    lineEnd = i + 1;
+                    contentEnd = i > pos && buf[i - 1] == '\r' ? i - 1 : i;
+                    nextAtLineStart = true;
+                    return true;
+                }
+            }
+            if (in == null || eof) {
+                break;
+            }
+            // 把未处理的数据移到缓冲区开头，再读入更多数据
+            if (pos > 0) {
+                System.arraycopy(buf, pos, buf, 0, limit - pos);
+                base += pos;
+                limit -= pos;
+                pos = 0;
+            }
+            if (limit == buf.length) {
+                // 超长行：整个缓冲区作为一段回调，保留末尾的\r以免拆开CRLF
+                lineStart = 0;
+                lineEnd = buf[limit - 1] == '\r' ? limit - 1 : limit;
+                contentEnd = lineEnd;
+                nextAtLineStart = false;
+                return true;
+            }
+            scan = limit;
+            int n = in.read(buf, limit, buf.length - limit);
+            if (n < 0) {
+                eof = true;
+            } else {
+                limit += n;
+            }
+        }
+        if (pos < limit) {
+            // 最后一行没有换行
+            lineStart = pos;
+            lineEnd = limit;
+            contentEnd = limit;
+            nextAtLineStart = true;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * 处理邮件头区域的一行
+     */
+    private void headerLine(Frame frame) throws IOException {
+        if (!atLineStart) {
+            appendHeader(lineStart, contentEnd);  // 超长邮件头的后续片段
+            return;
+        }
+        if (isBlank(lineStart, contentEnd)) {
+            flushHeader(frame);
+            offset = base + lineEnd;
+            endHeaders(frame);
+            return;
+        }
+        byte first = buf[lineStart];
+        if (first == ' ' || first == '\t') {
+            // 折叠行：以一个空格连接到上一行
+            int start = lineStart;
+            while (start < contentEnd && (buf[start] == ' ' || buf[start] == '\t')) {
+                start++;
+            }
+            pendingHeader.append(' ');
+            appendHeader(start, contentEnd);
+        } else {
+            flushHeader(frame);
+            appendHeader(lineStart, contentEnd);
+        }
+    }
+
+    private void appendHeader(int from, int to) {
+        for (int i = from; i < to; i++) {
+            pendingHeader.append((char) (buf[i] & 0xFF));
+        }
+    }
+
+    /**
+     * 回调一个完整的邮件头；Content-Type为multipart时记录boundary
+     */
+    private void flushHeader(Frame frame) throws IOException {
+        if (pendingHeader.length() == 0) {
+            return;
+        }
+        String line = pendingHeader.toString();
+        pendingHeader.setLength(0);
+        int colon = line.indexOf(':');
+        if (colon <= 0) {
+            return;  // 不是合法的邮件头
+        }
+        String name = line.substring(0, colon).trim();
+        String value = line.substring(colon + 1).trim();
+        if (name.equalsIgnoreCase("Content-Type")) {
+            String boundary = boundaryOf(value);
+            frame.scanner = boundary != null ? new BoundaryScanner(boundary) : null;
+        }
+        handler.header(name, value);
+    }
+
+    private void endHeaders(Frame frame) throws IOException {
+        flushHeader(frame);
+        frame.inHeaders = false;
+        bodyEnd = offset;
+        handler.endHeaders();
+    }
+
+    /**
+     * 跳过正文中不含分隔行的数据：在缓冲区中查找各层boundary最近的候选分隔行，之前的数据整段回调；
+     * 找不到时处理到缓冲区中最后一个完整行为止，不完整的行（可能是尚未读全的分隔行）留给逐行处理。
+     * 从最内层向外查找，外层只在内层已找到的位置之前查找，每个部分的查找量与部分本身的大小成正比
+     */
+    private void skipBody(Frame frame) throws IOException {
+        int end = -1;
+        for (int level = stack.size() - 1; level >= 0; level--) {
+            Frame open = stack.get(level);
+            if (open.scanner != null && !open.inHeaders) {
+                int index = open.scanner.find(buf, pos, end >= 0 ? Math.min(limit, end + open.scanner.getDelimiterLength()) : limit);
+                if (index >= 0 && (end < 0 || index < end)) {
+                    end = index;
+                }
+            }
+        }
+        if (end < 0) {
+            end = limit;
+            while (end > pos && buf[end - 1] != '\n') {
+                end--;
+            }
+        }
+        if (end <= pos) {
+            return;
+        }
+
+        // [pos, end)由完整的行组成，最后一个换行暂不回调
+        int eolStart = end > pos + 1 && buf[end - 2] == '\r' ? end - 2 : end - 1;
+        if (frame.scanner == null) {
+            if (pendingEol != null) {
+                handler.body(pendingEol, 0, pendingEol.length);
+            }
+            if (eolStart > pos) {
+                handler.body(buf, pos, eolStart - pos);
+            }
+            bodyEnd = base + eolStart;
+            pendingEol = end - eolStart == 2 ? CRLF : LF;
+        }
+        pos = end;
+    }
+
+    /**
+     * 处理正文区域的一行：叶子部分回调正文，multipart的前言和结语被忽略
+     */
+    private void bodyLine(Frame frame) throws IOException {
+        if (frame.scanner != null) {
+            return;
+        }
+        if (pendingEol != null) {
+            handler.body(pendingEol, 0, pendingEol.length);
+            pendingEol = null;
+        }
+        if (contentEnd > lineStart) {
+            handler.body(buf, lineStart, contentEnd - lineStart);
+        }
+        bodyEnd = base + contentEnd;
+        if (lineEnd > contentEnd) {
+            pendingEol = lineEnd - contentEnd == 2 ? CRLF : LF;
+        }
+    }
+
+    /**
+     * 判断当前行是否为某一层multipart的分隔行，是则结束内层部分并开始下一个部分
+     * @return 是否为分隔行
+     */
+    private boolean boundaryLine() throws IOException {
+        int length = contentEnd - lineStart;
+        if (length < 2 || buf[lineStart] != '-' || buf[lineStart + 1] != '-') {
+            return false;
+        }
+        for (int level = stack.size() - 1; level >= 0; level--) {
+            BoundaryScanner scanner = stack.get(level).scanner;
+            if (scanner == null || stack.get(level).inHeaders || !scanner.matches(buf, lineStart, contentEnd)) {
+                continue;
+            }
+            int rest = lineStart + scanner.getDelimiterLength();
+            boolean close = rest + 1 < contentEnd && buf[rest] == '-' && buf[rest + 1] == '-';
+            if (close) {
+                rest += 2;
+            }
+            if (!isBlank(rest, contentEnd)) {
+                continue;  // boundary只是该行的前缀
+            }
+
+            // 分隔行之前的换行属于分隔符
+            pendingEol = null;
+            while (stack.size() > level + 1) {
+                Frame inner = stack.get(stack.size() - 1);
+                if (inner.inHeaders) {
+                    offset = base + lineStart;
+                    endHeaders(inner);
+                }
+                endPart();
+            }
+            if (!close) {
+                startPart();
+            }
+            return true;
+        }
+        return false;
+    }
+
+    private void startPart() throws IOException {
+        stack.add(new Frame());
+        handler.startPart(stack.size() - 1);
+    }
+
+    private void endPart() throws IOException {
+        Frame frame = stack.remove(stack.size() - 1);
+        offset = frame.scanner == null ? bodyEnd : base + lineStart;
+        handler.endPart();
+    }
+
+    private boolean isBlank(int from, int to) {
+        for (int i = from; i < to; i++) {
+            if (buf[i] != ' ' && buf[i] != '\t' && buf[i] != '\r') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 从Content-Type的值中提取multipart的boundary
+     * @param contentType Content-Type的值
+     * @return boundary，不是multipart或没有boundary参数时返回null
+     */
+    static String boundaryOf(String contentType) {
+        String lower = contentType.toLowerCase();
+        if (!lower.startsWith("multipart/")) {
+            return null;
+        }
+        int index = lower.indexOf("boundary=");
+        if (index < 0) {
+            return null;
+        }
+        String value = contentType.substring(index + 9);
+        if (value.startsWith("\"")) {
+            int endQuote = value.indexOf('"', 1);
+            return endQuote > 1 ? value.substring(1, endQuote) : null;
+        }
+        int end = 0;
+        while (end < value.length() && value.charAt(end) != ';' && !Character.isWhitespace(value.charAt(end))) {
+            end++;
+        }
+        return end > 0 ? value.substring(0, end).replace("'", "") : null;
+    }
+}
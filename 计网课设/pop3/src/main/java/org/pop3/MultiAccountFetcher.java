@@ -0,0 +1,310 @@
+package org.pop3;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.lang.reflect.Method;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+
+/**
+ * 多账户并行收取引擎
+ * 每个账户的会话运行在独立的虚拟线程上（JDK 21及以上），阻塞式套接字读写不会占用操作系统线程，
+ * 一个JVM即可同时轮询数百个邮箱；在JDK 17上退化为大小等于全局并发上限的平台线程池。
+ * 全局并发数和每台服务器的连接数都有上限，避免触发服务器的连接限制。
+ */
+public class MultiAccountFetcher implements AutoCloseable {
+    private final int maxConcurrency;       // 全局并发会话上限
+    private final int maxPerServer;         // 每台服务器的连接数上限
+    private final Semaphore globalPermits;  // 全局并发许可
+    private final ConcurrentHashMap<String, ServerQueue> serverQueues = new ConcurrentHashMap<>();
+    private final ExecutorService executor; // 会话执行器
+    private final boolean virtualThreads;   // 是否使用虚拟线程
+
+    /**
+     * 账户任务
+     * 在已登录的会话中执行，返回本次处理的邮件数量
+     */
+    public interface AccountTask {
+        /**
+         * 处理一个账户
+         * @param account 账户配置
+         * @param client 已登录的客户端
+         * @return 处理的邮件数量
+         * @throws IOException 处理失败
+         */
+        int run(AccountProfile account, POP3SSLClient client) throws IOException;
+    }
+
+    /**
+     * 同一台服务器的账户队列
+     * 只有取得连接名额的会话才提交给执行器，其余在队列中等待，不占用执行器的线程
+     */
+    private static class ServerQueue {
+        private final ArrayDeque<PendingFetch> waiting = new ArrayDeque<>(); // 等待连接名额的会话
+        private int running;                                                  // 已提交给执行器的会话数
+    }
+
+    /**
+     * 尚未执行的账户会话
+     */
+    private static class PendingFetch {
+        private final ServerQueue queue;
+        private final AccountProfile account;
+        private final AccountTask task;
+        private final CompletableFuture<FetchResult> result = new CompletableFuture<>();
+
+        PendingFetch(ServerQueue queue, AccountProfile account, AccountTask task) {
+            this.queue = queue;
+            this.account = account;
+            this.task = task;
+        }
+    }
+
+    /**
+     * 单个账户的收取结果
+     */
+    public static class FetchResult {
+        private final AccountProfile account;
+        private final int messageCount;     // 处理的邮件数量
+        private final String error;         // 错误信息，成功时为null
+        private final long elapsedMillis;   // 耗时（毫秒）
+
+        FetchResult(AccountProfile account, int messageCount, String error, long elapsedMillis) {
+            this.account = account;
+            this.messageCount = messageCount;
+            this.error = error;
+            this.elapsedMillis = elapsedMillis;
+        }
+
+        public AccountProfile getAccount() { return account; }
+        public int getMessageCount() { return messageCount; }
+        public String getError() { return error; }
+        public long getElapsedMillis() { return elapsedMillis; }
+        public boolean isSuccess() { return error == null; }
+
+        @Override
+        public String toString() {
+            return account + (isSuccess() ? " 成功，邮件 " + messageCount + " 封" : " 失败: " + error)
+                    + "，耗时 " + elapsedMillis + " ms";
+        }
+    }
+
+    /**
+     * 构造函数
+     * @param maxConcurrency 全局并发会话上限
+     * @param maxPerServer 每台服务器的连接数上限
+     */
+    public MultiAccountFetcher(int maxConcurrency, int maxPerServer) {
+        this.maxConcurrency = maxConcurrency;
+        this.maxPerServer = maxPerServer;
+        this.globalPermits = new Semaphore(maxConcurrency, true);
+
+        ExecutorService virtualExecutor = createVirtualThreadExecutor();
+        this.virtualThreads = virtualExecutor != null;
+        this.executor = virtualThreads ? virtualExecutor : Executors.newFixedThreadPool(maxConcurrency, r -> {
+            Thread thread = new Thread(r, "pop3-fetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 创建虚拟线程执行器
+     * 通过反射调用Executors.newVirtualThreadPerTaskExecutor()，使代码仍可在JDK 17上编译运行
+     * @return 虚拟线程执行器，当前JDK不支持时返回null
+     */
+    private static ExecutorService createVirtualThreadExecutor() {
+        try {
+            Method factory = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+            return (ExecutorService) factory.invoke(null);
+        } catch (ReflectiveOperationException | UnsupportedOperationException e) {
+            return null;
+        }
+    }
+
+    /**
+     * 并行收取所有账户，等待全部完成
+     * @param accounts 账户列表
+     * @param task 每个账户登录后执行的任务
+     * @return 与账户一一对应的结果列表
+     */
+    public List<FetchResult> fetchAll(List<AccountProfile> accounts, AccountTask task) {
+        List<PendingFetch> fetches = new ArrayList<>(accounts.size());
+        for (AccountProfile account : accounts) {
+            ServerQueue queue = serverQueues.computeIfAbsent(account.getServer().toLowerCase(), key -> new ServerQueue());
+            PendingFetch fetch = new PendingFetch(queue, account, task);
+            fetches.add(fetch);
+            schedule(fetch);
+        }
+
+        List<FetchResult> results = new ArrayList<>(accounts.size());
+        for (int i = 0; i < fetches.size(); i++) {
+            try {
+                results.add(fetches.get(i).result.get());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                results.add(new FetchResult(accounts.get(i), 0, "已中断", 0));
+            } catch (ExecutionException e) {
+                results.add(new FetchResult(accounts.get(i), 0, String.valueOf(e.getCause()), 0));
+            }
+        }
+        return results;
+    }
+
+    /**
+     * 服务器的连接数未达上限时立即提交会话，否则放入该服务器的等待队列
+     * 等待连接名额的会话不占用执行器的线程，一台繁忙的服务器不会挡住其他服务器的账户
+     * @param fetch 会话
+     */
+    private void schedule(PendingFetch fetch) {
+        ServerQueue queue = fetch.queue;
+        synchronized (queue) {
+            if (queue.running >= maxPerServer) {
+                queue.waiting.add(fetch);
+                return;
+            }
+            queue.running++;
+        }
+        if (!submit(fetch)) {
+            release(queue);
+        }
+    }
+
+    /**
+     * 把已取得连接名额的会话提交给执行器
+     * @param fetch 会话
+     * @return 是否已提交，执行器已关闭时以失败结束该会话并返回false
+     */
+    private boolean submit(PendingFetch fetch) {
+        try {
+            executor.execute(() -> fetchAccount(fetch));
+            return true;
+        } catch (RejectedExecutionException e) {
+            fetch.result.complete(new FetchResult(fetch.account, 0, "收取引擎已关闭", 0));
+            return false;
+        }
+    }
+
+    /**
+     * 会话结束后释放连接名额：有等待的会话时把名额直接交给它
+     * @param queue 服务器队列
+     */
+    private void release(ServerQueue queue) {
+        while (true) {
+            PendingFetch next;
+            synchronized (queue) {
+                next = queue.waiting.poll();
+                if (next == null) {
+                    queue.running--;
+                    return;
+                }
+            }
+            if (submit(next)) {
+                return;
+            }
+        }
+    }
+
+    /**
+     * 收取单个账户
+     * 调用时已取得该服务器的连接名额，再取得全局许可；结束后把名额交给同一服务器的下一个账户
+     * @param fetch 会话
+     */
+    private void fetchAccount(PendingFetch fetch) {
+        try {
+            globalPermits.acquire();
+            try {
+                fetch.result.complete(runSession(fetch.account, fetch.task));
+            } finally {
+                globalPermits.release();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            fetch.result.complete(new FetchResult(fetch.account, 0, "已中断", 0));
+        } catch (Throwable e) {
+            fetch.result.completeExceptionally(e);
+        } finally {
+            release(fetch.queue);
+        }
+    }
+
+    /**
+     * 执行一次完整会话：连接、登录、执行任务、退出
+     * @param account 账户配置
+     * @param task 任务
+     * @return 收取结果
+     */
+    private FetchResult runSession(AccountProfile account, AccountTask task) {
+        long start = System.currentTimeMillis();
+        POP3SSLClient client = account.createClient();
+        try {
+            if (!client.connect()) {
+                return new FetchResult(account, 0, "连接失败", System.currentTimeMillis() - start);
+            }
+            if (!client.login(account.getUsername(), account.getPassword())) {
+                return new FetchResult(account, 0, "登录失败", System.currentTimeMillis() - start);
+            }
+            int count = task.run(account, client);
+            return new FetchResult(account, count, null, System.currentTimeMillis() - start);
+        } catch (IOException | RuntimeException e) {
+            return new FetchResult(account, 0, e.getMessage(), System.currentTimeMillis() - start);
+        } finally {
+            client.quit();
+        }
+    }
+
+    /**
+     * 创建增量同步任务
+     * 每个账户的新邮件保存为"目录/用户名@服务器_端口/UIDL.eml"，不同服务器上的同名账户互不干扰，已下载记录保存在同一目录；
+     * 传输中连接断开时自动重连，从第一封未保存的邮件继续
+     * @param baseDirectory 下载根目录
+     * @return 账户任务
+     */
+    public static AccountTask syncTask(File baseDirectory) {
+        return (account, client) -> {
+            String dirName = account.getUsername() + "@" + account.getServer() + "_" + account.getPort();
+            File dir = new File(baseDirectory, dirName.replaceAll("[^A-Za-z0-9._@-]", "_"));
+            if (!dir.exists()) {
+                dir.mkdirs();
+            }
+            File storeFile = SeenMessageStore.defaultFile(dir, account.getServer(), account.getUsername());
+            try (SeenMessageStore store = new SeenMessageStore(storeFile);
+                 ResilientSession session = new ResilientSession(account, client)) {
+                return session.sync(store, (number, uid, content) -> {
+                    String fileName = uid.replaceAll("[^A-Za-z0-9._-]", "_");
+                    if (!fileName.equals(uid)) {
+                        // 替换过字符的UIDL可能与其他UIDL相同，加上原值的散列区分
+                        fileName += "_" + Integer.toHexString(uid.hashCode());
+                    }
+                    fileName += ".eml";
+                    try (FileOutputStream fos = new FileOutputStream(new File(dir, fileName))) {
+                        fos.write(content);
+                    }
+                });
+            }
+        };
+    }
+
+    public boolean isUsingVirtualThreads() { return virtualThreads; }
+    public int getMaxConcurrency() { return maxConcurrency; }
+    public int getMaxPerServer() { return maxPerServer; }
+
+    /**
+     * 关闭执行器，等待进行中的会话结束，一分钟后仍未结束则中断
+     */
+    @Override
+    public void close() {
+        executor.shutdown();
+        try {
+            if (!executor.awaitTermination(1, TimeUnit.MINUTES)) {
+                executor.shutdownNow();
+            }
+        } catch (InterruptedException e) {
+            executor.shutdownNow();
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,230 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * 非阻塞POP3引擎
+ * 基于SocketChannel、Selector和SSLEngine，用少量事件循环线程驱动大量POP3会话。
+ * 每个会话是一个状态机，只在有数据可读写时占用线程；保持连接的NOOP和命令超时检查
+ * 也在事件循环中完成，不再为每个会话创建读线程和Timer线程，适合大量空闲长连接的网关场景。
+ */
+public class NioPOP3Engine implements AutoCloseable {
+    private static final long SELECT_TIMEOUT = 1000; // 事件循环的最长等待时间（毫秒），用于定时检查
+
+    private final EventLoop[] loops;                 // 事件循环
+    private final AtomicInteger nextLoop = new AtomicInteger(); // 轮询分配会话的计数器
+    private final TLSConfig tlsConfig;               // 创建SSLEngine使用的TLS配置，会话缓存与阻塞客户端共享
+    private volatile long connectTimeoutMillis = 10 * 1000; // TCP连接的超时时间
+    private volatile long greetingTimeoutMillis = 30 * 1000; // TLS握手和等待欢迎消息各自的超时时间
+    private volatile long keepAliveMillis = 30 * 1000;     // 空闲多久后发送NOOP
+    private volatile long commandTimeoutMillis = 60 * 1000; // 命令等待响应的超时时间
+    private volatile boolean running = true;
+
+    /**
+     * 构造函数，使用单个事件循环线程
+     * @throws IOException 创建Selector失败
+     */
+    public NioPOP3Engine() throws IOException {
+        this(1);
+    }
+
+    /**
+     * 构造函数
+     * @param threads 事件循环线程数，会话按轮询方式分配到各线程
+     * @throws IOException 创建Selector失败
+     */
+    public NioPOP3Engine(int threads) throws IOException {
+        this.tlsConfig = TLSConfig.getDefault();
+        if (tlsConfig == null) {
+            throw new IOException("无法创建SSL上下文");
+        }
+
+        loops = new EventLoop[threads];
+        for (int i = 0; i < threads; i++) {
+            loops[i] = new EventLoop(i);
+            loops[i].thread.start();
+        }
+    }
+
+    /**
+     * 打开一个POP3会话
+     * 立即返回，连接、TLS握手、欢迎消息和CAPA在事件循环中异步完成，可通过ready()等待
+     * @param server 服务器地址
+     * @param port 服务器端口
+     * @param useSSL 是否使用SSL加密
+     * @return 会话对象
+     * @throws IOException 打开通道或解析地址失败
+     */
+    public NioPOP3Session openSession(String server, int port, boolean useSSL) throws IOException {
+        if (!running) {
+            throw new IOException("引擎已关闭");
+        }
+
+        InetSocketAddress address = new InetSocketAddress(server, port);
+        if (address.isUnresolved()) {
+            throw new IOException("无法解析服务器地址: " + server);
+        }
+
+        SocketChannel channel = SocketChannel.open();
+        channel.configureBlocking(false);
+        channel.socket().setKeepAlive(true);
+
+        EventLoop loop = loops[Math.floorMod(nextLoop.getAndIncrement(), loops.length)];
+        NioPOP3Session session = new NioPOP3Session(loop, channel, server, port,
+                useSSL ? tlsConfig.createEngine(server, port) : null);
+        loop.execute(() -> {
+            try {
+                loop.sessions.add(session);
+                boolean connected = channel.connect(address);
+                SelectionKey key = channel.register(loop.selector,
+                        connected ? SelectionKey.OP_READ : SelectionKey.OP_CONNECT, session);
+                session.attach(key);
+                if (connected) {
+                    session.onConnected();
+                }
+            } catch (IOException e) {
+                session.fail(e);
+            }
+        });
+        return session;
+    }
+
+    /**
+     * 获取当前会话总数
+     * @return 会话数
+     */
+    public int getSessionCount() {
+        int count = 0;
+        for (EventLoop loop : loops) {
+            count += loop.sessionCount;
+        }
+        return count;
+    }
+
+    public long getConnectTimeoutMillis() { return connectTimeoutMillis; }
+    public void setConnectTimeoutMillis(long connectTimeoutMillis) { this.connectTimeoutMillis = connectTimeoutMillis; }
+    public long getGreetingTimeoutMillis() { return greetingTimeoutMillis; }
+    public void setGreetingTimeoutMillis(long greetingTimeoutMillis) { this.greetingTimeoutMillis = greetingTimeoutMillis; }
+    public long getKeepAliveMillis() { return keepAliveMillis; }
+    public void setKeepAliveMillis(long keepAliveMillis) { this.keepAliveMillis = keepAliveMillis; }
+    public long getCommandTimeoutMillis() { return commandTimeoutMillis; }
+    public void setCommandTimeoutMillis(long commandTimeoutMillis) { this.commandTimeoutMillis = commandTimeoutMillis; }
+
+    /**
+     * 关闭引擎：关闭所有会话并停止事件循环线程
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (EventLoop loop : loops) {
+            loop.selector.wakeup();
+        }
+        for (EventLoop loop : loops) {
+            try {
+                loop.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+    }
+
+    /**
+     * 事件循环
+     * 每个事件循环拥有一个Selector和一个线程，其上会话的所有状态只在该线程中修改
+     */
+    class EventLoop implements Runnable {
+        final Selector selector;
+        final Thread thread;
+        final Set<NioPOP3Session> sessions = new HashSet<>();    // 仅在事件循环线程中访问
+        final ConcurrentLinkedQueue<Runnable> tasks = new ConcurrentLinkedQueue<>(); // 其他线程提交的任务
+        volatile int sessionCount;
+        private final List<NioPOP3Session> timerScan = new ArrayList<>(); // 定时检查时的会话快照，复用以免每轮分配
+        private long lastTimerCheck;                  // 上一次定时检查的时间
+
+        EventLoop(int index) throws IOException {
+            selector = Selector.open();
+            thread = new Thread(this, "pop3-nio-" + index);
+            thread.setDaemon(true);
+        }
+
+        /**
+         * 在事件循环线程中执行任务
+         * @param task 任务
+         */
+        void execute(Runnable task) {
+            if (Thread.currentThread() == thread) {
+                task.run();
+            } else {
+                tasks.add(task);
+                selector.wakeup();
+            }
+        }
+
+        /**
+         * 会话关闭后从事件循环中移除
+         * @param session 会话
+         */
+        void remove(NioPOP3Session session) {
+            sessions.remove(session);
+            sessionCount = sessions.size();
+        }
+
+        @Override
+        public void run() {
+            while (running) {
+                try {
+                    selector.select(SELECT_TIMEOUT);
+                } catch (IOException e) {
+                    System.err.println("事件循环select失败: " + e.getMessage());
+                    break;
+                }
+
+                Runnable task;
+                while ((task = tasks.poll()) != null) {
+                    task.run();
+                }
+
+                Set<SelectionKey> selected = selector.selectedKeys();
+                for (SelectionKey key : selected) {
+                    NioPOP3Session session = (NioPOP3Session) key.attachment();
+                    session.handle(key);
+                }
+                selected.clear();
+
+                // 定时检查：空闲会话发送NOOP，连接建立或命令超时使会话失败
+                // 每个SELECT_TIMEOUT最多扫描一次，I/O事件频繁时不会每次唤醒都遍历全部会话
+                long now = System.currentTimeMillis();
+                if (now - lastTimerCheck >= SELECT_TIMEOUT) {
+                    lastTimerCheck = now;
+                    timerScan.addAll(sessions);  // checkTimers可能移除会话，遍历快照
+                    for (NioPOP3Session session : timerScan) {
+                        session.checkTimers(now, connectTimeoutMillis, greetingTimeoutMillis, keepAliveMillis, commandTimeoutMillis);
+                    }
+                    timerScan.clear();
+                }
+                sessionCount = sessions.size();
+            }
+
+            // 引擎关闭：断开所有会话
+            List<NioPOP3Session> remaining = new ArrayList<>(sessions);
+            for (NioPOP3Session session : remaining) {
+                session.fail(new IOException("引擎已关闭"));
+            }
+            try {
+                selector.close();
+            } catch (IOException e) {
+                // 静默处理关闭异常
+            }
+        }
+    }
+}
@@ -0,0 +1,645 @@
+package org.pop3;
+
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLException;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * 非阻塞POP3会话
+ * 由NioPOP3Engine的事件循环驱动的状态机：连接 → TLS握手 → 欢迎消息 → CAPA → 就绪。
+ * 命令按提交顺序排队，服务器支持PIPELINING时最多64条同时在途，否则逐条发送；
+ * 响应按顺序与命令对应，通过CompletableFuture返回。
+ * 注意：Future在事件循环线程中完成，回调中不要执行阻塞操作，需要时请使用thenApplyAsync等方法。
+ */
+public class NioPOP3Session {
+    private static final int PIPELINE_WINDOW = 64; // 流水线模式下同时在途的最大命令数
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    /**
+     * 会话状态
+     */
+    public enum State { CONNECTING, HANDSHAKING, GREETING, READY, CLOSED }
+
+    /**
+     * 等待响应的命令
+     */
+    private static class PendingCommand {
+        final String command;
+        final boolean multiLine;
+        final CompletableFuture<POP3Response> future = new CompletableFuture<>();
+        long sentAt;  // 发送时间，与最后收到数据的时间一起用于超时检查
+
+        PendingCommand(String command, boolean multiLine) {
+            this.command = command;
+            this.multiLine = multiLine;
+        }
+    }
+
+    private final NioPOP3Engine.EventLoop loop;
+    private final SocketChannel channel;
+    private final String server;
+    private final int port;
+    private final SSLEngine sslEngine;       // 为null时表示普通连接
+    private SelectionKey key;
+
+    private ByteBuffer netIn;                // 收到的TLS记录（写模式）
+    private ByteBuffer netOut;               // 待发送的TLS记录（写模式）
+    private ByteBuffer appIn;                // 收到的明文（写模式）
+    private ByteBuffer appOut;               // 待发送的明文（写模式）
+
+    private final Deque<PendingCommand> queued = new ArrayDeque<>();   // 尚未发送的命令
+    private final Deque<PendingCommand> inFlight = new ArrayDeque<>(); // 已发送、等待响应的命令
+    private String currentStatus;            // 正在接收的多行响应的状态行
+    private ByteArrayOutputStream currentData; // 正在接收的多行响应数据
+
+    private final CompletableFuture<POP3Capabilities> ready = new CompletableFuture<>();
+    private volatile State state = State.CONNECTING;
+    private volatile POP3Capabilities capabilities = POP3Capabilities.empty();
+    private volatile boolean authenticated;
+    private volatile long lastActivity = System.currentTimeMillis();
+    private long lastReceived;               // 最后一次收到数据的时间，用于命令超时检查
+    private long stateSince = System.currentTimeMillis(); // 进入当前建立阶段（连接、握手、欢迎消息）的时间
+    private long handshakeStart;             // TLS握手开始时间
+    private volatile long handshakeMillis = -1; // TLS握手耗时，-1表示未完成握手
+    private volatile boolean sessionResumed; // TLS握手是否恢复了缓存的会话
+    private boolean pumping;                 // 正在驱动会话，防止在Future回调中重入
+
+    NioPOP3Session(NioPOP3Engine.EventLoop loop, SocketChannel channel,
+                   String server, int port, SSLEngine sslEngine) {
+        this.loop = loop;
+        this.channel = channel;
+        this.server = server;
+        this.port = port;
+        this.sslEngine = sslEngine;
+
+        int appSize = 16 * 1024;
+        if (sslEngine != null) {
+            sslEngine.setUseClientMode(true);
+            int packetSize = sslEngine.getSession().getPacketBufferSize();
+            appSize = Math.max(appSize, sslEngine.getSession().getApplicationBufferSize());
+            netIn = ByteBuffer.allocate(packetSize);
+            netOut = ByteBuffer.allocate(packetSize);
+        }
+        appIn = ByteBuffer.allocate(appSize);
+        appOut = ByteBuffer.allocate(1024);
+    }
+
+    // ========== 公共接口（可在任意线程调用） ==========
+
+    /**
+     * 等待会话就绪
+     * @return 欢迎消息和CAPA完成后以服务器能力完成的Future
+     */
+    public CompletableFuture<POP3Capabilities> ready() {
+        return ready;
+    }
+
+    /**
+     * 提交一条命令
+     * @param command 命令内容，如"STAT"、"RETR 1"
+     * @return 以服务器响应完成的Future；连接失败时以IOException异常完成
+     */
+    public CompletableFuture<POP3Response> execute(String command) {
+        PendingCommand pending = new PendingCommand(command, isMultiLineCommand(command));
+        loop.execute(() -> enqueue(pending));
+        return pending.future;
+    }
+
+    /**
+     * 登录：服务器支持SASL PLAIN时使用带初始响应、一次往返的AUTH PLAIN（RFC 5034），否则使用USER/PASS。
+     * 只有服务器不接受初始响应时才退回USER/PASS，服务器已检查过凭证时不会再次发送密码
+     * @param username 用户名
+     * @param password 密码或授权码
+     * @return 以登录是否成功完成的Future
+     */
+    public CompletableFuture<Boolean> login(String username, String password) {
+        return ready.thenCompose(caps -> {
+                    if (!caps.supportsSasl("PLAIN")) {
+                        return loginUserPass(username, password);
+                    }
+                    return execute(POP3SSLClient.authPlainCommand(username, password)).thenCompose(auth -> {
+                        String status = auth.getStatusLine();
+                        if (status.equals("+") || status.startsWith("+ ")) {
+                            // 服务器仍在等待数据，说明初始响应未被接受：取消本次认证后使用USER/PASS
+                            return execute("*").thenCompose(cancel -> loginUserPass(username, password));
+                        }
+                        return CompletableFuture.completedFuture(auth.isOk());
+                    });
+                })
+                .thenApply(ok -> {
+                    authenticated = ok;
+                    return ok;
+                });
+    }
+
+    private CompletableFuture<Boolean> loginUserPass(String username, String password) {
+        return execute("USER " + username).thenCompose(user -> user.isOk() ?
+                execute("PASS " + password).thenApply(POP3Response::isOk) :
+                CompletableFuture.completedFuture(false));
+    }
+
+    /**
+     * 发送QUIT并在收到响应后关闭连接
+     * @return 连接关闭后完成的Future
+     */
+    public CompletableFuture<Void> quit() {
+        return execute("QUIT").handle((response, error) -> {
+            loop.execute(() -> fail(new EOFException("会话已退出")));
+            return null;
+        });
+    }
+
+    public State getState() { return state; }
+    public POP3Capabilities getCapabilities() { return capabilities; }
+    public boolean isAuthenticated() { return authenticated; }
+    public long getLastActivity() { return lastActivity; }
+    public long getHandshakeMillis() { return handshakeMillis; }
+    public boolean isSessionResumed() { return sessionResumed; }
+    public String getServer() { return server; }
+    public int getPort() { return port; }
+
+    @Override
+    public String toString() {
+        return server + ":" + port + " [" + state + "]";
+    }
+
+    // ========== 以下方法只在事件循环线程中调用 ==========
+
+    void attach(SelectionKey key) {
+        this.key = key;
+    }
+
+    /**
+     * 处理Selector就绪事件
+     * @param key 选择键
+     */
+    void handle(SelectionKey key) {
+        try {
+            if (!key.isValid()) {
+                return;
+            }
+            if (key.isConnectable()) {
+                if (channel.finishConnect()) {
+                    onConnected();
+                }
+                return;
+            }
+            if (key.isReadable()) {
+                int n;
+                if (sslEngine != null) {
+                    n = channel.read(netIn);
+                } else {
+                    appIn = ensureSpace(appIn);  // 单行超过缓冲区时扩大，扩大后的缓冲区必须保留
+                    n = channel.read(appIn);
+                }
+                if (n < 0) {
+                    throw new EOFException("服务器关闭了连接");
+                }
+                if (n > 0) {
+                    lastActivity = System.currentTimeMillis();
+                    lastReceived = lastActivity;
+                }
+            }
+            pump();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * TCP连接建立后开始TLS握手或等待欢迎消息
+     */
+    void onConnected() throws IOException {
+        lastActivity = System.currentTimeMillis();
+        stateSince = lastActivity;
+        if (sslEngine != null) {
+            state = State.HANDSHAKING;
+            handshakeStart = System.currentTimeMillis();
+            sslEngine.beginHandshake();
+        } else {
+            state = State.GREETING;
+        }
+        key.interestOps(SelectionKey.OP_READ);
+        pump();
+    }
+
+    /**
+     * 定时检查：连接建立各阶段或命令超时则关闭会话，空闲时发送NOOP保持连接
+     * @param now 当前时间
+     * @param connectTimeoutMillis TCP连接超时时间
+     * @param greetingTimeoutMillis TLS握手和等待欢迎消息各自的超时时间
+     * @param keepAliveMillis 保持连接间隔
+     * @param commandTimeoutMillis 命令超时时间
+     */
+    void checkTimers(long now, long connectTimeoutMillis, long greetingTimeoutMillis,
+                     long keepAliveMillis, long commandTimeoutMillis) {
+        if (state == State.CONNECTING && now - stateSince > connectTimeoutMillis) {
+            fail(new IOException("连接超时: " + server + ":" + port));
+            return;
+        }
+        if ((state == State.HANDSHAKING || state == State.GREETING) && now - stateSince > greetingTimeoutMillis) {
+            fail(new IOException((state == State.HANDSHAKING ? "TLS握手超时: " : "等待欢迎消息超时: ") + server + ":" + port));
+            return;
+        }
+        // 命令超时按无响应的时长计算：正在接收的大邮件不会超时，流水线中排在后面的命令从前面的响应收完后才开始计时
+        PendingCommand head = inFlight.peek();
+        if (head != null && now - Math.max(head.sentAt, lastReceived) > commandTimeoutMillis) {
+            fail(new IOException("命令超时: " + head.command.split(" ")[0]));
+            return;
+        }
+        if (state == State.READY && authenticated && inFlight.isEmpty() && queued.isEmpty()
+                && now - lastActivity >= keepAliveMillis) {
+            PendingCommand noop = new PendingCommand("NOOP", false);
+            noop.future.thenAccept(response -> {
+                if (!response.isOk()) {
+                    fail(new IOException("保持连接失败: " + response.getStatusLine()));
+                }
+            });
+            enqueue(noop);
+        }
+    }
+
+    /**
+     * 使会话失败：关闭连接并以异常完成所有未完成的Future
+     * @param cause 失败原因
+     */
+    void fail(Throwable cause) {
+        if (state == State.CLOSED) {
+            return;
+        }
+        state = State.CLOSED;
+        authenticated = false;
+        if (key != null) {
+            key.cancel();
+        }
+        try {
+            channel.close();
+        } catch (IOException e) {
+            // 静默处理关闭异常
+        }
+        loop.remove(this);
+
+        IOException error = cause instanceof IOException ? (IOException) cause : new IOException(cause);
+        ready.completeExceptionally(error);
+        for (PendingCommand pending : inFlight) {
+            pending.future.completeExceptionally(error);
+        }
+        for (PendingCommand pending : queued) {
+            pending.future.completeExceptionally(error);
+        }
+        inFlight.clear();
+        queued.clear();
+    }
+
+    /**
+     * 将命令加入发送队列
+     * @param pending 命令
+     */
+    private void enqueue(PendingCommand pending) {
+        if (state == State.CLOSED) {
+            pending.future.completeExceptionally(new IOException("会话已关闭"));
+            return;
+        }
+        queued.add(pending);
+        if (pumping) {
+            return;  // 在响应回调中提交的命令，由外层pump()发送
+        }
+        try {
+            pump();
+        } catch (IOException | RuntimeException e) {
+            fail(e);
+        }
+    }
+
+    /**
+     * 驱动会话：发送排队的命令、完成TLS加解密、读写网络并解析响应
+     */
+    private void pump() throws IOException {
+        pumping = true;
+        try {
+            dispatch();
+            if (sslEngine != null) {
+                pumpTls();
+            } else {
+                flushPlain();
+            }
+            parseInbound();
+
+            // 解析出的响应可能释放了发送窗口，回调中也可能提交了新命令，继续发送
+            dispatch();
+            if (state != State.CLOSED && appOut.position() > 0) {
+                if (sslEngine != null) {
+                    pumpTls();
+                } else {
+                    flushPlain();
+                }
+            }
+        } finally {
+            pumping = false;
+        }
+        updateInterest();
+    }
+
+    /**
+     * 将排队的命令移入发送缓冲区
+     * 就绪前只允许发送内部的CAPA命令
+     * @return 是否有命令被发送
+     */
+    private boolean dispatch() {
+        if (state != State.READY) {
+            return false;
+        }
+        int window = capabilities.supportsPipelining() ? PIPELINE_WINDOW : 1;
+        boolean sent = false;
+        while (!queued.isEmpty() && inFlight.size() < window) {
+            PendingCommand pending = queued.poll();
+            writeCommand(pending);
+            sent = true;
+        }
+        return sent;
+    }
+
+    /**
+     * 写出一条命令并记入在途队列
+     * @param pending 命令
+     */
+    private void writeCommand(PendingCommand pending) {
+        byte[] bytes = (pending.command + "\r\n").getBytes(StandardCharsets.UTF_8);
+        appOut = ensureSpace(appOut, bytes.length);
+        appOut.put(bytes);
+        pending.sentAt = System.currentTimeMillis();
+        inFlight.add(pending);
+    }
+
+    /**
+     * 普通连接：直接写出明文
+     */
+    private void flushPlain() throws IOException {
+        if (appOut.position() == 0) {
+            return;
+        }
+        appOut.flip();
+        channel.write(appOut);
+        appOut.compact();
+        lastActivity = System.currentTimeMillis();
+    }
+
+    /**
+     * TLS连接：推进握手、加密待发送数据、解密收到的数据，直到无法继续
+     */
+    private void pumpTls() throws IOException {
+        boolean wasHandshaking = state == State.HANDSHAKING;
+        boolean progress = true;
+        while (progress) {
+            progress = false;
+            SSLEngineResult.HandshakeStatus hs = sslEngine.getHandshakeStatus();
+
+            if (hs == SSLEngineResult.HandshakeStatus.NEED_TASK) {
+                Runnable task;
+                while ((task = sslEngine.getDelegatedTask()) != null) {
+                    task.run();
+                }
+                progress = true;
+                continue;
+            }
+
+            // 加密：握手需要发送数据，或握手完成后有待发送的明文
+            if (hs == SSLEngineResult.HandshakeStatus.NEED_WRAP
+                    || (!isHandshaking(hs) && appOut.position() > 0)) {
+                appOut.flip();
+                SSLEngineResult result = sslEngine.wrap(appOut, netOut);
+                appOut.compact();
+                switch (result.getStatus()) {
+                    case BUFFER_OVERFLOW:
+                        if (!flushNet()) {
+                            netOut = enlarge(netOut, sslEngine.getSession().getPacketBufferSize());
+                        }
+                        progress = true;
+                        break;
+                    case CLOSED:
+                        throw new SSLException("TLS连接已关闭");
+                    default:
+                        progress = result.bytesProduced() > 0 || result.bytesConsumed() > 0;
+                        break;
+                }
+                flushNet();
+                if (progress) {
+                    continue;
+                }
+            }
+
+            // 解密：握手需要接收数据，或收到了应用数据
+            hs = sslEngine.getHandshakeStatus();
+            if (netIn.position() > 0 && (hs == SSLEngineResult.HandshakeStatus.NEED_UNWRAP
+                    || hs == SSLEngineResult.HandshakeStatus.NEED_UNWRAP_AGAIN || !isHandshaking(hs))) {
+                netIn.flip();
+                SSLEngineResult result = sslEngine.unwrap(netIn, appIn);
+                netIn.compact();
+                switch (result.getStatus()) {
+                    case BUFFER_OVERFLOW:
+                        appIn = enlarge(appIn, sslEngine.getSession().getApplicationBufferSize());
+                        progress = true;
+                        break;
+                    case BUFFER_UNDERFLOW:
+                        // 数据不足一个TLS记录，等待更多数据；缓冲区已满时扩大
+                        if (netIn.position() == netIn.capacity()) {
+                            netIn = enlarge(netIn, sslEngine.getSession().getPacketBufferSize());
+                        }
+                        break;
+                    case CLOSED:
+                        throw new EOFException("服务器关闭了TLS连接");
+                    default:
+                        progress = result.bytesProduced() > 0 || result.bytesConsumed() > 0;
+                        break;
+                }
+            }
+        }
+
+        if (wasHandshaking && !isHandshaking(sslEngine.getHandshakeStatus())) {
+            state = State.GREETING;
+            stateSince = System.currentTimeMillis();
+            handshakeMillis = stateSince - handshakeStart;
+            sessionResumed = TLSConfig.isResumed(sslEngine.getSession(), handshakeStart);
+        }
+        flushNet();
+    }
+
+    private static boolean isHandshaking(SSLEngineResult.HandshakeStatus hs) {
+        return hs != SSLEngineResult.HandshakeStatus.NOT_HANDSHAKING
+                && hs != SSLEngineResult.HandshakeStatus.FINISHED;
+    }
+
+    /**
+     * 写出已加密的数据
+     * @return 缓冲区是否已全部写出
+     */
+    private boolean flushNet() throws IOException {
+        if (netOut.position() == 0) {
+            return true;
+        }
+        netOut.flip();
+        channel.write(netOut);
+        netOut.compact();
+        lastActivity = System.currentTimeMillis();
+        return netOut.position() == 0;
+    }
+
+    /**
+     * 按需关注可写事件：有数据未写完时等待通道可写
+     */
+    private void updateInterest() {
+        if (key == null || !key.isValid() || state == State.CONNECTING) {
+            return;
+        }
+        boolean pendingWrite = appOut.position() > 0 || (netOut != null && netOut.position() > 0);
+        key.interestOps(pendingWrite ? SelectionKey.OP_READ | SelectionKey.OP_WRITE : SelectionKey.OP_READ);
+    }
+
+    /**
+     * 从明文缓冲区中逐行解析响应
+     */
+    private void parseInbound() throws IOException {
+        appIn.flip();
+        byte[] buffer = appIn.array();
+        int start = appIn.position();
+        int limit = appIn.limit();
+        for (int i = start; i < limit; i++) {
+            if (buffer[i] == '\n') {
+                int end = i > start && buffer[i - 1] == '\r' ? i - 1 : i;
+                handleLine(buffer, start, end - start);
+                start = i + 1;
+                if (state == State.CLOSED) {
+                    return;
+                }
+            }
+        }
+        appIn.position(start);
+        appIn.compact();
+    }
+
+    /**
+     * 处理一行响应
+     * @param buffer 缓冲区
+     * @param offset 行起始位置
+     * @param length 行长度（不含行结束符）
+     */
+    private void handleLine(byte[] buffer, int offset, int length) throws IOException {
+        if (state == State.GREETING) {
+            String greeting = new String(buffer, offset, length, StandardCharsets.UTF_8);
+            if (!greeting.startsWith("+OK")) {
+                throw new IOException("服务器拒绝连接: " + greeting);
+            }
+            // 欢迎消息之后查询服务器能力，再进入就绪状态
+            state = State.READY;
+            PendingCommand capa = new PendingCommand("CAPA", true);
+            capa.future.whenComplete((response, error) -> {
+                if (error == null && response.isOk()) {
+                    capabilities = new POP3Capabilities(response.getLines());
+                }
+                ready.complete(capabilities);
+            });
+            writeCommand(capa);
+            return;
+        }
+
+        PendingCommand head = inFlight.peek();
+        if (head == null) {
+            return;  // 没有等待中的命令，忽略多余的行
+        }
+
+        if (currentStatus == null) {
+            String status = new String(buffer, offset, length, StandardCharsets.UTF_8);
+            if (head.multiLine && status.startsWith("+OK")) {
+                currentStatus = status;
+                currentData = new ByteArrayOutputStream();
+            } else {
+                complete(new POP3Response(head.command, status, null));
+            }
+            return;
+        }
+
+        // 多行响应的数据行：单独的"."表示结束，以"."开头的行去除填充的首个"."
+        if (length > 0 && buffer[offset] == '.') {
+            if (length == 1) {
+                complete(new POP3Response(head.command, currentStatus, currentData.toByteArray()));
+                return;
+            }
+            offset++;
+            length--;
+        }
+        currentData.write(buffer, offset, length);
+        currentData.write(CRLF, 0, CRLF.length);
+    }
+
+    /**
+     * 完成队首命令
+     * @param response 响应
+     */
+    private void complete(POP3Response response) {
+        PendingCommand head = inFlight.poll();
+        currentStatus = null;
+        currentData = null;
+        if (head != null) {
+            head.future.complete(response);
+        }
+    }
+
+    // ========== 缓冲区工具 ==========
+
+    /**
+     * 确保缓冲区至少还有指定的剩余空间，不足时扩大
+     */
+    private static ByteBuffer ensureSpace(ByteBuffer buffer, int needed) {
+        if (buffer.remaining() >= needed) {
+            return buffer;
+        }
+        return enlarge(buffer, needed);
+    }
+
+    /**
+     * 确保读取缓冲区有剩余空间（单行超过缓冲区大小时扩大）
+     */
+    private static ByteBuffer ensureSpace(ByteBuffer buffer) {
+        return buffer.hasRemaining() ? buffer : enlarge(buffer, buffer.capacity());
+    }
+
+    /**
+     * 扩大缓冲区，保留已有数据（写模式）
+     */
+    private static ByteBuffer enlarge(ByteBuffer buffer, int extra) {
+        ByteBuffer larger = ByteBuffer.allocate(buffer.capacity() + Math.max(extra, buffer.capacity()));
+        buffer.flip();
+        larger.put(buffer);
+        return larger;
+    }
+
+    /**
+     * 判断命令的成功响应是否为多行响应
+     * @param command 命令内容
+     * @return RETR、TOP、CAPA以及不带参数的LIST、UIDL返回true
+     */
+    private static boolean isMultiLineCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        switch (parts[0].toUpperCase()) {
+            case "RETR":
+            case "TOP":
+            case "CAPA":
+                return true;
+            case "LIST":
+            case "UIDL":
+                return parts.length == 1;
+            default:
+                return false;
+        }
+    }
+}
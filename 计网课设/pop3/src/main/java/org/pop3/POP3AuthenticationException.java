@@ -0,0 +1,17 @@
+package org.pop3;
+
+/**
+ * 登录被服务器拒绝
+ * 用户名、密码错误或服务器限制登录时抛出，重试通常没有意义
+ */
+public class POP3AuthenticationException extends POP3Exception {
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * 构造函数
+     * @param statusLine 服务器的状态行或失败原因
+     */
+    public POP3AuthenticationException(String statusLine) {
+        super("LOGIN", statusLine);
+    }
+}
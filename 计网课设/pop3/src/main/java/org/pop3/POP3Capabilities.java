@@ -0,0 +1,129 @@
+package org.pop3;
+import java.util.*;
+
+/**
+ * POP3服务器能力类
+ * 解析CAPA命令（RFC 2449）的响应，提供类型化的能力查询
+ * 例如: UIDL、TOP、PIPELINING、SASL PLAIN LOGIN、RESP-CODES、EXPIRE 30、LOGIN-DELAY 900
+ */
+public class POP3Capabilities {
+    /** 服务器未声明LOGIN-DELAY时的取值 */
+    public static final int NO_LOGIN_DELAY = 0;
+    /** 服务器未声明EXPIRE时的取值 */
+    public static final int EXPIRE_UNKNOWN = -2;
+    /** 服务器声明EXPIRE NEVER时的取值 */
+    public static final int EXPIRE_NEVER = -1;
+
+    private final List<String> rawLines;              // CAPA响应的原始能力行
+    private final Set<String> tags = new HashSet<>(); // 能力标签（大写，每行第一个单词）
+    private final Set<String> saslMechanisms = new LinkedHashSet<>(); // 支持的SASL机制（大写）
+    private int loginDelay = NO_LOGIN_DELAY;          // 两次登录之间的最小间隔（秒）
+    private int expireDays = EXPIRE_UNKNOWN;          // 邮件保留天数
+    private String implementation;                    // 服务器实现说明
+
+    /**
+     * 构造函数
+     * @param capaLines CAPA响应的数据行（不含状态行和结束行）
+     */
+    public POP3Capabilities(List<String> capaLines) {
+        this.rawLines = Collections.unmodifiableList(new ArrayList<>(capaLines));
+        for (String line : capaLines) {
+            parseLine(line.trim());
+        }
+    }
+
+    /**
+     * 创建空能力集
+     * 用于服务器不支持CAPA命令的情况，此时所有可选扩展都视为不支持
+     * @return 空能力集
+     */
+    public static POP3Capabilities empty() {
+        return new POP3Capabilities(Collections.emptyList());
+    }
+
+    /**
+     * 解析单行能力声明
+     * @param line 能力行
+     */
+    private void parseLine(String line) {
+        if (line.isEmpty()) {
+            return;
+        }
+
+        String[] parts = line.split("\\s+");
+        String tag = parts[0].toUpperCase();
+        tags.add(tag);
+
+        switch (tag) {
+            case "SASL":
+                for (int i = 1; i < parts.length; i++) {
+                    saslMechanisms.add(parts[i].toUpperCase());
+                }
+                break;
+            case "LOGIN-DELAY":
+                if (parts.length > 1) {
+                    loginDelay = parseIntOrDefault(parts[1], NO_LOGIN_DELAY);
+                }
+                break;
+            case "EXPIRE":
+                if (parts.length > 1) {
+                    expireDays = parts[1].equalsIgnoreCase("NEVER") ?
+                            EXPIRE_NEVER : parseIntOrDefault(parts[1], EXPIRE_UNKNOWN);
+                }
+                break;
+            case "IMPLEMENTATION":
+                implementation = line.length() > tag.length() ? line.substring(tag.length()).trim() : "";
+                break;
+            default:
+                break;
+        }
+    }
+
+    /**
+     * 解析整数，失败时返回默认值
+     * @param text 文本
+     * @param defaultValue 默认值
+     * @return 整数值
+     */
+    private static int parseIntOrDefault(String text, int defaultValue) {
+        try {
+            return Integer.parseInt(text);
+        } catch (NumberFormatException e) {
+            return defaultValue;
+        }
+    }
+
+    /**
+     * 判断是否声明了指定能力
+     * @param tag 能力标签，不区分大小写
+     * @return 是否支持
+     */
+    public boolean has(String tag) {
+        return tags.contains(tag.toUpperCase());
+    }
+
+    /**
+     * 判断是否支持指定的SASL机制
+     * @param mechanism 机制名称，如PLAIN
+     * @return 是否支持
+     */
+    public boolean supportsSasl(String mechanism) {
+        return saslMechanisms.contains(mechanism.toUpperCase());
+    }
+
+    public boolean supportsUidl() { return has("UIDL"); }
+    public boolean supportsTop() { return has("TOP"); }
+    public boolean supportsPipelining() { return has("PIPELINING"); }
+    public boolean supportsUser() { return has("USER"); }
+    public boolean supportsRespCodes() { return has("RESP-CODES"); }
+    public Set<String> getSaslMechanisms() { return Collections.unmodifiableSet(saslMechanisms); }
+    public int getLoginDelay() { return loginDelay; }
+    public int getExpireDays() { return expireDays; }
+    public String getImplementation() { return implementation; }
+    public List<String> getRawLines() { return rawLines; }
+
+    @Override
+    public String toString() {
+        return String.join(", ", rawLines);
+    }
+}
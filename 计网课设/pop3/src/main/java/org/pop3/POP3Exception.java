@@ -0,0 +1,37 @@
+package org.pop3;
+
+import java.io.IOException;
+
+/**
+ * POP3命令被服务器拒绝（-ERR响应）
+ * 与网络异常不同，连接仍然可用，可以继续发送其他命令
+ */
+public class POP3Exception extends IOException {
+    private static final long serialVersionUID = 1L;
+
+    private final String command;     // 被拒绝的命令
+    private final String statusLine;  // 服务器的状态行
+
+    /**
+     * 构造函数
+     * @param command 被拒绝的命令（不包含密码等敏感参数）
+     * @param statusLine 服务器的状态行
+     */
+    public POP3Exception(String command, String statusLine) {
+        super(command + " 失败: " + statusLine);
+        this.command = command;
+        this.statusLine = statusLine;
+    }
+
+    /**
+     * 根据响应创建异常
+     * @param response -ERR响应
+     * @return 异常对象
+     */
+    public static POP3Exception of(POP3Response response) {
+        return new POP3Exception(response.getCommand().split(" ")[0], response.getStatusLine());
+    }
+
+    public String getCommand() { return command; }
+    public String getStatusLine() { return statusLine; }
+}
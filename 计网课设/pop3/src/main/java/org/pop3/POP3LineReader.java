@@ -0,0 +1,179 @@
+package org.pop3;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * POP3字节行读取器
+ * 直接在可复用的大缓冲区上按行切分网络数据，返回字节片段而不做任何字符集解码，
+ * 保证8bit/二进制邮件内容按原样传递，由MIME层按各部分声明的字符集解码
+ */
+public class POP3LineReader implements AutoCloseable {
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024; // 默认缓冲区大小：64KB
+    private static final int MAX_STATUS_LINE = 512;           // 状态行长度上限（RFC 1939，含CRLF）
+    private static final int MAX_LINE_LENGTH = 4 * 1024 * 1024; // 数据行长度上限：4MB，远超RFC 5322的998字节，只用于防止无换行的数据耗尽内存
+
+    private final InputStream in;
+    private byte[] buffer;      // 接收缓冲区
+    private int start;          // 未处理数据的起始位置
+    private int end;            // 未处理数据的结束位置
+    private int lineOffset;     // 当前行在缓冲区中的起始位置
+    private int lineLength;     // 当前行长度（不含行结束符）
+
+    /**
+     * 构造函数
+     * @param in 网络输入流
+     */
+    public POP3LineReader(InputStream in) {
+        this(in, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 构造函数
+     * @param in 网络输入流
+     * @param bufferSize 初始缓冲区大小，遇到更长的行时自动扩大
+     */
+    public POP3LineReader(InputStream in, int bufferSize) {
+        this.in = in;
+        this.buffer = new byte[bufferSize];
+    }
+
+    /**
+     * 读取下一行，长度上限为数据行上限
+     * 行内容可通过getBuffer()、getLineOffset()、getLineLength()访问，直到下一次调用本方法为止有效。
+     * 行结束符CRLF（以及单独的LF）不包含在行内容中
+     * @return 行长度，流已结束时返回-1
+     * @throws IOException 网络异常或行超过长度上限
+     */
+    public int readLine() throws IOException {
+        return readLine(MAX_LINE_LENGTH);
+    }
+
+    /**
+     * 读取下一行
+     * 服务器发送没有换行的超长数据时抛出异常而不是无限扩大缓冲区，此后连接不可再用
+     * @param maxLength 行长度上限（不含行结束符）
+     * @return 行长度，流已结束时返回-1
+     * @throws IOException 网络异常或行超过长度上限
+     */
+    private int readLine(int maxLength) throws IOException {
+        int scan = start;
+        while (true) {
+            for (; scan < end; scan++) {
+                if (buffer[scan] == '\n') {
+                    lineOffset = start;
+                    lineLength = scan - start;
+                    if (lineLength > 0 && buffer[scan - 1] == '\r') {
+                        lineLength--;
+                    }
+                    if (lineLength > maxLength) {
+                        throw new IOException("服务器发送的行超过 " + maxLength + " 字节");
+                    }
+                    start = scan + 1;
+                    return lineLength;
+                }
+            }
+
+            int scanned = scan - start;
+            if (scanned > maxLength + 1) {
+                // 已超过上限仍未遇到换行（+1为可能的\r）
+                throw new IOException("服务器发送的行超过 " + maxLength + " 字节");
+            }
+            if (!fill(maxLength + 2)) {
+                // 流结束：返回最后一段没有行结束符的数据
+                if (end > start) {
+                    lineOffset = start;
+                    lineLength = end - start;
+                    start = end;
+                    return lineLength;
+                }
+                return -1;
+            }
+            scan = start + scanned;  // fill()可能移动了数据，已扫描的部分无需重复扫描
+        }
+    }
+
+    /**
+     * 读取下一行并解码为字符串
+     * 用于状态行等短小的协议行，长度上限为RFC 1939规定的512字节
+     * @return 行内容，流已结束时返回null
+     * @throws IOException 网络异常或行超过长度上限
+     */
+    public String readLineAsString() throws IOException {
+        return readLine(MAX_STATUS_LINE - 2) < 0 ? null : getLineAsString(StandardCharsets.UTF_8);
+    }
+
+    /**
+     * 将当前行解码为字符串
+     * @param charset 字符集
+     * @return 行内容
+     */
+    public String getLineAsString(Charset charset) {
+        return new String(buffer, lineOffset, lineLength, charset);
+    }
+
+    /**
+     * 判断当前行是否为多行响应的结束行"."
+     * @return 是否为结束行
+     */
+    public boolean isTerminator() {
+        return lineLength == 1 && buffer[lineOffset] == '.';
+    }
+
+    /**
+     * 读取多行响应的下一数据行
+     * 遇到结束行时返回-1，以"."开头的行自动去除填充的首个"."
+     * @return 数据行长度，到达结束行时返回-1
+     * @throws IOException 网络异常、行超过长度上限或连接在响应结束前被关闭
+     */
+    public int readDataLine() throws IOException {
+        if (readLine() < 0) {
+            throw new EOFException("多行响应未正常结束");
+        }
+        if (lineLength > 0 && buffer[lineOffset] == '.') {
+            if (lineLength == 1) {
+                return -1;
+            }
+            lineOffset++;
+            lineLength--;
+        }
+        return lineLength;
+    }
+
+    /**
+     * 从网络读取更多数据
+     * 缓冲区剩余空间不足时先将未处理数据移到开头，仍然不足（超长行）时扩大缓冲区，但不超过一行的上限
+     * @param maxLineBytes 一行（含行结束符）的字节数上限
+     * @return 是否读到了数据
+     */
+    private boolean fill(int maxLineBytes) throws IOException {
+        if (end == buffer.length) {
+            if (start > 0) {
+                System.arraycopy(buffer, start, buffer, 0, end - start);
+                end -= start;
+                start = 0;
+            } else {
+                byte[] larger = new byte[Math.max(buffer.length + 1, Math.min(buffer.length * 2, maxLineBytes + 1))];
+                System.arraycopy(buffer, 0, larger, 0, end);
+                buffer = larger;
+            }
+        }
+        int n = in.read(buffer, end, buffer.length - end);
+        if (n <= 0) {
+            return false;
+        }
+        end += n;
+        return true;
+    }
+
+    public byte[] getBuffer() { return buffer; }
+    public int getLineOffset() { return lineOffset; }
+    public int getLineLength() { return lineLength; }
+
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,223 @@
+package org.pop3;
+
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * POP3指标注册表
+ * 按命令统计执行次数、-ERR次数、响应字节数和延迟分布，并统计邮件解析耗时。
+ * 命令按动词归类（RETR 1与RETR 2计入同一项），各项在创建注册表时预先分配，
+ * 记录时只做字符串前缀比较和原子加，不分配对象；snapshot()返回某一时刻的只读副本。
+ * 延迟对单条命令是发送到响应读完的时间；流水线批次中是上一条响应读完到本条响应读完的时间，
+ * 不含在途排队的部分。
+ */
+public class POP3Metrics {
+    // 单独统计的命令，其他命令计入OTHER
+    private static final String[] VERBS = {
+            "USER", "PASS", "AUTH", "APOP", "CAPA", "STAT", "LIST", "UIDL",
+            "TOP", "RETR", "DELE", "NOOP", "RSET", "QUIT"
+    };
+    private static final String OTHER = "OTHER";
+
+    private static final POP3Metrics DEFAULT = new POP3Metrics();
+
+    private final CommandMetrics[] commands = new CommandMetrics[VERBS.length + 1]; // 最后一项为OTHER
+    private final LatencyHistogram parseTime = new LatencyHistogram();  // 邮件解析耗时（纳秒）
+    private final AtomicLong parsedBytes = new AtomicLong();             // 已解析的邮件字节数
+
+    /**
+     * 单个命令的指标
+     */
+    public static class CommandMetrics {
+        private final String verb;
+        private final AtomicLong count = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+        private final AtomicLong bytes = new AtomicLong();
+        private final LatencyHistogram latency = new LatencyHistogram();
+
+        CommandMetrics(String verb) {
+            this.verb = verb;
+        }
+
+        /**
+         * 记录一次执行
+         * @param nanos 耗时（纳秒）
+         * @param responseBytes 响应字节数（状态行与数据部分）
+         * @param ok 服务器是否返回+OK
+         */
+        public void record(long nanos, long responseBytes, boolean ok) {
+            count.incrementAndGet();
+            if (!ok) {
+                errors.incrementAndGet();
+            }
+            bytes.addAndGet(responseBytes);
+            latency.record(nanos);
+        }
+
+        public String getVerb() { return verb; }
+
+        private void reset() {
+            count.set(0);
+            errors.set(0);
+            bytes.set(0);
+            latency.reset();
+        }
+    }
+
+    /**
+     * 构造函数
+     * 通常使用getDefault()返回的全局注册表，单独创建用于隔离统计（如基准测试）
+     */
+    public POP3Metrics() {
+        for (int i = 0; i < VERBS.length; i++) {
+            commands[i] = new CommandMetrics(VERBS[i]);
+        }
+        commands[VERBS.length] = new CommandMetrics(OTHER);
+    }
+
+    /**
+     * 获取全局共享的注册表
+     * @return 默认注册表
+     */
+    public static POP3Metrics getDefault() {
+        return DEFAULT;
+    }
+
+    /**
+     * 查找命令对应的指标项
+     * @param command 完整命令，如"RETR 1"
+     * @return 指标项，未单独统计的命令返回OTHER
+     */
+    public CommandMetrics forCommand(String command) {
+        for (int i = 0; i < VERBS.length; i++) {
+            String verb = VERBS[i];
+            int length = verb.length();
+            if (command.regionMatches(true, 0, verb, 0, length)
+                    && (command.length() == length || command.charAt(length) == ' ')) {
+                return commands[i];
+            }
+        }
+        return commands[VERBS.length];
+    }
+
+    /**
+     * 记录一条命令的执行
+     * @param command 完整命令
+     * @param nanos 耗时（纳秒）
+     * @param responseBytes 响应字节数
+     * @param ok 服务器是否返回+OK
+     */
+    public void recordCommand(String command, long nanos, long responseBytes, boolean ok) {
+        forCommand(command).record(nanos, responseBytes, ok);
+    }
+
+    /**
+     * 记录一封邮件的解析
+     * @param nanos 耗时（纳秒）
+     * @param bytes 邮件字节数
+     */
+    public void recordParse(long nanos, long bytes) {
+        parseTime.record(nanos);
+        parsedBytes.addAndGet(bytes);
+    }
+
+    /**
+     * 清空所有指标
+     */
+    public void reset() {
+        for (CommandMetrics metrics : commands) {
+            metrics.reset();
+        }
+        parseTime.reset();
+        parsedBytes.set(0);
+    }
+
+    /**
+     * 获取当前指标的快照
+     * @return 快照，只包含执行过的命令
+     */
+    public Snapshot snapshot() {
+        Map<String, CommandSnapshot> snapshots = new LinkedHashMap<>();
+        for (CommandMetrics metrics : commands) {
+            long count = metrics.count.get();
+            if (count > 0) {
+                snapshots.put(metrics.verb, new CommandSnapshot(metrics.verb, count, metrics.errors.get(),
+                        metrics.bytes.get(), metrics.latency.snapshot()));
+            }
+        }
+        return new Snapshot(snapshots, parseTime.snapshot(), parsedBytes.get());
+    }
+
+    /**
+     * 单个命令的指标快照
+     */
+    public static class CommandSnapshot {
+        private final String verb;
+        private final long count;
+        private final long errors;
+        private final long bytes;
+        private final LatencyHistogram.Snapshot latency;
+
+        CommandSnapshot(String verb, long count, long errors, long bytes, LatencyHistogram.Snapshot latency) {
+            this.verb = verb;
+            this.count = count;
+            this.errors = errors;
+            this.bytes = bytes;
+            this.latency = latency;
+        }
+
+        public String getVerb() { return verb; }
+        public long getCount() { return count; }
+        public long getErrors() { return errors; }
+        public long getBytes() { return bytes; }
+        public LatencyHistogram.Snapshot getLatency() { return latency; }
+
+        @Override
+        public String toString() {
+            return String.format("%-5s errors=%d bytes=%d %s", verb, errors, bytes, latency);
+        }
+    }
+
+    /**
+     * 注册表快照
+     */
+    public static class Snapshot {
+        private final Map<String, CommandSnapshot> commands;
+        private final LatencyHistogram.Snapshot parseTime;
+        private final long parsedBytes;
+
+        Snapshot(Map<String, CommandSnapshot> commands, LatencyHistogram.Snapshot parseTime, long parsedBytes) {
+            this.commands = Collections.unmodifiableMap(commands);
+            this.parseTime = parseTime;
+            this.parsedBytes = parsedBytes;
+        }
+
+        /**
+         * 获取各命令的指标，按命令动词索引
+         * @return 只读映射
+         */
+        public Map<String, CommandSnapshot> getCommands() { return commands; }
+
+        /**
+         * 获取指定命令的指标
+         * @param verb 命令动词，如"RETR"
+         * @return 指标，该命令未执行过时返回null
+         */
+        public CommandSnapshot getCommand(String verb) { return commands.get(verb.toUpperCase()); }
+
+        public LatencyHistogram.Snapshot getParseTime() { return parseTime; }
+        public long getParsedBytes() { return parsedBytes; }
+
+        @Override
+        public String toString() {
+            StringBuilder sb = new StringBuilder();
+            for (CommandSnapshot command : commands.values()) {
+                sb.append(command).append('\n');
+            }
+            sb.append("PARSE bytes=").append(parsedBytes).append(' ').append(parseTime);
+            return sb.toString();
+        }
+    }
+}
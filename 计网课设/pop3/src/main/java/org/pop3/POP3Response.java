@@ -0,0 +1,98 @@
+package org.pop3;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * POP3响应类
+ * 封装服务器对一条命令的响应：状态行以及多行响应的数据部分
+ * 多行响应的数据已经去除了结束标记"."并完成了字节填充还原（dot-unstuffing），
+ * 以原始字节保存（各行以CRLF结尾），只有按行或按文本访问时才解码
+ */
+public class POP3Response {
+    private static final byte[] NO_DATA = new byte[0];
+
+    private final String command;      // 对应的命令
+    private final String statusLine;   // 状态行，如"+OK 2 320"
+    private final byte[] data;         // 多行响应的原始数据，单行响应时为空数组
+    private List<String> lines;        // 按UTF-8解码后的数据行，首次访问时生成
+
+    /**
+     * 构造函数
+     * @param command 对应的命令
+     * @param statusLine 状态行
+     * @param data 多行响应的原始数据（各行以CRLF结尾），可为null
+     */
+    public POP3Response(String command, String statusLine, byte[] data) {
+        this.command = command;
+        this.statusLine = statusLine;
+        this.data = data != null ? data : NO_DATA;
+    }
+
+    /**
+     * 判断响应是否成功
+     * @return 状态行以"+OK"开头时返回true
+     */
+    public boolean isOk() {
+        return statusLine != null && statusLine.startsWith("+OK");
+    }
+
+    /**
+     * 获取多行响应的数据行
+     * @return 按UTF-8解码的数据行列表，单行响应时为空列表
+     */
+    public List<String> getLines() {
+        if (lines == null) {
+            if (data.length == 0) {
+                lines = Collections.emptyList();
+            } else {
+                List<String> result = new ArrayList<>();
+                int lineStart = 0;
+                for (int i = 0; i < data.length; i++) {
+                    if (data[i] == '\n') {
+                        int lineEnd = i > lineStart && data[i - 1] == '\r' ? i - 1 : i;
+                        result.add(new String(data, lineStart, lineEnd - lineStart, StandardCharsets.UTF_8));
+                        lineStart = i + 1;
+                    }
+                }
+                lines = Collections.unmodifiableList(result);
+            }
+        }
+        return lines;
+    }
+
+    /**
+     * 获取多行响应的正文
+     * 各数据行以"\n"连接，与retrieveMessage()的返回格式一致
+     * @return 响应正文
+     */
+    public String getBody() {
+        StringBuilder body = new StringBuilder(data.length);
+        for (String line : getLines()) {
+            body.append(line).append("\n");
+        }
+        return body.toString();
+    }
+
+    /**
+     * 获取状态行中"+OK"/"-ERR"之后的文本
+     * @return 状态说明文本
+     */
+    public String getStatusText() {
+        if (statusLine == null) {
+            return "";
+        }
+        int space = statusLine.indexOf(' ');
+        return space == -1 ? "" : statusLine.substring(space + 1);
+    }
+
+    public String getCommand() { return command; }
+    public String getStatusLine() { return statusLine; }
+    public byte[] getData() { return data; }
+
+    @Override
+    public String toString() {
+        return command + " -> " + statusLine;
+    }
+}
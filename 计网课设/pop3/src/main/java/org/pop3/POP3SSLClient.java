@@ -1,25 +1,59 @@
 package org.pop3;
+import javax.net.ssl.SSLSocket;
 import javax.net.ssl.SSLSocketFactory;
 import java.io.*;
 import java.net.*;
+import java.nio.charset.StandardCharsets;
 import java.util.*;
+import java.util.concurrent.locks.ReentrantLock;
 
 /**
  * POP3 SSL客户端类
  * 实现POP3协议的核心功能，支持SSL/TLS加密连接
  * 提供连接、认证、邮件获取、删除等基本操作
+ * 各命令方法可在多个线程中调用，命令锁保证收发不交错；retrieveMessageStream()返回的流未读完时除外，见该方法说明
  */
 public class POP3SSLClient {
     private Socket socket;              // 网络套接字
-    private BufferedReader reader;      // 输入流读取器
+    private POP3LineReader reader;      // 字节行读取器
     private PrintWriter writer;         // 输出流写入器
     private String server;              // 服务器地址
     private int port;                   // 服务器端口
     private boolean connected = false;  // 连接状态标志
     private boolean authenticated = false; // 认证状态标志
+    private boolean loginDelayed;       // 最近一次登录是否因LOGIN-DELAY被服务器拒绝
     private boolean useSSL = false;     // 是否使用SSL
-    private Timer keepAliveTimer;       // 保持连接的定时器
-    private static final int KEEP_ALIVE_INTERVAL = 30 * 1000; // 保持活动间隔：30秒
+    private KeepAliveScheduler keepAliveScheduler = KeepAliveScheduler.getDefault(); // 共享的保持连接调度器
+    private KeepAliveScheduler.Registration keepAlive; // 本会话在调度器中的注册
+    private final ReentrantLock commandLock = new ReentrantLock(); // 命令锁，保证命令与响应的收发不被保持连接打断
+    private volatile long lastActivity; // 最近一次命令结束或收到响应数据的时间
+    private POP3Capabilities capabilities; // 服务器能力，连接成功后由CAPA或能力缓存确定
+    private CapabilityCache capabilityCache = CapabilityCache.getDefault(); // 服务器能力缓存
+    private MessageInputStream openStream; // 尚未读完的邮件流
+    private TLSConfig tlsConfig = TLSConfig.getDefault(); // 共享的TLS配置，为null时使用JDK默认工厂
+    private long handshakeMillis = -1;  // 最近一次TLS握手耗时（毫秒），-1表示未进行握手
+    private boolean sessionResumed;     // 最近一次TLS握手是否恢复了缓存的会话
+    private HappyEyeballsConnector connector = HappyEyeballsConnector.getDefault(); // 共享的建连器，同时提供各阶段超时
+    private POP3Metrics metrics = POP3Metrics.getDefault(); // 命令指标注册表
+    private long commandStart;          // 当前命令开始计时的时间（System.nanoTime）
+    private long streamBytes;           // 邮件流的状态行字节数与已读取的数据字节数
+    private static final int PIPELINE_WINDOW = 64; // 流水线模式下同时在途的最大命令数
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] LF = {'\n'};
+
+    /**
+     * 批量命令的响应处理器
+     * 每读到一条响应就回调一次，调用方可以边接收边处理，无需缓存整个批次
+     */
+    public interface BatchResponseHandler {
+        /**
+         * 处理一条响应
+         * @param index 命令在批次中的下标
+         * @param response 服务器响应
+         * @throws IOException 处理失败时抛出，将中止批次
+         */
+        void onResponse(int index, POP3Response response) throws IOException;
+    }
 
     /**
      * 构造函数
@@ -38,42 +72,62 @@ public class POP3SSLClient {
      * @return 连接是否成功
      */
     public boolean connect() {
+        Socket plain = null;       // TCP连接
+        Socket connection = null;  // 实际使用的连接（TLS时包装plain）
         try {
+            // 并行尝试服务器的各个地址，连接超时由建连器控制
+            plain = connector.connect(server, port);
+            plain.setKeepAlive(true);  // 启用TCP保持活动
+            plain.setSoTimeout(connector.getGreetingTimeout()); // 握手和欢迎消息使用单独的超时
+
             if (useSSL) {
-                // 创建SSL套接字
-                SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
-                socket = factory.createSocket(server, port);
-                System.out.println("使用SSL连接到: " + server + ":" + port);
+                // 在TCP连接上完成TLS握手，通过共享的SSLContext复用缓存的TLS会话
+                long start = System.currentTimeMillis();
+                if (tlsConfig != null) {
+                    connection = tlsConfig.createSocket(plain, server, port);
+                } else {
+                    SSLSocketFactory factory = (SSLSocketFactory) SSLSocketFactory.getDefault();
+                    connection = factory.createSocket(plain, server, port, true);
+                    ((SSLSocket) connection).startHandshake();
+                }
+                handshakeMillis = System.currentTimeMillis() - start;
+                sessionResumed = TLSConfig.isResumed(((SSLSocket) connection).getSession(), start);
+                System.out.println("使用SSL连接到: " + server + ":" + port + "（" + ((SSLSocket) connection).getSession().getProtocol()
+                        + (sessionResumed ? "，恢复会话" : "，完整握手") + "，" + handshakeMillis + " ms）");
             } else {
-                // 创建普通套接字
-                socket = new Socket(server, port);
+                connection = plain;
                 System.out.println("使用普通连接到: " + server + ":" + port);
             }
+            socket = connection;
 
-            // 设置套接字选项
-            socket.setKeepAlive(true);  // 启用TCP保持活动
-            socket.setSoTimeout(KEEP_ALIVE_INTERVAL); // 设置读取超时
-
-            // 创建输入输出流
-            reader = new BufferedReader(new InputStreamReader(
-                    socket.getInputStream(), "UTF-8"));
+            // 创建输入输出流：输入按字节分行，不做字符集解码
+            reader = new POP3LineReader(socket.getInputStream());
 
             writer = new PrintWriter(new OutputStreamWriter(
                     socket.getOutputStream(), "UTF-8"), true);
 
             // 读取服务器欢迎消息
-            String response = reader.readLine();
+            String response = reader.readLineAsString();
             System.out.println("服务器响应: " + response);
 
             // 检查响应是否为成功状态
             if (response != null && response.startsWith("+OK")) {
                 connected = true;
-                return true;
+                socket.setSoTimeout(connector.getCommandTimeout());
+                negotiateCapabilities();
+                if (connected) {
+                    return true;
+                }
+                // CAPA期间连接已断开
             }
         } catch (IOException e) {
             System.err.println("连接服务器失败: " + e.getMessage());
             handleDisconnection();
         }
+        // 任一步骤失败（握手异常、欢迎消息为空或不是+OK、超时）都关闭已建立的连接
+        connected = false;
+        closeQuietly(connection);
+        closeQuietly(plain);
         return false;
     }
 
@@ -84,66 +138,170 @@ public class POP3SSLClient {
      * @return 登录是否成功
      */
     public boolean login(String username, String password) {
-        if (!isConnected()) {
-            System.err.println("未连接到服务器");
-            return false;
-        }
-
+        commandLock.lock();
         try {
-            // 发送USER命令
-            writer.println("USER " + username);
-            String response = reader.readLine();
-            System.out.println("USER响应: " + response);
-
-            if (!response.startsWith("+OK")) {
+            if (!isConnected()) {
+                System.err.println("未连接到服务器");
                 return false;
             }
 
-            // 发送PASS命令
-            writer.println("PASS " + password);
-            response = reader.readLine();
-            System.out.println("PASS响应: " + response);
+            // LOGIN-DELAY只作提示，是否允许登录由服务器的响应决定
+            loginDelayed = false;
+            long loginDelay = getRemainingLoginDelay(username);
+            if (loginDelay > 0) {
+                System.out.println("服务器声明的登录间隔可能未到（约 " + (loginDelay + 999) / 1000 + " 秒），仍尝试登录");
+            }
 
-            if (response.startsWith("+OK")) {
-                authenticated = true;
-                startKeepAlive();  // 启动保持连接机制
-                return true;
+            try {
+                String response = null;
+                if (getCapabilities().supportsSasl("PLAIN")) {
+                    // RFC 5034允许AUTH命令携带初始响应，AUTH PLAIN一次往返即可完成登录；
+                    // 服务器已检查过凭证时不再用USER/PASS重复发送密码
+                    response = authenticatePlain(username, password);
+                }
+                if (response == null) {
+                    response = authenticateUserPass(username, password);
+                }
+
+                if (response.startsWith("+OK")) {
+                    authenticated = true;
+                    capabilityCache.recordLogin(server, port, username);
+                    startKeepAlive();  // 启动保持连接机制
+                    return true;
+                }
+                if (response.contains("[LOGIN-DELAY]")) {
+                    // 服务器以响应码拒绝了过快的登录，记录时间以便下次提前等待
+                    loginDelayed = true;
+                    capabilityCache.recordLogin(server, port, username);
+                }
+            } catch (IOException e) {
+                System.err.println("登录失败: " + e.getMessage());
+                handleDisconnection();
             }
-        } catch (IOException e) {
-            System.err.println("登录失败: " + e.getMessage());
-            handleDisconnection();
+            return false;
+        } finally {
+            endCommand();
         }
-        return false;
     }
 
     /**
-     * 获取邮箱统计信息
-     * @return 包含邮件数量和总大小的数组，[0]=邮件数，[1]=总大小（字节）
+     * 判断最近一次登录是否因登录过于频繁（[LOGIN-DELAY]响应码）而被拒绝
+     * 这类拒绝与凭证错误不同，等待一段时间后重试可以成功
+     * @return 是否因LOGIN-DELAY被拒绝
      */
-    public int[] getMailboxStat() {
-        if (!authenticated) {
-            System.err.println("用户未认证");
+    public boolean isLoginDelayed() { return loginDelayed; }
+
+    /**
+     * 按缓存的LOGIN-DELAY能力和最近一次登录时间，估算距离允许再次登录还需等待的时间
+     * @param username 用户名
+     * @return 剩余等待时间（毫秒），无需等待时返回0
+     */
+    public long getRemainingLoginDelay(String username) {
+        return capabilityCache.getRemainingLoginDelay(server, port, username);
+    }
+
+    /**
+     * 使用USER/PASS登录
+     * @param username 用户名
+     * @param password 密码或授权码
+     * @return USER失败时为USER的响应，否则为PASS的响应
+     * @throws IOException 网络异常
+     */
+    private String authenticateUserPass(String username, String password) throws IOException {
+        // 发送USER命令
+        sendCommand("USER " + username);
+        String response = reader.readLineAsString();
+        recordCommand("USER", response, 0);
+        System.out.println("USER响应: " + response);
+
+        if (response == null) {
+            throw new EOFException("服务器关闭了连接");
+        }
+        if (!response.startsWith("+OK")) {
+            return response;
+        }
+
+        // 发送PASS命令
+        sendCommand("PASS " + password);
+        response = reader.readLineAsString();
+        recordCommand("PASS", response, 0);
+        System.out.println("PASS响应: " + response);
+        if (response == null) {
+            throw new EOFException("服务器关闭了连接");
+        }
+        return response;
+    }
+
+    /**
+     * 使用SASL PLAIN机制登录，凭证作为初始响应随AUTH命令一起发送（RFC 5034、RFC 4616）
+     * @param username 用户名
+     * @param password 密码或授权码
+     * @return 服务器的最终响应；服务器不接受初始响应而要求继续时取消认证并返回null
+     * @throws IOException 网络异常
+     */
+    private String authenticatePlain(String username, String password) throws IOException {
+        sendCommand(authPlainCommand(username, password));
+        String response = reader.readLineAsString();
+        recordCommand("AUTH", response, 0);
+        if (response == null) {
+            throw new EOFException("服务器关闭了连接");
+        }
+        if (response.startsWith("+ ") || response.equals("+")) {
+            // 服务器仍在等待数据，说明初始响应未被接受：取消本次认证
+            sendCommand("*");
+            System.out.println("AUTH响应: " + reader.readLineAsString());
             return null;
         }
+        System.out.println("AUTH响应: " + response);
+        return response;
+    }
+
+    /**
+     * 构造带初始响应的AUTH PLAIN命令
+     * @param username 用户名
+     * @param password 密码或授权码
+     * @return AUTH命令
+     */
+    static String authPlainCommand(String username, String password) {
+        // 消息格式：授权身份(空) NUL 认证身份 NUL 密码
+        byte[] message = ("\0" + username + "\0" + password).getBytes(StandardCharsets.UTF_8);
+        return "AUTH PLAIN " + Base64.getEncoder().encodeToString(message);
+    }
 
+    /**
+     * 获取邮箱统计信息
+     * @return 包含邮件数量和总大小的数组，[0]=邮件数，[1]=总大小（字节）
+     */
+    public int[] getMailboxStat() {
+        commandLock.lock();
         try {
-            // 发送STAT命令
-            writer.println("STAT");
-            String response = reader.readLine();
-
-            // 解析响应：+OK 邮件数 总大小
-            if (response.startsWith("+OK")) {
-                String[] parts = response.split(" ");
-                if (parts.length >= 3) {
-                    int count = Integer.parseInt(parts[1]);  // 邮件数量
-                    int size = Integer.parseInt(parts[2]);   // 总大小
-                    return new int[]{count, size};
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            try {
+                // 发送STAT命令
+                sendCommand("STAT");
+                String response = reader.readLineAsString();
+                recordCommand("STAT", response, 0);
+
+                // 解析响应：+OK 邮件数 总大小
+                if (response.startsWith("+OK")) {
+                    String[] parts = response.split(" ");
+                    if (parts.length >= 3) {
+                        int count = Integer.parseInt(parts[1]);  // 邮件数量
+                        int size = Integer.parseInt(parts[2]);   // 总大小
+                        return new int[]{count, size};
+                    }
                 }
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("获取邮箱统计失败: " + e.getMessage());
             }
-        } catch (IOException | NumberFormatException e) {
-            System.err.println("获取邮箱统计失败: " + e.getMessage());
+            return null;
+        } finally {
+            endCommand();
         }
-        return null;
     }
 
     /**
@@ -151,28 +309,103 @@ public class POP3SSLClient {
      * @return 邮件列表，每个元素格式为"序号 大小"
      */
     public List<String> getMessageList() {
-        if (!authenticated) {
-            System.err.println("用户未认证");
-            return null;
+        commandLock.lock();
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            List<String> messageList = new ArrayList<>();
+            try {
+                // 发送LIST命令，读取邮件列表直到遇到单独的"."行
+                sendCommand("LIST");
+                POP3Response response = readResponse("LIST", true);
+
+                if (response.isOk()) {
+                    messageList.addAll(response.getLines());
+                }
+            } catch (IOException e) {
+                System.err.println("获取邮件列表失败: " + e.getMessage());
+            }
+            return messageList;
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 批量获取邮件头部摘要（TOP n 0）
+     * 只传输邮件头，不下载正文；服务器支持PIPELINING时所有TOP命令以流水线方式发送
+     * @param messageNumbers 邮件序号列表
+     * @return 邮件头部摘要列表（按请求顺序），获取失败的邮件不包含在内；未认证时返回null
+     */
+    public List<MessageHeader> getMessageHeaders(List<Integer> messageNumbers) {
+        commandLock.lock();  // 检查状态与执行批次在同一次加锁内完成
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            List<String> commands = new ArrayList<>();
+            for (int number : messageNumbers) {
+                commands.add("TOP " + number + " 0");
+            }
+
+            List<MessageHeader> headers = new ArrayList<>();
+            try {
+                executeBatch(commands, (index, response) -> {
+                    if (response.isOk()) {
+                        headers.add(MessageHeader.parse(messageNumbers.get(index), response.getLines()));
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("获取邮件头失败: " + e.getMessage());
+            }
+            return headers;
+        } finally {
+            commandLock.unlock();
         }
+    }
 
-        List<String> messageList = new ArrayList<>();
+    /**
+     * 获取邮件唯一标识列表（UIDL）
+     * 唯一标识在会话之间保持不变，可用于判断邮件是否已下载过
+     * @return 邮件序号到唯一标识的映射（按序号顺序），未认证或服务器不支持UIDL时返回null
+     */
+    public Map<Integer, String> getUidlList() {
+        commandLock.lock();
         try {
-            // 发送LIST命令
-            writer.println("LIST");
-            String response = reader.readLine();
-
-            if (response.startsWith("+OK")) {
-                String line;
-                // 读取邮件列表，直到遇到单独的"."行
-                while ((line = reader.readLine()) != null && !line.equals(".")) {
-                    messageList.add(line);
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            try {
+                sendCommand("UIDL");
+                POP3Response response = readResponse("UIDL", true);
+                if (!response.isOk()) {
+                    System.err.println("服务器不支持UIDL: " + response.getStatusLine());
+                    return null;
                 }
+
+                // 每行格式：序号 唯一标识
+                Map<Integer, String> uidlMap = new LinkedHashMap<>();
+                for (String line : response.getLines()) {
+                    String[] parts = line.trim().split("\\s+");
+                    if (parts.length >= 2) {
+                        uidlMap.put(Integer.parseInt(parts[0]), parts[1]);
+                    }
+                }
+                return uidlMap;
+            } catch (IOException | NumberFormatException e) {
+                System.err.println("获取UIDL列表失败: " + e.getMessage());
             }
-        } catch (IOException e) {
-            System.err.println("获取邮件列表失败: " + e.getMessage());
+            return null;
+        } finally {
+            endCommand();
         }
-        return messageList;
     }
 
     /**
@@ -181,28 +414,134 @@ public class POP3SSLClient {
      * @return 邮件的完整内容
      */
     public String retrieveMessage(int messageNumber) {
-        if (!authenticated) {
-            System.err.println("用户未认证");
+        commandLock.lock();
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            ByteArrayOutputStream messageContent = new ByteArrayOutputStream();
+            try {
+                // 发送RETR命令
+                sendCommand("RETR " + messageNumber);
+                String response = reader.readLineAsString();
+
+                if (response.startsWith("+OK")) {
+                    // 读取邮件内容，直到遇到单独的"."行
+                    readMultiLineData(messageContent, LF);
+                }
+                recordCommand("RETR", response, messageContent.size());
+            } catch (IOException e) {
+                System.err.println("获取邮件内容失败: " + e.getMessage());
+            }
+            // 整封邮件只解码一次
+            return new String(messageContent.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 获取指定邮件的原始字节
+     * 数据按网络上收到的字节原样返回（各行以CRLF结尾），不做任何字符集解码，
+     * 适合交给EmailMessage(int, byte[])按各部分声明的字符集解析
+     * @param messageNumber 邮件序号
+     * @return 邮件原始字节，未认证或获取失败时返回null
+     */
+    public byte[] retrieveMessageBytes(int messageNumber) {
+        commandLock.lock();
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            try {
+                sendCommand("RETR " + messageNumber);
+                POP3Response response = readResponse("RETR " + messageNumber, true);
+                if (response.isOk()) {
+                    return response.getData();
+                }
+                System.err.println("获取邮件内容失败: " + response.getStatusLine());
+            } catch (IOException e) {
+                System.err.println("获取邮件内容失败: " + e.getMessage());
+            }
             return null;
+        } finally {
+            endCommand();
         }
+    }
 
-        StringBuilder messageContent = new StringBuilder();
+    /**
+     * 以流的方式获取指定邮件的内容
+     * 邮件数据在读取时才从网络接收，边读边完成字节填充还原和结束标记识别，内存占用与邮件大小无关。
+     * 返回的流以CRLF分隔各行，可直接写入.eml文件；在流读完或关闭之前发送的其他命令会先将其读完。
+     * 流在命令锁之外读取，流打开期间客户端只能由读取该流的线程使用，不能在其他线程中同时发送命令
+     * @param messageNumber 邮件序号
+     * @return 邮件内容流，未认证或服务器返回错误时返回null
+     */
+    public InputStream retrieveMessageStream(int messageNumber) {
+        commandLock.lock();
         try {
-            // 发送RETR命令
-            writer.println("RETR " + messageNumber);
-            String response = reader.readLine();
-
-            if (response.startsWith("+OK")) {
-                String line;
-                // 读取邮件内容，直到遇到单独的"."行
-                while ((line = reader.readLine()) != null && !line.equals(".")) {
-                    messageContent.append(line).append("\n");
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            try {
+                sendCommand("RETR " + messageNumber);
+                String response = reader.readLineAsString();
+                if (response != null && response.startsWith("+OK")) {
+                    socket.setSoTimeout(connector.getTransferTimeout());
+                    streamBytes = response.length() + 2;  // 在流读完时计入RETR的指标
+                    openStream = new MessageInputStream();
+                    return openStream;
                 }
+                recordCommand("RETR", response, 0);
+                System.err.println("获取邮件内容失败: " + response);
+            } catch (IOException e) {
+                System.err.println("获取邮件内容失败: " + e.getMessage());
             }
-        } catch (IOException e) {
-            System.err.println("获取邮件内容失败: " + e.getMessage());
+            return null;
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 批量获取多封邮件的内容
+     * 服务器支持PIPELINING时所有RETR命令以流水线方式发送，否则逐条发送
+     * @param messageNumbers 邮件序号列表
+     * @return 邮件序号到邮件内容的映射（按请求顺序），获取失败的邮件不包含在内；未认证时返回null
+     */
+    public Map<Integer, String> retrieveMessages(List<Integer> messageNumbers) {
+        commandLock.lock();  // 检查状态与执行批次在同一次加锁内完成
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return null;
+            }
+
+            List<String> commands = new ArrayList<>();
+            for (int number : messageNumbers) {
+                commands.add("RETR " + number);
+            }
+
+            Map<Integer, String> messages = new LinkedHashMap<>();
+            try {
+                executeBatch(commands, (index, response) -> {
+                    if (response.isOk()) {
+                        messages.put(messageNumbers.get(index), response.getBody());
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("批量获取邮件失败: " + e.getMessage());
+            }
+            return messages;
+        } finally {
+            commandLock.unlock();
         }
-        return messageContent.toString();
     }
 
     /**
@@ -212,20 +551,309 @@ public class POP3SSLClient {
      * @return 是否成功标记删除
      */
     public boolean deleteMessage(int messageNumber) {
-        if (!authenticated) {
-            System.err.println("用户未认证");
+        commandLock.lock();
+        try {
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return false;
+            }
+
+            try {
+                // 发送DELE命令
+                sendCommand("DELE " + messageNumber);
+                String response = reader.readLineAsString();
+                recordCommand("DELE", response, 0);
+                return response.startsWith("+OK");
+            } catch (IOException e) {
+                System.err.println("删除邮件失败: " + e.getMessage());
+            }
             return false;
+        } finally {
+            endCommand();
         }
+    }
 
+    /**
+     * 批量标记删除多封邮件
+     * 服务器支持PIPELINING时所有DELE命令以流水线方式发送，否则逐条发送
+     * @param messageNumbers 邮件序号列表
+     * @return 成功标记删除的邮件序号列表；未认证时返回空列表
+     */
+    public List<Integer> deleteMessages(List<Integer> messageNumbers) {
+        commandLock.lock();  // 检查状态与执行批次在同一次加锁内完成
         try {
-            // 发送DELE命令
-            writer.println("DELE " + messageNumber);
-            String response = reader.readLine();
-            return response.startsWith("+OK");
+            List<Integer> deleted = new ArrayList<>();
+            if (!authenticated) {
+                System.err.println("用户未认证");
+                return deleted;
+            }
+
+            List<String> commands = new ArrayList<>();
+            for (int number : messageNumbers) {
+                commands.add("DELE " + number);
+            }
+
+            try {
+                executeBatch(commands, (index, response) -> {
+                    if (response.isOk()) {
+                        deleted.add(messageNumbers.get(index));
+                    }
+                });
+            } catch (IOException e) {
+                System.err.println("批量删除邮件失败: " + e.getMessage());
+            }
+            return deleted;
+        } finally {
+            commandLock.unlock();
+        }
+    }
+
+    /**
+     * 批量执行命令并返回全部响应
+     * 适合响应较小的命令（如LIST n、DELE n）；大批量RETR请使用带处理器的重载以避免占用大量内存
+     * @param commands 命令列表，如"LIST 1"、"DELE 2"
+     * @return 与命令一一对应的响应列表
+     * @throws IOException 网络异常
+     */
+    public List<POP3Response> executeBatch(List<String> commands) throws IOException {
+        List<POP3Response> responses = new ArrayList<>(commands.size());
+        executeBatch(commands, (index, response) -> responses.add(response));
+        return responses;
+    }
+
+    /**
+     * 批量执行命令
+     * 服务器在CAPA中声明PIPELINING时（RFC 2449），命令以滑动窗口方式连续发送，
+     * 始终保持最多PIPELINE_WINDOW条命令在途，响应按发送顺序依次读取并分发，
+     * 整个批次只需约一次往返时间；否则退化为逐条发送、逐条等待
+     * @param commands 命令列表
+     * @param handler 响应处理器，按命令顺序被调用
+     * @throws IOException 网络异常或处理器抛出的异常
+     */
+    public void executeBatch(List<String> commands, BatchResponseHandler handler) throws IOException {
+        commandLock.lock();
+        try {
+            if (!isConnected()) {
+                throw new IOException("未连接到服务器");
+            }
+            if (commands.isEmpty()) {
+                return;
+            }
+
+            int window = supportsPipelining() ? PIPELINE_WINDOW : 1;
+            int sent = 0;
+
+            try {
+                finishOpenStream();
+                // 先填满发送窗口，所有命令一次性写出
+                commandStart = System.nanoTime();
+                while (sent < commands.size() && sent < window) {
+                    writer.print(commands.get(sent++) + "\r\n");
+                }
+                writer.flush();
+
+                for (int received = 0; received < commands.size(); received++) {
+                    String command = commands.get(received);
+                    POP3Response response = readResponse(command, isMultiLineCommand(command));
+
+                    // 每收到一条响应就补发一条命令，保持窗口满载
+                    if (sent < commands.size()) {
+                        writer.print(commands.get(sent++) + "\r\n");
+                        writer.flush();
+                    }
+
+                    handler.onResponse(received, response);
+                }
+            } catch (IOException e) {
+                // 批次中断后剩余响应已无法与命令对应，连接不能继续使用
+                handleDisconnection();
+                throw e;
+            }
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 判断服务器是否支持命令流水线（PIPELINING）
+     * @return 是否支持PIPELINING
+     */
+    public boolean supportsPipelining() {
+        return getCapabilities().supportsPipelining();
+    }
+
+    /**
+     * 获取服务器能力
+     * @return 能力集，未连接或服务器不支持CAPA时为空能力集
+     */
+    public POP3Capabilities getCapabilities() {
+        return capabilities != null ? capabilities : POP3Capabilities.empty();
+    }
+
+    /**
+     * 重新向服务器查询能力并更新缓存
+     * 只缓存服务器实际给出的结果（+OK或-ERR），查询因网络异常失败时不写入缓存
+     * @return 最新的能力集
+     */
+    public POP3Capabilities refreshCapabilities() {
+        commandLock.lock();
+        try {
+            if (isConnected()) {
+                POP3Capabilities queried = queryCapabilities();
+                if (queried != null) {
+                    capabilities = queried;
+                    capabilityCache.put(server, port, queried);
+                }
+            }
+            return getCapabilities();
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 设置能力缓存，需在connect()之前调用
+     * @param capabilityCache 能力缓存
+     */
+    public void setCapabilityCache(CapabilityCache capabilityCache) {
+        this.capabilityCache = capabilityCache;
+    }
+
+    /**
+     * 在欢迎消息之后确定服务器能力
+     * 优先使用未过期的缓存结果，省去一次CAPA往返；缓存缺失时发送CAPA并写入缓存
+     */
+    private void negotiateCapabilities() {
+        POP3Capabilities cached = capabilityCache.get(server, port);
+        if (cached != null) {
+            capabilities = cached;
+            System.out.println("使用缓存的服务器能力: " + cached);
+            return;
+        }
+        refreshCapabilities();
+        if (capabilities != null) {
+            System.out.println("服务器能力: " + capabilities);
+        }
+    }
+
+    /**
+     * 发送CAPA命令查询服务器能力
+     * @return 能力集，服务器不支持CAPA时返回空能力集，网络异常时返回null
+     */
+    private POP3Capabilities queryCapabilities() {
+        try {
+            sendCommand("CAPA");
+            POP3Response response = readResponse("CAPA", true);
+            if (response.isOk()) {
+                return new POP3Capabilities(response.getLines());
+            }
+            return POP3Capabilities.empty();
         } catch (IOException e) {
-            System.err.println("删除邮件失败: " + e.getMessage());
+            System.err.println("查询服务器能力失败: " + e.getMessage());
+            handleDisconnection();
+            return null;
+        }
+    }
+
+    /**
+     * 发送一条命令
+     * 按协议要求以CRLF结尾；如果还有未读完的邮件流，先将其读完以保持命令与响应对应
+     * @param command 命令内容
+     * @throws IOException 读取未完成的邮件流失败
+     */
+    private void sendCommand(String command) throws IOException {
+        finishOpenStream();
+        commandStart = System.nanoTime();
+        writer.print(command + "\r\n");
+        writer.flush();
+    }
+
+    /**
+     * 读完并关闭尚未结束的邮件流
+     * @throws IOException 网络异常
+     */
+    private void finishOpenStream() throws IOException {
+        if (openStream != null) {
+            openStream.close();
+        }
+    }
+
+    /**
+     * 读取一条完整的响应
+     * @param command 对应的命令
+     * @param multiLine 成功时是否为多行响应
+     * @return 响应对象
+     * @throws IOException 网络异常或连接被关闭
+     */
+    private POP3Response readResponse(String command, boolean multiLine) throws IOException {
+        String statusLine = reader.readLineAsString();
+        if (statusLine == null) {
+            throw new EOFException("服务器关闭了连接");
+        }
+        lastActivity = System.currentTimeMillis();
+
+        byte[] data = null;
+        // 只有成功的多行命令才有数据部分，-ERR响应总是单行
+        if (multiLine && statusLine.startsWith("+OK")) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            readMultiLineData(out, CRLF);
+            data = out.toByteArray();
+        }
+        recordCommand(command, statusLine, data != null ? data.length : 0);
+        return new POP3Response(command, statusLine, data);
+    }
+
+    /**
+     * 记录一条命令的指标，并以当前时间作为下一条响应的计时起点
+     * 流水线批次中下一条命令早已发出，其延迟从本条响应读完时算起
+     * @param command 命令内容
+     * @param statusLine 状态行，连接关闭时为null
+     * @param dataBytes 多行响应数据部分的字节数
+     */
+    private void recordCommand(String command, String statusLine, long dataBytes) {
+        long now = System.nanoTime();
+        long bytes = (statusLine != null ? statusLine.length() + 2 : 0) + dataBytes;
+        metrics.recordCommand(command, now - commandStart, bytes, statusLine != null && statusLine.startsWith("+OK"));
+        commandStart = now;
+    }
+
+    /**
+     * 读取多行响应的数据部分直到结束行
+     * 数据行以字节片段的形式直接写出，不经过字符集解码
+     * @param out 输出流
+     * @param lineEnding 每行之后写出的行结束符
+     * @throws IOException 网络异常或连接在响应结束前被关闭
+     */
+    private void readMultiLineData(ByteArrayOutputStream out, byte[] lineEnding) throws IOException {
+        socket.setSoTimeout(connector.getTransferTimeout());
+        int length;
+        while ((length = reader.readDataLine()) >= 0) {
+            out.write(reader.getBuffer(), reader.getLineOffset(), length);
+            out.write(lineEnding, 0, lineEnding.length);
+            lastActivity = System.currentTimeMillis();  // 长响应传输期间连接并不空闲
+        }
+        socket.setSoTimeout(connector.getCommandTimeout());
+    }
+
+    /**
+     * 判断命令的成功响应是否为多行响应
+     * @param command 命令内容
+     * @return RETR、TOP、CAPA以及不带参数的LIST、UIDL返回true
+     */
+    private static boolean isMultiLineCommand(String command) {
+        String[] parts = command.trim().split("\\s+");
+        String verb = parts[0].toUpperCase();
+        switch (verb) {
+            case "RETR":
+            case "TOP":
+            case "CAPA":
+                return true;
+            case "LIST":
+            case "UIDL":
+                return parts.length == 1;
+            default:
+                return false;
         }
-        return false;
     }
 
     /**
@@ -233,17 +861,53 @@ public class POP3SSLClient {
      * 此时会真正删除被标记删除的邮件
      */
     public void quit() {
-        // 停止保持连接定时器
+        // 取消保持连接，等待进行中的命令结束
         stopKeepAlive();
+        commandLock.lock();
+        try {
+            closeSession();
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 直接关闭连接而不发送QUIT
+     * 用于连接已不可用的情况；服务器不会进入UPDATE状态，本次会话标记删除的邮件不会被删除
+     */
+    public void abort() {
+        stopKeepAlive();
+        commandLock.lock();
+        try {
+            Socket tempSocket = this.socket;
+            connected = false;
+            authenticated = false;
+            capabilities = null;
+            openStream = null;
+            this.reader = null;
+            this.writer = null;
+            this.socket = null;
+            closeQuietly(tempSocket);
+        } finally {
+            endCommand();
+        }
+    }
+
+    /**
+     * 发送QUIT并释放连接资源，调用时需持有命令锁
+     */
+    private void closeSession() {
 
         // 保存当前的连接资源引用
-        BufferedReader tempReader = this.reader;
+        POP3LineReader tempReader = this.reader;
         PrintWriter tempWriter = this.writer;
         Socket tempSocket = this.socket;
 
         // 立即重置连接状态
         connected = false;
         authenticated = false;
+        capabilities = null;
+        openStream = null;
         this.reader = null;
         this.writer = null;
         this.socket = null;
@@ -254,7 +918,7 @@ public class POP3SSLClient {
                 tempWriter.println("QUIT");
                 if (tempReader != null) {
                     tempSocket.setSoTimeout(5000);  // 设置5秒超时
-                    String response = tempReader.readLine();
+                    String response = tempReader.readLineAsString();
                     System.out.println("QUIT响应: " + response);
                 }
             }
@@ -269,47 +933,228 @@ public class POP3SSLClient {
     }
 
     /**
-     * 启动保持连接的定时器
-     * 定期发送NOOP命令以保持连接活跃
+     * 邮件内容流
+     * 直接从行读取器的缓冲区复制数据行，行读取器已完成字节填充还原和结束行识别
      */
-    private void startKeepAlive() {
-        keepAliveTimer = new Timer(true);  // 使用守护线程
-        keepAliveTimer.schedule(new TimerTask() {
-            @Override
-            public void run() {
-                if (isConnected() && authenticated) {
-                    try {
-                        // 发送NOOP（空操作）命令
-                        writer.println("NOOP");
-                        String response = reader.readLine();
-                        if (!response.startsWith("+OK")) {
-                            // 服务器响应异常，处理断连
-                            handleDisconnection();
-                        }
-                    } catch (IOException e) {
-                        // 连接已断开
-                        handleDisconnection();
-                    }
+    private class MessageInputStream extends InputStream {
+        private int lineOffset;      // 当前行未读部分在读取器缓冲区中的位置
+        private int lineRemaining;   // 当前行未读的字节数
+        private int crlfRemaining;   // 当前行之后尚未输出的CRLF字节数
+        private boolean finished;    // 是否已读到结束行
+
+        @Override
+        public int read() throws IOException {
+            // 直接从读取器缓冲区或CRLF中取一个字节，不为单字节读取分配数组
+            if (!fill()) {
+                return -1;
+            }
+            if (lineRemaining > 0) {
+                lineRemaining--;
+                return reader.getBuffer()[lineOffset++] & 0xFF;
+            }
+            return CRLF[CRLF.length - crlfRemaining--] & 0xFF;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (len == 0) {
+                return 0;
+            }
+            if (!fill()) {
+                return -1;
+            }
+            if (lineRemaining > 0) {
+                int n = Math.min(len, lineRemaining);
+                System.arraycopy(reader.getBuffer(), lineOffset, b, off, n);
+                lineOffset += n;
+                lineRemaining -= n;
+                return n;
+            }
+            int n = Math.min(len, crlfRemaining);
+            System.arraycopy(CRLF, CRLF.length - crlfRemaining, b, off, n);
+            crlfRemaining -= n;
+            return n;
+        }
+
+        /**
+         * 当前行读完时读取下一行
+         * @return 是否还有数据
+         */
+        private boolean fill() throws IOException {
+            if (lineRemaining > 0 || crlfRemaining > 0) {
+                return true;
+            }
+            if (finished) {
+                return false;
+            }
+            int length = reader.readDataLine();
+            lastActivity = System.currentTimeMillis();
+            if (length < 0) {
+                finish();
+                return false;
+            }
+            streamBytes += length + CRLF.length;
+            lineOffset = reader.getLineOffset();
+            lineRemaining = length;
+            crlfRemaining = CRLF.length;
+            return true;
+        }
+
+        private void finish() {
+            if (!finished && openStream == this) {
+                metrics.recordCommand("RETR", System.nanoTime() - commandStart, streamBytes, true);
+            }
+            finished = true;
+            lineRemaining = 0;
+            crlfRemaining = 0;
+            if (openStream == this) {
+                openStream = null;
+                try {
+                    socket.setSoTimeout(connector.getCommandTimeout());
+                } catch (IOException e) {
+                    // 连接已关闭，忽略
+                }
+            }
+        }
+
+        /**
+         * 关闭流：读完剩余数据直到结束行，使连接可以继续发送命令
+         */
+        @Override
+        public void close() throws IOException {
+            try {
+                int length;
+                while (!finished && (length = reader.readDataLine()) >= 0) {
+                    streamBytes += length + CRLF.length;  // 丢弃剩余数据
                 }
+            } finally {
+                finish();
             }
-        }, KEEP_ALIVE_INTERVAL, KEEP_ALIVE_INTERVAL);
+        }
     }
 
     /**
-     * 停止保持连接的定时器
+     * 在共享调度器中注册保持连接
+     * 不再为每个会话创建定时器线程，只有会话空闲时才会发送NOOP
+     */
+    private void startKeepAlive() {
+        stopKeepAlive();
+        keepAlive = keepAliveScheduler.register(this, server, port);
+    }
+
+    /**
+     * 取消保持连接注册
      */
     private void stopKeepAlive() {
-        if (keepAliveTimer != null) {
-            keepAliveTimer.cancel();
-            keepAliveTimer = null;
+        if (keepAlive != null) {
+            keepAlive.cancel();
+            keepAlive = null;
+        }
+    }
+
+    /**
+     * 发送一次保持连接的NOOP，由保持连接调度器在会话空闲时调用
+     * 只在命令锁空闲、没有未读完的邮件流时发送，不会与正在执行的命令交错
+     * @return 是否发送了NOOP；会话正忙或未认证时返回false
+     * @throws IOException 连接已断开或服务器响应异常
+     */
+    boolean sendKeepAlive() throws IOException {
+        if (!commandLock.tryLock()) {
+            return false;
+        }
+        try {
+            if (!isConnected() || !authenticated || openStream != null) {
+                return false;
+            }
+            String response;
+            try {
+                commandStart = System.nanoTime();
+                writer.print("NOOP\r\n");
+                writer.flush();
+                response = reader.readLineAsString();
+                recordCommand("NOOP", response, 0);
+            } catch (IOException e) {
+                handleDisconnection();
+                throw e;
+            }
+            if (response == null || !response.startsWith("+OK")) {
+                handleDisconnection();
+                throw new IOException("NOOP响应异常: " + response);
+            }
+            return true;
+        } finally {
+            endCommand();
         }
     }
 
+    /**
+     * 结束一条命令：记录活动时间并释放命令锁
+     */
+    private void endCommand() {
+        lastActivity = System.currentTimeMillis();
+        commandLock.unlock();
+    }
+
+    /**
+     * 获取最近一次命令结束或收到响应数据的时间
+     * @return 毫秒时间戳
+     */
+    long getLastActivity() {
+        return lastActivity;
+    }
+
+    /**
+     * 设置TLS配置，需在connect()之前调用
+     * @param tlsConfig TLS配置
+     */
+    public void setTLSConfig(TLSConfig tlsConfig) {
+        this.tlsConfig = tlsConfig;
+    }
+
+    /**
+     * 设置建连器，需在connect()之前调用
+     * @param connector 建连器
+     */
+    public void setConnector(HappyEyeballsConnector connector) {
+        this.connector = connector;
+    }
+
+    /**
+     * 设置命令指标注册表，为null时使用全局注册表
+     * @param metrics 注册表
+     */
+    public void setMetrics(POP3Metrics metrics) {
+        this.metrics = metrics != null ? metrics : POP3Metrics.getDefault();
+    }
+
+    /**
+     * 获取最近一次TLS握手的耗时，不含TCP连接建立时间
+     * @return 耗时（毫秒），未使用SSL时返回-1
+     */
+    public long getHandshakeMillis() { return handshakeMillis; }
+
+    /**
+     * 判断最近一次TLS握手是否恢复了缓存的会话
+     * @return 是否恢复
+     */
+    public boolean isSessionResumed() { return sessionResumed; }
+
+    /**
+     * 设置保持连接调度器，需在login()之前调用
+     * @param keepAliveScheduler 调度器
+     */
+    public void setKeepAliveScheduler(KeepAliveScheduler keepAliveScheduler) {
+        this.keepAliveScheduler = keepAliveScheduler;
+    }
+
     /**
      * 处理连接断开的情况
-     * 重置连接和认证状态
+     * 重置连接和认证状态；已登录的会话在空闲一段时间后断开时，将空闲时长提供给调度器学习服务器超时
      */
     private void handleDisconnection() {
+        if (authenticated && keepAlive != null) {
+            keepAliveScheduler.recordIdleTimeout(server, port, System.currentTimeMillis() - lastActivity);
+        }
         connected = false;
         authenticated = false;
         stopKeepAlive();
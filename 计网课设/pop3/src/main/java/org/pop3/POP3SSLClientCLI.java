@@ -2,7 +2,13 @@ package org.pop3;
 
 import java.io.Console;
 import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Scanner;
 
 public class POP3SSLClientCLI {
@@ -65,6 +71,12 @@ public class POP3SSLClientCLI {
                 case "10":
                     disconnect();
                     break;
+                case "11":
+                    syncNewMessages();
+                    break;
+                case "12":
+                    extractMailboxAttachments();
+                    break;
                 case "0":
                 case "q":
                 case "quit":
@@ -105,6 +117,8 @@ public class POP3SSLClientCLI {
         System.out.println("8.  删除邮件");
         System.out.println("9.  显示邮箱信息");
         System.out.println("10. 断开连接");
+        System.out.println("11. 增量同步新邮件");
+        System.out.println("12. 提取邮箱全部附件");
         System.out.println("0.  退出程序");
         System.out.println(BLUE + "============================" + RESET);
         System.out.print("请选择操作: ");
@@ -210,17 +224,42 @@ public class POP3SSLClientCLI {
             return;
         }
 
-        System.out.println("共 " + GREEN + messages.size() + RESET + " 封邮件\n");
-        System.out.println(String.format("%-6s %-10s", "序号", "大小"));
-        System.out.println("─────────────────────");
-
+        // 只获取邮件头（TOP n 0），显示主题和发件人而无需下载正文
+        List<Integer> numbers = new ArrayList<>();
+        Map<Integer, Long> sizes = new HashMap<>();
         for (String message : messages) {
             String[] parts = message.split(" ");
             if (parts.length >= 2) {
-                String num = parts[0];
-                String size = formatFileSize(Long.parseLong(parts[1]));
-                System.out.println(String.format("%-6s %-10s", num, size));
+                int number = Integer.parseInt(parts[0]);
+                numbers.add(number);
+                sizes.put(number, Long.parseLong(parts[1]));
+            }
+        }
+        Map<Integer, MessageHeader> headers = new HashMap<>();
+        List<MessageHeader> headerList = client.getMessageHeaders(numbers);
+        if (headerList != null) {
+            for (MessageHeader header : headerList) {
+                headers.put(header.getMessageNumber(), header);
+            }
+        }
+
+        System.out.println("共 " + GREEN + messages.size() + RESET + " 封邮件\n");
+        System.out.println(String.format("%-6s %-10s %-17s %-24s %s", "序号", "大小", "日期", "发件人", "主题"));
+        System.out.println("─".repeat(90));
+
+        SimpleDateFormat dateFormat = new SimpleDateFormat("yyyy-MM-dd HH:mm");
+        for (int number : numbers) {
+            String size = formatFileSize(sizes.get(number));
+            MessageHeader header = headers.get(number);
+            if (header == null) {
+                System.out.println(String.format("%-6d %-10s", number, size));
+                continue;
             }
+            String date = header.getDate() != null ? dateFormat.format(header.getDate()) : "未知";
+            String from = header.getFrom() != null ? header.getFrom() : "未知";
+            String subject = header.getSubject() != null ? header.getSubject() : "无主题";
+            System.out.println(String.format("%-6d %-10s %-17s %-24s %s",
+                    number, size, date, truncate(from, 24), truncate(subject, 40)));
         }
     }
 
@@ -234,7 +273,7 @@ public class POP3SSLClientCLI {
             int messageNumber = Integer.parseInt(input);
             System.out.println("\n正在获取邮件内容...");
 
-            String rawContent = client.retrieveMessage(messageNumber);
+            byte[] rawContent = client.retrieveMessageBytes(messageNumber);
             if (rawContent == null) {
                 printError("获取邮件失败");
                 return;
@@ -444,6 +483,56 @@ public class POP3SSLClientCLI {
         }
     }
 
+    private void syncNewMessages() {
+        if (!checkAuthentication()) return;
+
+        clearScreen();
+        System.out.println(BOLD + "=== 增量同步新邮件 ===" + RESET);
+
+        File dir = new File(config.getDownloadDirectory());
+        if (!dir.exists()) {
+            dir.mkdirs();
+        }
+
+        File storeFile = SeenMessageStore.defaultFile(dir, config.getServer(), config.getUsername());
+        try (SeenMessageStore store = new SeenMessageStore(storeFile)) {
+            UidlSynchronizer synchronizer = new UidlSynchronizer(client, store);
+            int count = synchronizer.sync((number, uid, content) -> {
+                String fileName = uid.replaceAll("[^A-Za-z0-9._-]", "_") + ".eml";
+                try (FileOutputStream fos = new FileOutputStream(new File(dir, fileName))) {
+                    fos.write(content);
+                }
+                System.out.println(GREEN + "?" + RESET + " 已保存: #" + number + " -> " + fileName);
+            });
+            printSuccess("同步完成，新下载 " + count + " 封邮件，保存在: " + dir.getAbsolutePath());
+        } catch (IOException e) {
+            printError("同步失败: " + e.getMessage());
+        }
+    }
+
+    private void extractMailboxAttachments() {
+        if (!checkAuthentication()) return;
+
+        System.out.print("保存到目录 [./attachments]: ");
+        String dirPath = scanner.nextLine().trim();
+        if (dirPath.isEmpty()) dirPath = "./attachments";
+
+        File dir = new File(dirPath);
+        try {
+            Map<Integer, List<File>> saved = new AttachmentExtractor(dir).extractMailbox(client);
+            int count = 0;
+            for (Map.Entry<Integer, List<File>> entry : saved.entrySet()) {
+                for (File file : entry.getValue()) {
+                    System.out.println(GREEN + "?" + RESET + " 已保存: #" + entry.getKey() + " -> " + file.getName());
+                    count++;
+                }
+            }
+            printSuccess("共提取 " + count + " 个附件，保存在: " + dir.getAbsolutePath());
+        } catch (IOException e) {
+            printError("提取附件失败: " + e.getMessage());
+        }
+    }
+
     private void disconnect() {
         if (client == null) {
             printWarning("当前未连接");
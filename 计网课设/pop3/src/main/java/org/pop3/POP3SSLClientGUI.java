@@ -7,8 +7,13 @@ import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.io.FileWriter;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 /**
  * POP3邮件客户端图形用户界面类
@@ -26,6 +31,7 @@ import java.util.List;
 public class POP3SSLClientGUI extends JFrame {
     // ========== 核心业务对象 ==========
     private POP3SSLClient client;  // POP3客户端实例，负责与服务器通信
+    private MessagePrefetcher prefetcher; // 相邻邮件预取器，登录后创建
 
     // ========== 连接配置UI组件 ==========
     private JTextField serverField;      // 服务器地址输入框
@@ -44,6 +50,12 @@ public class POP3SSLClientGUI extends JFrame {
     // ========== 邮件列表相关组件 ==========
     private JList<String> messageList;          // 邮件列表显示组件
     private DefaultListModel<String> listModel; // 邮件列表数据模型
+    private volatile int listGeneration;        // 邮件列表版本号，每次刷新加一
+    private static final int HEADER_BATCH_SIZE = 50; // 每批获取的邮件头数量
+    private final Map<Integer, Long> messageSizes = new HashMap<>(); // LIST返回的邮件大小，用于预取预算
+    private final Map<Integer, Integer> listIndex = new HashMap<>();   // 邮件序号 -> 在列表中的位置，填充列表时建立
+    private final List<Integer> listNumbers = new ArrayList<>();       // 列表中各位置的邮件序号，供预取使用
+    private int viewGeneration;                 // 邮件查看版本号，快速切换时丢弃过期的下载结果
 
     // ========== 邮件内容显示组件 ==========
     private JTextArea messageContentArea; // 邮件内容文本区域
@@ -311,6 +323,13 @@ public class POP3SSLClientGUI extends JFrame {
         messageList.setBackground(Color.WHITE);
         messageList.setBorder(BorderFactory.createEmptyBorder(5, 5, 5, 5));
 
+        // 已打开邮件后，用方向键切换选中项即显示对应邮件
+        messageList.addListSelectionListener(e -> {
+            if (!e.getValueIsAdjusting() && currentEmail != null && messageList.getSelectedIndex() != -1) {
+                viewSelectedMessage();
+            }
+        });
+
         // 设置自定义列表项渲染器，美化显示效果
         messageList.setCellRenderer(new DefaultListCellRenderer() {
             @Override
@@ -833,6 +852,7 @@ public class POP3SSLClientGUI extends JFrame {
                         updateStatus("登录成功");
                         getListButton.setEnabled(true);  // 启用获取邮件按钮
                         showSuccessDialog("登录成功！");
+                        prefetcher = new MessagePrefetcher(client); // 创建相邻邮件预取器
                         updateMailboxInfo();             // 更新邮箱信息
                         getMessageList();                // 自动获取邮件列表
                     } else {
@@ -867,6 +887,7 @@ public class POP3SSLClientGUI extends JFrame {
         }
 
         // 断开连接
+        closePrefetcher();
         if (client != null) {
             client.quit();
             client = null;
@@ -891,6 +912,9 @@ public class POP3SSLClientGUI extends JFrame {
 
         // 清空数据
         listModel.clear();                      // 清空邮件列表
+        messageSizes.clear();
+        listIndex.clear();
+        listNumbers.clear();
         messageContentArea.setText("");         // 清空邮件内容
         mailboxInfoLabel.setText("邮箱信息: 未连接");  // 重置邮箱信息
 
@@ -902,17 +926,24 @@ public class POP3SSLClientGUI extends JFrame {
 
     /**
      * 获取邮件列表
-     * 从服务器获取邮件列表并显示
+     * 从服务器获取邮件列表并显示，随后在后台逐批补充邮件头信息
      */
     private void getMessageList() {
         updateStatus("正在获取邮件列表...");
         listModel.clear();  // 清空现有列表
+        listIndex.clear();
+        listNumbers.clear();
+        int generation = ++listGeneration;  // 使之前未完成的邮件头加载失效
 
         // 使用后台线程获取邮件列表
         SwingWorker<List<String>, Void> worker = new SwingWorker<List<String>, Void>() {
             @Override
             protected List<String> doInBackground() throws Exception {
-                return client.getMessageList();  // 从服务器获取邮件列表
+                List<String> messages = client.getMessageList();  // 从服务器获取邮件列表
+                if (prefetcher != null) {
+                    prefetcher.refreshUidl();  // 预取缓存以UIDL为键
+                }
+                return messages;
             }
 
             @Override
@@ -920,11 +951,21 @@ public class POP3SSLClientGUI extends JFrame {
                 try {
                     List<String> messages = get();  // 获取结果
                     if (messages != null) {
-                        // 将邮件添加到列表模型
+                        // 先显示"序号 大小"，邮件头到达后再替换为完整摘要
+                        messageSizes.clear();
+                        listIndex.clear();
+                        listNumbers.clear();
                         for (String message : messages) {
+                            String[] parts = message.split(" ");
+                            listIndex.put(Integer.parseInt(parts[0]), listModel.getSize());
+                            listNumbers.add(Integer.parseInt(parts[0]));
                             listModel.addElement(message);
+                            if (parts.length >= 2) {
+                                messageSizes.put(Integer.parseInt(parts[0]), Long.parseLong(parts[1]));
+                            }
                         }
                         updateStatus("邮件列表获取完成，共 " + messages.size() + " 封邮件");
+                        loadMessageHeaders(messages, generation);
                     } else {
                         updateStatus("获取邮件列表失败");
                     }
@@ -937,9 +978,71 @@ public class POP3SSLClientGUI extends JFrame {
         worker.execute();
     }
 
+    /**
+     * 在后台分批获取邮件头（TOP n 0）并逐步更新列表
+     * 每批邮件头以流水线方式获取，到达后立即显示，无需等待整个邮箱加载完成
+     *
+     * @param messages LIST返回的"序号 大小"列表
+     * @param generation 列表版本号，列表被刷新后旧的加载结果将被丢弃
+     */
+    private void loadMessageHeaders(List<String> messages, int generation) {
+        SwingWorker<Void, MessageHeader> worker = new SwingWorker<Void, MessageHeader>() {
+            @Override
+            protected Void doInBackground() {
+                List<Integer> batch = new ArrayList<>();
+                for (int i = 0; i < messages.size() && generation == listGeneration; i++) {
+                    batch.add(Integer.parseInt(messages.get(i).split(" ")[0]));
+                    if (batch.size() == HEADER_BATCH_SIZE || i == messages.size() - 1) {
+                        List<MessageHeader> headers = client.getMessageHeaders(batch);
+                        if (headers == null) {
+                            break;
+                        }
+                        for (MessageHeader header : headers) {
+                            publish(header);
+                        }
+                        batch = new ArrayList<>();
+                    }
+                }
+                return null;
+            }
+
+            @Override
+            protected void process(List<MessageHeader> headers) {
+                if (generation != listGeneration) {
+                    return;  // 列表已刷新，丢弃过期结果
+                }
+                for (MessageHeader header : headers) {
+                    updateListEntry(header);
+                }
+            }
+        };
+        worker.execute();
+    }
+
+    /**
+     * 用邮件头摘要替换列表中对应的"序号 大小"条目
+     * 条目仍以"序号 "开头，以便查看和删除时解析序号
+     *
+     * @param header 邮件头摘要
+     */
+    private void updateListEntry(MessageHeader header) {
+        Integer index = listIndex.get(header.getMessageNumber());
+        if (index == null || index >= listModel.getSize()) {
+            return;
+        }
+        Long bytes = messageSizes.get(header.getMessageNumber());
+        String size = bytes != null ? formatFileSize(bytes) : "";
+        String date = header.getDate() != null ?
+                new SimpleDateFormat("MM-dd HH:mm").format(header.getDate()) : "";
+        String from = header.getFrom() != null ? header.getFrom() : "未知发件人";
+        String subject = header.getSubject() != null ? header.getSubject() : "无主题";
+        listModel.setElementAt(header.getMessageNumber() + " " + subject +
+                "  —  " + from + "  " + date + "  (" + size + ")", index);
+    }
+
     /**
      * 查看选中的邮件
-     * 下载并显示选中邮件的内容
+     * 已预取的邮件直接从缓存显示，否则在后台下载；显示后预取相邻的邮件
      */
     private void viewSelectedMessage() {
         int selectedIndex = messageList.getSelectedIndex();
@@ -954,25 +1057,39 @@ public class POP3SSLClientGUI extends JFrame {
         if (parts.length > 0) {
             try {
                 int messageNumber = Integer.parseInt(parts[0]);  // 提取邮件序号
+                int generation = ++viewGeneration;
+
+                EmailMessage cached = prefetcher != null ? prefetcher.getCached(messageNumber) : null;
+                if (cached != null) {
+                    showEmail(cached);
+                    updateStatus("邮件内容加载完成（已预取）");
+                    prefetchAdjacent(selectedIndex);
+                    return;
+                }
                 updateStatus("正在下载邮件内容...");
 
-                // 使用后台线程下载邮件内容
-                SwingWorker<String, Void> worker = new SwingWorker<String, Void>() {
+                // 使用后台线程下载并解析邮件内容
+                SwingWorker<EmailMessage, Void> worker = new SwingWorker<EmailMessage, Void>() {
                     @Override
-                    protected String doInBackground() throws Exception {
-                        return client.retrieveMessage(messageNumber);  // 获取邮件内容
+                    protected EmailMessage doInBackground() throws Exception {
+                        if (prefetcher != null) {
+                            return prefetcher.load(messageNumber);  // 正在预取时等待预取结果
+                        }
+                        byte[] content = client.retrieveMessageBytes(messageNumber);  // 获取邮件原始字节
+                        return content != null ? new EmailMessage(messageNumber, content) : null;
                     }
 
                     @Override
                     protected void done() {
+                        if (generation != viewGeneration) {
+                            return;  // 已切换到其他邮件，丢弃过期结果
+                        }
                         try {
-                            String content = get();
-                            if (content != null) {
-                                // 创建邮件对象并显示
-                                currentEmail = new EmailMessage(messageNumber, content);
-                                displayEmailContent(currentEmail);      // 显示邮件内容
-                                updateAttachmentTable(currentEmail);    // 更新附件表格
+                            EmailMessage email = get();
+                            if (email != null) {
+                                showEmail(email);
                                 updateStatus("邮件内容加载完成");
+                                prefetchAdjacent(selectedIndex);
                             } else {
                                 updateStatus("获取邮件内容失败");
                                 messageContentArea.setText("获取邮件内容失败");
@@ -991,6 +1108,41 @@ public class POP3SSLClientGUI extends JFrame {
         }
     }
 
+    /**
+     * 显示邮件内容和附件
+     *
+     * @param email 邮件对象
+     */
+    private void showEmail(EmailMessage email) {
+        currentEmail = email;
+        displayEmailContent(email);      // 显示邮件内容
+        updateAttachmentTable(email);    // 更新附件表格
+    }
+
+    /**
+     * 在后台预取列表中与当前邮件相邻的邮件
+     * 序号列表在获取邮件列表时建立，prefetchAround只在调用线程中读取序号和大小，无需复制
+     *
+     * @param selectedIndex 当前邮件在列表中的位置
+     */
+    private void prefetchAdjacent(int selectedIndex) {
+        if (prefetcher == null) {
+            return;
+        }
+        prefetcher.prefetchAround(Collections.unmodifiableList(listNumbers), selectedIndex,
+                Collections.unmodifiableMap(messageSizes));
+    }
+
+    /**
+     * 停止预取并清空缓存
+     */
+    private void closePrefetcher() {
+        if (prefetcher != null) {
+            prefetcher.close();
+            prefetcher = null;
+        }
+    }
+
     /**
      * 显示邮件内容
      * 根据用户选择显示原始内容或解析后的内容
@@ -1432,6 +1584,9 @@ public class POP3SSLClientGUI extends JFrame {
 
                 // 执行删除操作
                 if (client.deleteMessage(messageNumber)) {
+                    if (prefetcher != null) {
+                        prefetcher.invalidate(messageNumber);
+                    }
                     updateStatus("邮件删除成功");
                     showSuccessDialog("邮件删除成功");
                     refreshMessageList();  // 刷新邮件列表
@@ -0,0 +1,195 @@
+package org.pop3;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+
+/**
+ * Quoted-Printable解码输出流
+ * 用查找表解析"=XX"转义，直接写出字节，不为每个转义生成字符串。正文模式（RFC 2045）下去掉软换行"="和行尾空白，
+ * 硬换行写为\n，与EmailMessage中文本的换行一致；编码字模式（RFC 2047的Q编码）下'_'表示空格。
+ * 不合法的转义按原样保留。
+ */
+public class QuotedPrintableDecodingOutputStream extends DecodingOutputStream {
+    private static final byte[] HEX = new byte[256]; // 字符到十六进制值的查找表，-1表示不是十六进制字符
+    private static final int MAX_PENDING_SPACES = 64;  // 暂存的行尾空白上限，超过时按普通字符写出
+
+    static {
+        Arrays.fill(HEX, (byte) -1);
+        for (int i = 0; i < 10; i++) {
+            HEX['0' + i] = (byte) i;
+        }
+        for (int i = 0; i < 6; i++) {
+            HEX['A' + i] = (byte) (10 + i);
+            HEX['a' + i] = (byte) (10 + i);
+        }
+    }
+
+    private static final int NORMAL = 0;       // 普通字符
+    private static final int EQUALS = 1;       // 读到'='
+    private static final int EQUALS_HEX = 2;   // 读到'='和一个十六进制字符
+    private static final int SOFT_BREAK = 3;   // 软换行，等待\n
+
+    private final boolean encodedWord;         // 是否为编码字模式
+    private final byte[] spaces = new byte[MAX_PENDING_SPACES]; // 暂存的空白（在行尾时丢弃）
+    private int spaceCount;
+    private boolean pendingCR;                 // 读到\r，等待\n
+    private int state = NORMAL;
+    private byte firstHex;                     // "=X"中的X
+
+    /**
+     * 构造函数，正文模式
+     * @param out 下层输出流
+     */
+    public QuotedPrintableDecodingOutputStream(OutputStream out) {
+        this(out, false, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * 构造函数
+     * @param out 下层输出流
+     * @param encodedWord 是否为编码字模式（'_'表示空格，没有换行）
+     */
+    public QuotedPrintableDecodingOutputStream(OutputStream out, boolean encodedWord) {
+        this(out, encodedWord, DEFAULT_BUFFER_SIZE);
+    }
+
+    QuotedPrintableDecodingOutputStream(OutputStream out, boolean encodedWord, int bufferSize) {
+        super(out, bufferSize);
+        this.encodedWord = encodedWord;
+    }
+
+    /**
+     * 解码RFC 2047编码字中的Q编码数据
+     * @param data 编码数据
+     * @param offset 起始位置
+     * @param length 长度
+     * @return 解码后的数据
+     */
+    public static byte[] decodeWord(byte[] data, int offset, int length) {
+        ByteArrayOutputStream result = new ByteArrayOutputStream(length);
+        try (QuotedPrintableDecodingOutputStream decoder =
+                     new QuotedPrintableDecodingOutputStream(result, true, length + 16)) {
+            decoder.write(data, offset, length);
+        } catch (IOException e) {
+            throw new IllegalStateException(e);  // 写入内存不会失败
+        }
+        return result.toByteArray();
+    }
+
+    @Override
+    public void write(byte[] data, int offset, int length) throws IOException {
+        for (int i = offset; i < offset + length; i++) {
+            byte b = data[i];
+            switch (state) {
+                case EQUALS:
+                    if (HEX[b & 0xFF] >= 0) {
+                        firstHex = b;
+                        state = EQUALS_HEX;
+                        continue;
+                    }
+                    if (!encodedWord) {
+                        if (b == '\n') {
+                            state = NORMAL;  // 软换行
+                            continue;
+                        }
+                        if (b == '\r' || b == ' ' || b == '\t') {
+                            state = SOFT_BREAK;
+                            continue;
+                        }
+                    }
+                    put((byte) '=');  // 不合法的转义，保留原字符
+                    state = NORMAL;
+                    break;
+                case EQUALS_HEX:
+                    state = NORMAL;
+                    if (HEX[b & 0xFF] >= 0) {
+                        put((byte) (HEX[firstHex & 0xFF] << 4 | HEX[b & 0xFF]));
+                        continue;
+                    }
+                    put((byte) '=');
+                    put(firstHex);
+                    break;
+                case SOFT_BREAK:
+                    if (b == '\r' || b == ' ' || b == '\t') {
+                        continue;
+                    }
+                    state = NORMAL;
+                    if (b == '\n') {
+                        continue;
+                    }
+                    break;
+                default:
+                    break;
+            }
+            normal(b);
+        }
+    }
+
+    /**
+     * 处理普通状态下的一个字符
+     */
+    private void normal(byte b) throws IOException {
+        if (encodedWord) {
+            if (b == '=') {
+                state = EQUALS;
+            } else {
+                put(b == '_' ? (byte) ' ' : b);
+            }
+            return;
+        }
+        if (b == '\n') {
+            // 硬换行：丢弃行尾空白和\r
+            spaceCount = 0;
+            pendingCR = false;
+            put((byte) '\n');
+            return;
+        }
+        if (pendingCR) {
+            flushSpaces();
+            put((byte) '\r');  // 单独的\r按原样保留
+            pendingCR = false;
+        }
+        if (b == '\r') {
+            pendingCR = true;
+        } else if (b == ' ' || b == '\t') {
+            if (spaceCount == spaces.length) {
+                flushSpaces();
+            }
+            spaces[spaceCount++] = b;
+        } else {
+            flushSpaces();
+            if (b == '=') {
+                state = EQUALS;
+            } else {
+                put(b);
+            }
+        }
+    }
+
+    private void flushSpaces() throws IOException {
+        for (int i = 0; i < spaceCount; i++) {
+            put(spaces[i]);
+        }
+        spaceCount = 0;
+    }
+
+    @Override
+    public void finish() throws IOException {
+        if (state == EQUALS) {
+            put((byte) '=');
+        } else if (state == EQUALS_HEX) {
+            put((byte) '=');
+            put(firstHex);
+        }
+        state = NORMAL;
+        // 数据末尾的空白同样视为行尾空白丢弃
+        spaceCount = 0;
+        if (pendingCR) {
+            put((byte) '\r');
+            pendingCR = false;
+        }
+        flushBuffer();
+    }
+}
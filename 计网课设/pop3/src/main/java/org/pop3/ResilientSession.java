@@ -0,0 +1,245 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.util.*;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 可自动重连的会话
+ * 包装POP3SSLClient：连接断开时按指数退避重新连接并登录，通过UIDL把邮件唯一标识重新映射为新会话中的序号，
+ * 批量下载从第一封尚未提交的邮件继续，已经交给处理器的邮件不会重复下载。
+ * 处理器自身抛出的异常不会触发重连，而是直接返回给调用方。
+ */
+public class ResilientSession implements AutoCloseable {
+    private static final int DEFAULT_MAX_RETRIES = 5;          // 连续失败的最大重试次数
+    private static final long DEFAULT_INITIAL_BACKOFF = 1000;  // 首次重试前的等待时间（毫秒）
+    private static final long DEFAULT_MAX_BACKOFF = 60 * 1000; // 最长等待时间（毫秒）
+
+    private final AccountProfile account;
+    private POP3SSLClient client;        // 当前使用的客户端
+    private int maxRetries = DEFAULT_MAX_RETRIES;
+    private long initialBackoff = DEFAULT_INITIAL_BACKOFF;
+    private long maxBackoff = DEFAULT_MAX_BACKOFF;
+    private int reconnectCount;          // 累计重连次数
+
+    /**
+     * 处理器抛出的异常，用于与网络异常区分
+     */
+    private static class HandlerException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        HandlerException(IOException cause) {
+            super(cause.getMessage(), cause);
+        }
+    }
+
+    /**
+     * 构造函数，首次使用时才建立连接
+     * @param account 账户配置
+     */
+    public ResilientSession(AccountProfile account) {
+        this(account, null);
+    }
+
+    /**
+     * 构造函数，接管一个已登录的客户端，断开后按账户配置重新连接
+     * @param account 账户配置
+     * @param client 已登录的客户端，可以为null
+     */
+    public ResilientSession(AccountProfile account, POP3SSLClient client) {
+        this.account = account;
+        this.client = client;
+    }
+
+    /**
+     * 增量同步新邮件，断线后自动重连并继续
+     * 每封邮件处理完即写入记录，重连后重新比较UIDL，自然从第一封未提交的邮件继续
+     * @param store 已下载邮件记录
+     * @param handler 新邮件处理器
+     * @return 下载的新邮件数量
+     * @throws IOException 重试次数用尽、认证失败或处理器失败
+     */
+    public int sync(SeenMessageStore store, UidlSynchronizer.MessageHandler handler) throws IOException {
+        int[] synced = {0};
+        runWithRetry(() -> new UidlSynchronizer(ensureConnected(), store).sync((number, uid, content) -> {
+            invokeHandler(handler, number, uid, content);
+            synced[0]++;
+        }), synced);
+        return synced[0];
+    }
+
+    /**
+     * 按唯一标识批量下载邮件，断线后自动重连并从第一封未处理的邮件继续
+     * 每次连接都重新获取UIDL，将唯一标识映射为当前会话的序号；服务器上已不存在的邮件被跳过
+     * @param uids 要下载的邮件唯一标识，按处理顺序排列
+     * @param handler 邮件处理器，每封邮件只会被成功调用一次
+     * @return 下载的邮件数量
+     * @throws IOException 重试次数用尽、认证失败或处理器失败
+     */
+    public int retrieve(Collection<String> uids, UidlSynchronizer.MessageHandler handler) throws IOException {
+        Set<String> remaining = new LinkedHashSet<>(uids);  // 尚未提交的邮件
+        int[] done = {0};
+        runWithRetry(() -> {
+            POP3SSLClient current = ensureConnected();
+            Map<Integer, String> uidlMap = current.getUidlList();
+            if (uidlMap == null) {
+                throw new IOException("获取UIDL列表失败");
+            }
+
+            // 唯一标识 -> 本次会话的序号
+            Map<String, Integer> numbers = new HashMap<>();
+            for (Map.Entry<Integer, String> entry : uidlMap.entrySet()) {
+                numbers.put(entry.getValue(), entry.getKey());
+            }
+            List<String> pending = new ArrayList<>();
+            for (Iterator<String> it = remaining.iterator(); it.hasNext(); ) {
+                String uid = it.next();
+                if (numbers.containsKey(uid)) {
+                    pending.add(uid);
+                } else {
+                    System.err.println("邮件已不在服务器上，跳过: " + uid);
+                    it.remove();
+                }
+            }
+
+            List<String> commands = new ArrayList<>(pending.size());
+            for (String uid : pending) {
+                commands.add("RETR " + numbers.get(uid));
+            }
+            current.executeBatch(commands, (index, response) -> {
+                String uid = pending.get(index);
+                if (!response.isOk()) {
+                    System.err.println("获取邮件 " + uid + " 失败: " + response.getStatusLine());
+                    return;
+                }
+                invokeHandler(handler, numbers.get(uid), uid, response.getData());
+                remaining.remove(uid);
+                done[0]++;
+            });
+            return done[0];
+        }, done);
+        return done[0];
+    }
+
+    /**
+     * 获取已连接并登录的客户端，断开时重新连接
+     * 服务器声明了LOGIN-DELAY时先等待剩余的登录间隔；登录仍因LOGIN-DELAY被拒绝时按网络异常处理，由退避重试
+     * @return 客户端
+     * @throws IOException 连接失败或认证失败
+     */
+    public POP3SSLClient ensureConnected() throws IOException {
+        if (client != null && client.isConnected() && client.isAuthenticated()) {
+            return client;
+        }
+        if (client != null) {
+            client.abort();
+            reconnectCount++;
+        }
+        client = account.createClient();
+        // 在连接之前等待，避免连接在等待期间因空闲被服务器关闭
+        long loginDelay = client.getRemainingLoginDelay(account.getUsername());
+        if (loginDelay > 0) {
+            System.err.println("等待服务器要求的登录间隔 " + loginDelay + " ms");
+            sleep(loginDelay);
+        }
+        if (!client.connect()) {
+            throw new IOException("连接服务器失败: " + account);
+        }
+        if (!client.login(account.getUsername(), account.getPassword())) {
+            if (client.isConnected() && client.isLoginDelayed()) {
+                client.quit();
+                throw new IOException("登录过于频繁，稍后重试: " + account);
+            }
+            if (client.isConnected()) {
+                // 连接正常但登录被拒绝，重试没有意义
+                client.quit();
+                throw new POP3AuthenticationException("登录失败: " + account);
+            }
+            throw new IOException("登录时连接断开: " + account);
+        }
+        return client;
+    }
+
+    private interface Attempt {
+        int run() throws IOException;
+    }
+
+    /**
+     * 执行一次批量操作，网络异常时断开重连后重新执行
+     * 只要上一次尝试有邮件被提交，重试计数就重新开始，长时间传输在不稳定的网络上也能完成
+     * @param attempt 操作
+     * @param progress 已提交的邮件数，用于判断是否有进展
+     */
+    private void runWithRetry(Attempt attempt, int[] progress) throws IOException {
+        int failures = 0;
+        while (true) {
+            int before = progress[0];
+            try {
+                attempt.run();
+                return;
+            } catch (HandlerException e) {
+                throw (IOException) e.getCause();
+            } catch (POP3AuthenticationException e) {
+                throw e;
+            } catch (IOException e) {
+                if (progress[0] > before) {
+                    failures = 0;
+                }
+                if (++failures > maxRetries) {
+                    throw new IOException("重试 " + maxRetries + " 次后仍然失败: " + e.getMessage(), e);
+                }
+                if (client != null) {
+                    client.abort();
+                }
+                long delay = backoff(failures);
+                System.err.println("连接中断（" + e.getMessage() + "），" + delay + " ms 后第 " + failures + " 次重连");
+                sleep(delay);
+            }
+        }
+    }
+
+    /**
+     * 计算第n次重试前的等待时间：指数增长并加入随机抖动，避免大量会话同时重连
+     * @param failures 连续失败次数
+     * @return 等待时间（毫秒）
+     */
+    private long backoff(int failures) {
+        long delay = initialBackoff << Math.min(failures - 1, 20);
+        delay = Math.min(delay, maxBackoff);
+        return delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+    }
+
+    private static void sleep(long millis) throws IOException {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("重连等待被中断", e);
+        }
+    }
+
+    private static void invokeHandler(UidlSynchronizer.MessageHandler handler, int number, String uid,
+                                      byte[] content) throws IOException {
+        try {
+            handler.onMessage(number, uid, content);
+        } catch (IOException e) {
+            throw new HandlerException(e);
+        }
+    }
+
+    public void setMaxRetries(int maxRetries) { this.maxRetries = maxRetries; }
+    public void setInitialBackoff(long initialBackoff) { this.initialBackoff = initialBackoff; }
+    public void setMaxBackoff(long maxBackoff) { this.maxBackoff = maxBackoff; }
+    public int getReconnectCount() { return reconnectCount; }
+    public POP3SSLClient getClient() { return client; }
+
+    /**
+     * 退出当前会话
+     */
+    @Override
+    public void close() {
+        if (client != null) {
+            client.quit();
+        }
+    }
+}
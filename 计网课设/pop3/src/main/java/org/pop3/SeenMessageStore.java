@@ -0,0 +1,143 @@
+package org.pop3;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.*;
+
+/**
+ * 已下载邮件记录
+ * 以追加写日志的方式持久化已下载邮件的UIDL，每记录一封邮件就刷新到磁盘，
+ * 程序中途退出时最多只会重新下载正在处理的那一封邮件
+ */
+public class SeenMessageStore implements Closeable {
+    private final File storeFile;
+    private final Set<String> seen = new LinkedHashSet<>(); // 已下载邮件的唯一标识
+    private FileOutputStream out;                            // 追加写入流
+
+    /**
+     * 构造函数，加载已有记录
+     * @param storeFile 记录文件
+     * @throws IOException 读取记录文件失败
+     */
+    public SeenMessageStore(File storeFile) throws IOException {
+        this.storeFile = storeFile;
+        if (storeFile.exists()) {
+            load();
+        }
+    }
+
+    /**
+     * 加载记录文件
+     * 最后一行没有换行符时说明写入中途退出，这一行可能只是某个UIDL的前缀，不能当作已下载；
+     * 把它从文件中截掉，之后追加的记录从新的一行开始，不会与残留部分拼成错误的记录
+     */
+    private void load() throws IOException {
+        byte[] data = Files.readAllBytes(storeFile.toPath());
+        int complete = data.length;
+        while (complete > 0 && data[complete - 1] != '\n') {
+            complete--;
+        }
+        for (String line : new String(data, 0, complete, StandardCharsets.UTF_8).split("\n")) {
+            // 空行直接跳过
+            if (!line.isEmpty()) {
+                seen.add(line);
+            }
+        }
+        if (complete < data.length) {
+            try (RandomAccessFile file = new RandomAccessFile(storeFile, "rw")) {
+                file.setLength(complete);
+            }
+        }
+    }
+
+    /**
+     * 根据账户生成默认的记录文件
+     * @param directory 存放目录
+     * @param server 服务器地址
+     * @param username 用户名
+     * @return 记录文件
+     */
+    public static File defaultFile(File directory, String server, String username) {
+        String name = (server + "_" + username).replaceAll("[^A-Za-z0-9._@-]", "_");
+        return new File(directory, ".seen_" + name + ".uidl");
+    }
+
+    /**
+     * 判断邮件是否已下载
+     * @param uid 邮件唯一标识
+     * @return 是否已下载
+     */
+    public synchronized boolean isSeen(String uid) {
+        return seen.contains(uid);
+    }
+
+    /**
+     * 记录邮件已下载，并立即同步到磁盘
+     * @param uid 邮件唯一标识
+     * @throws IOException 写入失败
+     */
+    public synchronized void markSeen(String uid) throws IOException {
+        if (!seen.add(uid)) {
+            return;
+        }
+        if (out == null) {
+            out = new FileOutputStream(storeFile, true);
+        }
+        out.write((uid + "\n").getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        out.getFD().sync();
+    }
+
+    /**
+     * 只保留仍存在于服务器上的记录，压缩记录文件
+     * 先写入临时文件再替换，避免中途退出损坏原记录。
+     * 服务器返回空列表时不清理：UIDL失败或不完整时清空记录会导致全部邮件被重新下载
+     * @param serverUids 服务器当前的全部唯一标识
+     * @throws IOException 写入失败
+     */
+    public synchronized void retainOnly(Collection<String> serverUids) throws IOException {
+        if (serverUids.isEmpty()) {
+            return;
+        }
+        if (!seen.retainAll(new HashSet<>(serverUids))) {
+            return;
+        }
+        closeQuietly();
+
+        File tempFile = new File(storeFile.getPath() + ".tmp");
+        try (FileOutputStream fos = new FileOutputStream(tempFile)) {
+            for (String uid : seen) {
+                fos.write((uid + "\n").getBytes(StandardCharsets.UTF_8));
+            }
+            fos.getFD().sync();
+        }
+        Files.move(tempFile.toPath(), storeFile.toPath(),
+                StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 获取已记录的邮件数量
+     * @return 数量
+     */
+    public synchronized int size() {
+        return seen.size();
+    }
+
+    @Override
+    public synchronized void close() {
+        closeQuietly();
+    }
+
+    private void closeQuietly() {
+        if (out != null) {
+            try {
+                out.close();
+            } catch (IOException e) {
+                // 静默处理关闭异常
+            }
+            out = null;
+        }
+    }
+}
@@ -0,0 +1,208 @@
+package org.pop3;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import javax.net.ssl.SSLSessionContext;
+import javax.net.ssl.SSLSocket;
+import java.io.IOException;
+import java.net.Socket;
+import java.security.GeneralSecurityException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * TLS配置类
+ * 所有连接共用一个SSLContext，其客户端会话缓存按"主机:端口"保存会话，
+ * 重新连接同一服务器时可以恢复会话（TLS 1.2会话ID或TLS 1.3会话票据），省去完整握手的计算和往返。
+ * 协议按偏好顺序启用（默认优先TLS 1.3），也可以限定密码套件。
+ */
+public class TLSConfig {
+    private static final String[] DEFAULT_PROTOCOLS = {"TLSv1.3", "TLSv1.2"};
+    private static final int DEFAULT_SESSION_CACHE_SIZE = 1000;     // 缓存的会话数
+    private static final int DEFAULT_SESSION_TIMEOUT = 24 * 60 * 60; // 会话有效期：24小时（秒）
+
+    private static TLSConfig defaultConfig;
+
+    private final SSLContext context;    // 共享的SSL上下文
+    private String[] protocols;          // 启用的协议，按偏好顺序
+    private String[] cipherSuites;       // 启用的密码套件，null表示使用JDK默认值
+
+    /**
+     * 构造函数，使用JDK默认的信任库
+     * @throws IOException 创建SSL上下文失败
+     */
+    public TLSConfig() throws IOException {
+        this(createDefaultContext());
+    }
+
+    /**
+     * 构造函数
+     * @param context SSL上下文（例如加载了自定义信任库的上下文）
+     */
+    public TLSConfig(SSLContext context) {
+        this.context = context;
+        setProtocols(DEFAULT_PROTOCOLS);
+        setSessionCacheSize(DEFAULT_SESSION_CACHE_SIZE);
+        setSessionTimeout(DEFAULT_SESSION_TIMEOUT);
+    }
+
+    private static SSLContext createDefaultContext() throws IOException {
+        try {
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(null, null, null);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("无法创建SSL上下文: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 获取全局共享的TLS配置
+     * 为空时创建默认配置；创建失败时返回null，调用方应退回JDK默认的套接字工厂
+     * @return 默认配置
+     */
+    public static synchronized TLSConfig getDefault() {
+        if (defaultConfig == null) {
+            try {
+                defaultConfig = new TLSConfig();
+            } catch (IOException e) {
+                System.err.println("创建TLS配置失败: " + e.getMessage());
+            }
+        }
+        return defaultConfig;
+    }
+
+    /**
+     * 替换全局共享的TLS配置，之后创建的连接生效
+     * @param config TLS配置
+     */
+    public static synchronized void setDefault(TLSConfig config) {
+        defaultConfig = config;
+    }
+
+    /**
+     * 应用配置文件中的TLS设置（tls.protocols、tls.cipherSuites、tls.sessionTimeout）
+     * @param config 配置管理器
+     */
+    public void configure(ConfigManager config) {
+        setProtocols(config.getTlsProtocols().split(","));
+        String cipherSuites = config.getTlsCipherSuites().trim();
+        setCipherSuites(cipherSuites.isEmpty() ? null : cipherSuites.split(","));
+        setSessionTimeout(config.getTlsSessionTimeout());
+    }
+
+    /**
+     * 在已建立的TCP连接上完成TLS握手
+     * 必须传入服务器的主机名和端口，会话缓存才能找到该服务器之前的会话
+     * @param plain 已连接的普通套接字，握手失败时被关闭
+     * @param host 服务器地址
+     * @param port 服务器端口
+     * @return 已完成握手的套接字
+     * @throws IOException 握手失败
+     */
+    public SSLSocket createSocket(Socket plain, String host, int port) throws IOException {
+        SSLSocket socket;
+        try {
+            socket = (SSLSocket) context.getSocketFactory().createSocket(plain, host, port, true);
+            socket.setSSLParameters(createParameters(socket.getSSLParameters()));
+            socket.startHandshake();
+        } catch (IOException e) {
+            plain.close();
+            throw e;
+        }
+        return socket;
+    }
+
+    /**
+     * 创建客户端模式的SSLEngine，供非阻塞引擎使用
+     * @param host 服务器地址
+     * @param port 服务器端口
+     * @return SSLEngine
+     */
+    public SSLEngine createEngine(String host, int port) {
+        SSLEngine engine = context.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        engine.setSSLParameters(createParameters(engine.getSSLParameters()));
+        return engine;
+    }
+
+    /**
+     * 在默认参数上应用协议和密码套件设置
+     */
+    private SSLParameters createParameters(SSLParameters parameters) {
+        parameters.setProtocols(protocols);
+        if (cipherSuites != null) {
+            parameters.setCipherSuites(cipherSuites);
+        }
+        return parameters;
+    }
+
+    /**
+     * 判断会话是否为恢复的会话
+     * 恢复的会话沿用首次握手时的创建时间，因此早于本次握手开始时间
+     * @param session 握手完成后的会话
+     * @param handshakeStart 本次握手开始的时间（毫秒）
+     * @return 是否恢复
+     */
+    public static boolean isResumed(SSLSession session, long handshakeStart) {
+        return session != null && session.getCreationTime() < handshakeStart;
+    }
+
+    /**
+     * 设置启用的协议，按偏好顺序排列，当前JDK不支持的协议被忽略
+     * @param protocols 协议名称，如"TLSv1.3"、"TLSv1.2"
+     */
+    public void setProtocols(String... protocols) {
+        this.protocols = filterSupported(protocols, context.getSupportedSSLParameters().getProtocols());
+    }
+
+    /**
+     * 设置启用的密码套件，当前JDK不支持的套件被忽略
+     * @param cipherSuites 密码套件名称，传入null或空数组恢复默认值
+     */
+    public void setCipherSuites(String... cipherSuites) {
+        if (cipherSuites == null || cipherSuites.length == 0) {
+            this.cipherSuites = null;
+            return;
+        }
+        this.cipherSuites = filterSupported(cipherSuites, context.getSupportedSSLParameters().getCipherSuites());
+    }
+
+    /**
+     * 设置客户端会话缓存可保存的会话数
+     * @param size 会话数，0表示不限制
+     */
+    public void setSessionCacheSize(int size) {
+        context.getClientSessionContext().setSessionCacheSize(size);
+    }
+
+    /**
+     * 设置缓存会话的有效期
+     * @param seconds 有效期（秒），0表示不限制
+     */
+    public void setSessionTimeout(int seconds) {
+        context.getClientSessionContext().setSessionTimeout(seconds);
+    }
+
+    private static String[] filterSupported(String[] requested, String[] supported) {
+        List<String> supportedList = Arrays.asList(supported);
+        List<String> result = new ArrayList<>();
+        for (String name : requested) {
+            String trimmed = name.trim();
+            if (supportedList.contains(trimmed)) {
+                result.add(trimmed);
+            } else if (!trimmed.isEmpty()) {
+                System.err.println("忽略不支持的TLS设置: " + trimmed);
+            }
+        }
+        return result.toArray(new String[0]);
+    }
+
+    public SSLContext getContext() { return context; }
+    public SSLSessionContext getSessionContext() { return context.getClientSessionContext(); }
+    public String[] getProtocols() { return protocols.clone(); }
+    public String[] getCipherSuites() { return cipherSuites == null ? null : cipherSuites.clone(); }
+}
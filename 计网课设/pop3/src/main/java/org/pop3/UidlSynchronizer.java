@@ -0,0 +1,96 @@
+package org.pop3;
+
+import java.io.IOException;
+import java.util.*;
+
+/**
+ * 基于UIDL的增量同步器
+ * 将服务器的UIDL列表与本地已下载记录比较，只下载新邮件；
+ * 每封邮件处理完成后立即提交记录，中断后再次同步会从第一封未提交的邮件继续
+ */
+public class UidlSynchronizer {
+    private final POP3SSLClient client;
+    private final SeenMessageStore store;
+
+    /**
+     * 新邮件处理器
+     */
+    public interface MessageHandler {
+        /**
+         * 处理一封新邮件，返回后该邮件即被记录为已下载
+         * @param messageNumber 本次会话中的邮件序号
+         * @param uid 邮件唯一标识
+         * @param content 邮件原始字节（各行以CRLF结尾）
+         * @throws IOException 处理失败时抛出，该邮件不会被记录，同步随即中止
+         */
+        void onMessage(int messageNumber, String uid, byte[] content) throws IOException;
+    }
+
+    /**
+     * 构造函数
+     * @param client 已登录的客户端
+     * @param store 已下载邮件记录
+     */
+    public UidlSynchronizer(POP3SSLClient client, SeenMessageStore store) {
+        this.client = client;
+        this.store = store;
+    }
+
+    /**
+     * 找出尚未下载的邮件
+     * @param uidlMap 服务器的UIDL列表
+     * @return 新邮件的序号到唯一标识的映射（按序号顺序）
+     */
+    public Map<Integer, String> findNewMessages(Map<Integer, String> uidlMap) {
+        Map<Integer, String> newMessages = new LinkedHashMap<>();
+        for (Map.Entry<Integer, String> entry : uidlMap.entrySet()) {
+            if (!store.isSeen(entry.getValue())) {
+                newMessages.put(entry.getKey(), entry.getValue());
+            }
+        }
+        return newMessages;
+    }
+
+    /**
+     * 执行一次增量同步
+     * @param handler 新邮件处理器
+     * @return 本次下载的新邮件数量
+     * @throws IOException 获取UIDL失败、网络异常或处理器失败
+     */
+    public int sync(MessageHandler handler) throws IOException {
+        Map<Integer, String> uidlMap = client.getUidlList();
+        if (uidlMap == null) {
+            throw new IOException("获取UIDL列表失败");
+        }
+
+        // 清理服务器上已不存在的邮件记录，防止记录文件无限增长
+        store.retainOnly(uidlMap.values());
+
+        Map<Integer, String> newMessages = findNewMessages(uidlMap);
+        System.out.println("服务器邮件 " + uidlMap.size() + " 封，新邮件 " + newMessages.size() + " 封");
+        if (newMessages.isEmpty()) {
+            return 0;
+        }
+
+        List<Integer> numbers = new ArrayList<>(newMessages.keySet());
+        List<String> commands = new ArrayList<>(numbers.size());
+        for (int number : numbers) {
+            commands.add("RETR " + number);
+        }
+
+        int[] synced = {0};
+        client.executeBatch(commands, (index, response) -> {
+            int number = numbers.get(index);
+            String uid = newMessages.get(number);
+            if (!response.isOk()) {
+                // 邮件可能已被其他客户端删除，跳过但不记录，下次同步时重新判断
+                System.err.println("获取邮件 " + number + " 失败: " + response.getStatusLine());
+                return;
+            }
+            handler.onMessage(number, uid, response.getData());
+            store.markSeen(uid);
+            synced[0]++;
+        });
+        return synced[0];
+    }
+}
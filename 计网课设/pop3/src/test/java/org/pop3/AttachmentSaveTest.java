@@ -0,0 +1,129 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 附件保存的测试
+ * 边解码边写入（未访问过解码内容）、先解码再写入和AttachmentExtractor流式提取，三者写出的字节必须相同
+ */
+class AttachmentSaveTest {
+    private static final String TEXT_ATTACHMENT = "  line1\r\n中文\r\n";
+    private static final byte[] BINARY = new byte[3000];
+
+    static {
+        for (int i = 0; i < BINARY.length; i++) {
+            BINARY[i] = (byte) (i * 31 + 7);
+        }
+    }
+
+    private static byte[] message() {
+        String base64 = java.util.Base64.getMimeEncoder().encodeToString(BINARY);
+        String qp = "caf=C3=A9 =\r\nsoft\r\n";
+        return ("Subject: attachments\r\n"
+                + "Content-Type: multipart/mixed; boundary=\"sep\"\r\n"
+                + "\r\n"
+                + "--sep\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "\r\n"
+                + "body\r\n"
+                + "--sep\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: 8bit\r\n"
+                + "Content-Disposition: attachment; filename=\"notes.txt\"\r\n"
+                + "\r\n"
+                + TEXT_ATTACHMENT + "\r\n"
+                + "--sep\r\n"
+                + "Content-Type: application/octet-stream\r\n"
+                + "Content-Transfer-Encoding: base64\r\n"
+                + "Content-Disposition: attachment; filename=\"data.bin\"\r\n"
+                + "\r\n"
+                + base64 + "\r\n"
+                + "--sep\r\n"
+                + "Content-Type: text/plain; charset=UTF-8\r\n"
+                + "Content-Transfer-Encoding: quoted-printable\r\n"
+                + "Content-Disposition: attachment; filename=\"qp.txt\"\r\n"
+                + "\r\n"
+                + qp
+                + "--sep--\r\n").getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static List<byte[]> saveAll(EmailMessage email, File dir, boolean decodeFirst) throws IOException {
+        assertTrue(dir.mkdirs());
+        List<byte[]> saved = new ArrayList<>();
+        for (EmailMessage.EmailPart attachment : email.getAttachments()) {
+            if (decodeFirst) {
+                attachment.getDecodedBytes();
+            }
+            File file = new File(dir, attachment.getFileName());
+            assertTrue(email.saveAttachment(attachment, file), attachment.getFileName());
+            saved.add(Files.readAllBytes(file.toPath()));
+            assertEquals(file.length(), attachment.getSize(), attachment.getFileName());
+        }
+        return saved;
+    }
+
+    @Test
+    void streamedAndDecodedSavesMatch(@TempDir File dir) throws IOException {
+        byte[] raw = message();
+        List<byte[]> streamed = saveAll(new EmailMessage(1, raw), new File(dir, "a"), false);
+        List<byte[]> decoded = saveAll(new EmailMessage(1, raw), new File(dir, "b"), true);
+        assertEquals(3, streamed.size());
+        for (int i = 0; i < streamed.size(); i++) {
+            assertArrayEquals(streamed.get(i), decoded.get(i), "attachment " + i);
+        }
+        // 8bit附件按原样保存，不去空白、不转换换行
+        assertArrayEquals(TEXT_ATTACHMENT.getBytes(StandardCharsets.UTF_8), streamed.get(0));
+        assertArrayEquals(BINARY, streamed.get(1));
+        assertEquals("café soft", new String(streamed.get(2), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void decodedBytesMatchSavedFile(@TempDir File dir) throws IOException {
+        EmailMessage email = new EmailMessage(1, message());
+        EmailMessage.EmailPart text = email.getAttachments().get(0);
+        File file = new File(dir, "notes.txt");
+        assertTrue(email.saveAttachment(text, file));
+        assertArrayEquals(Files.readAllBytes(file.toPath()), new EmailMessage(1, message()).getAttachments().get(0).getDecodedBytes());
+        // 用于显示的文本仍去掉首尾空白并统一换行
+        assertEquals("line1\n中文", text.getDecodedContent());
+    }
+
+    @Test
+    void extractorMatchesSaveAttachment(@TempDir File dir) throws IOException {
+        byte[] raw = message();
+        List<byte[]> saved = saveAll(new EmailMessage(1, raw), new File(dir, "saved"), true);
+        List<File> files = new AttachmentExtractor(new File(dir, "extracted")).extract(new ByteArrayInputStream(raw));
+        assertEquals(saved.size(), files.size());
+        for (int i = 0; i < files.size(); i++) {
+            assertArrayEquals(saved.get(i), Files.readAllBytes(files.get(i).toPath()), files.get(i).getName());
+        }
+        assertEquals("notes.txt", files.get(0).getName());
+    }
+
+    @Test
+    void extractorHandlesMockMailbox(@TempDir File dir) throws IOException {
+        // 合成邮箱中带附件的邮件：流式提取与EmailMessage解码结果一致
+        SyntheticMailbox mailbox = new SyntheticMailbox(11, 20);
+        for (int n = 1; n <= mailbox.getCount(); n++) {
+            byte[] raw = mailbox.getMessage(n);
+            EmailMessage email = new EmailMessage(n, raw);
+            List<File> files = new AttachmentExtractor(new File(dir, "m" + n)).extract(new ByteArrayInputStream(raw));
+            assertEquals(email.getAttachments().size(), files.size(), "message " + n);
+            for (int i = 0; i < files.size(); i++) {
+                assertArrayEquals(email.getAttachments().get(i).getDecodedBytes(),
+                        Files.readAllBytes(files.get(i).toPath()), "message " + n);
+            }
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 连接失败时客户端必须关闭已建立的连接
+ * 服务器端在读到EOF时说明客户端已关闭套接字
+ */
+class ConnectFailureTest {
+
+    /**
+     * 接受一个连接，发送greeting（可为null），返回服务器端读到EOF的Future
+     */
+    private static CompletableFuture<Boolean> serve(ServerSocket listener, String greeting) {
+        CompletableFuture<Boolean> closed = new CompletableFuture<>();
+        Thread thread = new Thread(() -> {
+            try (Socket socket = listener.accept()) {
+                socket.setSoTimeout(10_000);
+                if (greeting != null) {
+                    OutputStream out = socket.getOutputStream();
+                    out.write(greeting.getBytes(StandardCharsets.US_ASCII));
+                    out.flush();
+                }
+                InputStream in = socket.getInputStream();
+                byte[] buffer = new byte[1024];
+                while (in.read(buffer) >= 0) {
+                    // 丢弃客户端发送的数据（TLS握手等），直到连接关闭
+                }
+                closed.complete(true);
+            } catch (IOException e) {
+                closed.complete(false);
+            }
+        });
+        thread.setDaemon(true);
+        thread.start();
+        return closed;
+    }
+
+    private static POP3SSLClient client(ServerSocket listener, boolean useSSL) {
+        POP3SSLClient client = new POP3SSLClient("localhost", listener.getLocalPort(), useSSL);
+        HappyEyeballsConnector connector = new HappyEyeballsConnector();
+        connector.setGreetingTimeout(500);
+        client.setConnector(connector);
+        return client;
+    }
+
+    @Test
+    void rejectedGreetingClosesSocket() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            CompletableFuture<Boolean> closed = serve(listener, "-ERR busy\r\n");
+            assertFalse(client(listener, false).connect());
+            assertTrue(closed.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void greetingTimeoutClosesSocket() throws Exception {
+        try (ServerSocket listener = new ServerSocket(0)) {
+            CompletableFuture<Boolean> closed = serve(listener, null);
+            assertFalse(client(listener, false).connect());
+            assertTrue(closed.get(5, TimeUnit.SECONDS));
+        }
+    }
+
+    @Test
+    void failedHandshakeClosesSocket() throws Exception {
+        // 普通POP3服务器上发起TLS握手失败
+        try (ServerSocket listener = new ServerSocket(0)) {
+            CompletableFuture<Boolean> closed = serve(listener, "+OK plain server\r\n");
+            assertFalse(client(listener, true).connect());
+            assertTrue(closed.get(5, TimeUnit.SECONDS));
+        }
+    }
+}
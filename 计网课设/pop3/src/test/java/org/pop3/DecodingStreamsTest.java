@@ -0,0 +1,132 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Base64和Quoted-Printable解码流的测试
+ * 一次写入、逐字节写入和DecodingInputStream读取的结果必须一致
+ */
+class DecodingStreamsTest {
+
+    private static byte[] ascii(String s) {
+        return s.getBytes(StandardCharsets.ISO_8859_1);
+    }
+
+    /**
+     * 一次写入整段数据解码，同时检查逐字节写入和输入流读取得到相同结果
+     */
+    private static byte[] decode(byte[] data, String encoding) throws IOException {
+        byte[] whole = DecodingOutputStream.decode(data, 0, data.length, encoding);
+
+        ByteArrayOutputStream bytewise = new ByteArrayOutputStream();
+        try (DecodingOutputStream decoder = DecodingOutputStream.forEncoding(bytewise, encoding)) {
+            for (byte b : data) {
+                decoder.write(b);
+            }
+        }
+        assertArrayEquals(whole, bytewise.toByteArray(), "逐字节写入");
+
+        try (InputStream in = new DecodingInputStream(new ByteArrayInputStream(data), encoding)) {
+            assertArrayEquals(whole, in.readAllBytes(), "DecodingInputStream");
+        }
+        return whole;
+    }
+
+    private static String decodeQP(String data) throws IOException {
+        return new String(decode(ascii(data), "quoted-printable"), StandardCharsets.ISO_8859_1);
+    }
+
+    @Test
+    void base64MatchesMimeDecoder() throws IOException {
+        Random random = new Random(42);
+        for (int length : new int[]{0, 1, 2, 3, 57, 1000, 20_000}) {
+            byte[] original = new byte[length];
+            random.nextBytes(original);
+            byte[] encoded = Base64.getMimeEncoder().encode(original);
+            assertArrayEquals(original, decode(encoded, "base64"), "length=" + length);
+        }
+    }
+
+    @Test
+    void base64IgnoresWhitespaceAndInvalidCharacters() throws IOException {
+        byte[] expected = ascii("Hello, world!");
+        assertArrayEquals(expected, decode(ascii("SGVs bG8s\r\nIHdv\tcmxk IQ==\r\n"), "base64"));
+        assertArrayEquals(expected, decode(ascii("SGVs*bG8s!IHdvcmxkIQ=="), "base64"));
+        // 缺少填充
+        assertArrayEquals(expected, decode(ascii("SGVsbG8sIHdvcmxkIQ"), "base64"));
+    }
+
+    @Test
+    void quotedPrintableSoftBreaks() throws IOException {
+        assertEquals("hello world", decodeQP("hello =\r\nworld"));
+        assertEquals("hello world", decodeQP("hello =\nworld"));
+        // 软换行前的空白属于内容
+        assertEquals("a  b", decodeQP("a  =\r\nb"));
+        // 行尾的"="之后有空白也是软换行
+        assertEquals("ab", decodeQP("a= \t\r\nb"));
+    }
+
+    @Test
+    void quotedPrintableEscapes() throws IOException {
+        assertEquals("café=", decodeQP("caf=E9=3D"));
+        assertEquals("café", decodeQP("caf=e9"));
+        // 行尾的转义，硬换行写为\n
+        assertEquals("xé\ny", decodeQP("x=E9\r\ny"));
+        assertEquals("xé", decodeQP("x=E9"));
+    }
+
+    @Test
+    void quotedPrintableTrailingWhitespace() throws IOException {
+        // 硬换行前的空白被去掉
+        assertEquals("line\nnext", decodeQP("line \t \r\nnext"));
+        assertEquals("line\nnext", decodeQP("line  \nnext"));
+        assertEquals("a b", decodeQP("a b"));
+    }
+
+    @Test
+    void quotedPrintableInvalidEscapesKeptAsIs() throws IOException {
+        assertEquals("=ZZ", decodeQP("=ZZ"));
+        assertEquals("=4", decodeQP("=4"));
+        assertEquals("1=G0 ok", decodeQP("1=G0 ok"));
+    }
+
+    @Test
+    void quotedPrintableChunkBoundaries() throws IOException {
+        // 在任意位置把数据切成两段写入，结果不变
+        String encoded = "caf=E9 =\r\nsoft  \r\n=3D=3d end=\n";
+        byte[] data = ascii(encoded);
+        byte[] expected = decode(data, "quoted-printable");
+        for (int split = 0; split <= data.length; split++) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            try (DecodingOutputStream decoder = DecodingOutputStream.forEncoding(out, "quoted-printable")) {
+                decoder.write(data, 0, split);
+                decoder.write(data, split, data.length - split);
+            }
+            assertArrayEquals(expected, out.toByteArray(), "split=" + split);
+        }
+    }
+
+    @Test
+    void qEncodedWord() {
+        byte[] data = ascii("a_b=20c=E4=B8=AD");
+        assertEquals("a b c中", new String(QuotedPrintableDecodingOutputStream.decodeWord(data, 0, data.length),
+                StandardCharsets.UTF_8));
+    }
+
+    @Test
+    void identityEncodingsPassThrough() throws IOException {
+        byte[] data = ascii("plain =E9 text\r\n");
+        assertArrayEquals(data, decode(data, "7bit"));
+        assertArrayEquals(data, decode(data, null));
+    }
+}
@@ -0,0 +1,77 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.Base64;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * RFC 2047编码字解码的测试
+ */
+class MimeDecoderTest {
+    private static final Charset GBK = Charset.forName("GBK");
+
+    private static String base64(byte[] data) {
+        return Base64.getEncoder().encodeToString(data);
+    }
+
+    @Test
+    void plainTextUnchanged() {
+        String text = "Re: meeting at 10:00";
+        assertSame(text, MimeDecoder.decode(text));
+        assertNull(MimeDecoder.decode(null));
+        assertEquals("", MimeDecoder.decode(""));
+    }
+
+    @Test
+    void base64AndQWords() {
+        assertEquals("中文", MimeDecoder.decode("=?UTF-8?B?5Lit5paH?="));
+        assertEquals("中文", MimeDecoder.decode("=?GB2312?Q?=D6=D0=CE=C4?="));
+        assertEquals("a b", MimeDecoder.decode("=?us-ascii?q?a_b?="));
+    }
+
+    @Test
+    void splitGbkCharacterAcrossWords() {
+        // "中文测试"的GBK字节在汉字中间被拆到两个编码字里
+        byte[] bytes = "中文测试".getBytes(GBK);
+        String first = base64(Arrays.copyOfRange(bytes, 0, 3));
+        String second = base64(Arrays.copyOfRange(bytes, 3, bytes.length));
+        assertEquals("中文测试", MimeDecoder.decode("=?GBK?B?" + first + "?= =?GBK?B?" + second + "?="));
+        assertEquals("中文测试", MimeDecoder.decode("=?gb2312?B?" + first + "?=\r\n =?gb2312?B?" + second + "?="));
+    }
+
+    @Test
+    void splitUtf8CharacterAcrossQWords() {
+        assertEquals("中", MimeDecoder.decode("=?UTF-8?Q?=E4=B8?= =?UTF-8?Q?=AD?="));
+    }
+
+    @Test
+    void whitespaceBetweenWords() {
+        // 编码字之间的空白被忽略，编码字与普通文本之间的空白保留
+        assertEquals("ab", MimeDecoder.decode("=?UTF-8?Q?a?=   =?UTF-8?Q?b?="));
+        assertEquals("x a b  y", MimeDecoder.decode("x =?UTF-8?Q?a?= b =?UTF-8?Q?_?=y"));
+        // 字符集不同时各自解码，空白仍被忽略
+        assertEquals("中文", MimeDecoder.decode("=?UTF-8?B?5Lit?= =?GBK?Q?=CE=C4?="));
+    }
+
+    @Test
+    void unsupportedCharsetKeptAsIs() {
+        String text = "=?x-unknown?B?5Lit?= =?UTF-8?B?5paH?=";
+        assertEquals("=?x-unknown?B?5Lit?= 文", MimeDecoder.decode(text));
+    }
+
+    @Test
+    void malformedWordsKeptAsIs() {
+        assertEquals("=?UTF-8?X?abc?=", MimeDecoder.decode("=?UTF-8?X?abc?="));
+        assertEquals("price =? 10", MimeDecoder.decode("price =? 10"));
+        assertEquals("=?UTF-8?B?5Lit", MimeDecoder.decode("=?UTF-8?B?5Lit"));
+    }
+
+    @Test
+    void charsetLanguageSuffix() {
+        assertEquals("中", MimeDecoder.decode("=?UTF-8*zh?B?5Lit?="));
+    }
+}
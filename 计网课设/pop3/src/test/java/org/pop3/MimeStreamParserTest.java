@@ -0,0 +1,206 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * MimeStreamParser和BoundaryScanner的测试
+ * 字节数组模式与输入流模式（包括很小的缓冲区）必须产生相同的事件序列
+ */
+class MimeStreamParserTest {
+
+    /**
+     * 把解析事件记录为字符串，正文在endPart时整体输出
+     */
+    private static class Recorder implements MimeStreamParser.Handler {
+        final List<String> events = new ArrayList<>();
+        private final ByteArrayOutputStream body = new ByteArrayOutputStream();
+
+        @Override
+        public void startPart(int depth) {
+            events.add("start " + depth);
+        }
+
+        @Override
+        public void header(String name, String value) {
+            events.add(name.toLowerCase() + ": " + value);
+        }
+
+        @Override
+        public void body(byte[] buffer, int offset, int length) {
+            body.write(buffer, offset, length);
+        }
+
+        @Override
+        public void endPart() {
+            if (body.size() > 0) {
+                events.add("body " + body.toString(StandardCharsets.ISO_8859_1));
+                body.reset();
+            }
+            events.add("end");
+        }
+    }
+
+    private static List<String> parseArray(String message) {
+        byte[] data = message.getBytes(StandardCharsets.ISO_8859_1);
+        Recorder recorder = new Recorder();
+        new MimeStreamParser(recorder).parse(data, 0, data.length);
+        return recorder.events;
+    }
+
+    private static List<String> parseStream(String message, int bufferSize) throws IOException {
+        byte[] data = message.getBytes(StandardCharsets.ISO_8859_1);
+        Recorder recorder = new Recorder();
+        new MimeStreamParser(recorder, bufferSize).parse(new ByteArrayInputStream(data));
+        return recorder.events;
+    }
+
+    /**
+     * 按字节数组和不同缓冲区大小的输入流各解析一次，结果必须一致
+     */
+    private static List<String> parseAll(String message) throws IOException {
+        List<String> events = parseArray(message);
+        for (int bufferSize : new int[]{16, 64, 8192}) {
+            assertEquals(events, parseStream(message, bufferSize), "bufferSize=" + bufferSize);
+        }
+        return events;
+    }
+
+    @Test
+    void simpleMultipart() throws IOException {
+        String message = "Subject: test\r\n"
+                + "Content-Type: multipart/mixed; boundary=\"b1\"\r\n"
+                + "\r\n"
+                + "preamble\r\n"
+                + "--b1\r\n"
+                + "Content-Type: text/plain\r\n"
+                + "\r\n"
+                + "hello\r\n"
+                + "--b1\r\n"
+                + "Content-Type: text/html\r\n"
+                + "\r\n"
+                + "<p>hi</p>\r\n"
+                + "--b1--\r\n"
+                + "epilogue\r\n";
+        assertEquals(Arrays.asList(
+                "start 0", "subject: test", "content-type: multipart/mixed; boundary=\"b1\"",
+                "start 1", "content-type: text/plain", "body hello", "end",
+                "start 1", "content-type: text/html", "body <p>hi</p>", "end",
+                "end"), parseAll(message));
+    }
+
+    @Test
+    void lfLineEndingsMatchCrlf() throws IOException {
+        String crlf = "Subject: a\r\n"
+                + " folded\r\n"
+                + "Content-Type: multipart/alternative; boundary=x\r\n"
+                + "\r\n"
+                + "--x\r\n"
+                + "\r\n"
+                + "line1\r\n"
+                + "line2\r\n"
+                + "--x--\r\n";
+        List<String> events = parseAll(crlf);
+        // 折叠行以一个空格连接
+        assertEquals("subject: a folded", events.get(1));
+        List<String> lf = parseAll(crlf.replace("\r\n", "\n"));
+        // 只有正文中的换行不同
+        assertEquals(events.size(), lf.size());
+        for (int i = 0; i < events.size(); i++) {
+            assertEquals(events.get(i).replace("\r\n", "\n"), lf.get(i));
+        }
+    }
+
+    @Test
+    void boundaryPrefixIsNotDelimiter() throws IOException {
+        // "--abc"是"--abcdef"的前缀，"--abcdef"所在的行不是abc部分的分隔行
+        String message = "Content-Type: multipart/mixed; boundary=abc\r\n"
+                + "\r\n"
+                + "--abc\r\n"
+                + "\r\n"
+                + "--abcdef\r\n"
+                + "x--abc\r\n"
+                + "--abc--\r\n";
+        assertEquals(Arrays.asList(
+                "start 0", "content-type: multipart/mixed; boundary=abc",
+                "start 1", "body --abcdef\r\nx--abc", "end",
+                "end"), parseAll(message));
+    }
+
+    @Test
+    void innerBoundaryIsPrefixOfOuter() throws IOException {
+        // 内层boundary是外层的前缀，外层分隔行只能结束外层
+        String message = "Content-Type: multipart/mixed; boundary=\"outer-1\"\r\n"
+                + "\r\n"
+                + "--outer-1\r\n"
+                + "Content-Type: multipart/alternative; boundary=\"outer\"\r\n"
+                + "\r\n"
+                + "--outer\r\n"
+                + "\r\n"
+                + "inner text\r\n"
+                + "--outer--\r\n"
+                + "--outer-1\r\n"
+                + "\r\n"
+                + "second\r\n"
+                + "--outer-1--\r\n";
+        assertEquals(Arrays.asList(
+                "start 0", "content-type: multipart/mixed; boundary=\"outer-1\"",
+                "start 1", "content-type: multipart/alternative; boundary=\"outer\"",
+                "start 2", "body inner text", "end",
+                "end",
+                "start 1", "body second", "end",
+                "end"), parseAll(message));
+    }
+
+    @Test
+    void longLinesLongerThanBuffer() throws IOException {
+        char[] filler = new char[50_000];
+        Arrays.fill(filler, 'A');
+        String longLine = new String(filler);
+        String message = "Content-Type: multipart/mixed; boundary=zz\r\n"
+                + "\r\n"
+                + "--zz\r\n"
+                + "\r\n"
+                + longLine + "--zz\r\n"   // 不在行首，不是分隔行
+                + longLine + "\r\n"
+                + "--zz--\r\n";
+        List<String> events = parseAll(message);
+        assertEquals("body " + longLine + "--zz\r\n" + longLine, events.get(3));
+    }
+
+    @Test
+    void missingCloseDelimiter() throws IOException {
+        String message = "Content-Type: multipart/mixed; boundary=q\r\n"
+                + "\r\n"
+                + "--q\r\n"
+                + "\r\n"
+                + "truncated\r\n";
+        List<String> events = parseAll(message);
+        assertEquals("start 1", events.get(2));
+        assertTrue(events.get(3).startsWith("body truncated"), events.toString());
+        assertEquals("end", events.get(events.size() - 1));
+    }
+
+    @Test
+    void boundaryScanner() {
+        BoundaryScanner scanner = new BoundaryScanner("abc");
+        assertEquals(5, scanner.getDelimiterLength());
+        byte[] data = "xx--abc\r\n--ab\r\n--abc\r\n".getBytes(StandardCharsets.ISO_8859_1);
+        // 第一个"--abc"不在行首
+        assertEquals(15, scanner.find(data, 0, data.length));
+        assertTrue(scanner.matches(data, 15, data.length));
+        assertFalse(scanner.matches(data, 9, data.length));
+        assertEquals(-1, scanner.find(data, 0, 14));
+        // 起始位置本身位于行首
+        assertEquals(0, scanner.find("--abc".getBytes(StandardCharsets.ISO_8859_1), 0, 5));
+    }
+}
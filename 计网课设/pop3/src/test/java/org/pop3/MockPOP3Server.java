@@ -0,0 +1,515 @@
+package org.pop3;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLServerSocket;
+import java.io.*;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 进程内模拟POP3服务器
+ * 在本机回环地址上提供一个合成邮箱，用于测试和压测客户端而无需连接真实服务器。
+ * 支持USER/PASS、STAT、LIST、UIDL、TOP、RETR、DELE、NOOP、RSET、QUIT和CAPA，
+ * 可声明PIPELINING：服务器按顺序处理已到达的命令，输入缓冲区读空时才刷新输出，流水线批次的响应合并发送。
+ * TLS模式使用启动时生成的自签名证书，客户端用createClientContext()创建信任该证书的上下文。
+ * 可以为每条响应注入固定延迟加随机抖动，模拟广域网往返。
+ * 每个连接一个线程；DELE在QUIT时生效，之后的会话看不到被删除的邮件，reset()可恢复。
+ */
+public class MockPOP3Server implements AutoCloseable {
+    private static final byte[] CRLF = {'\r', '\n'};
+    private static final byte[] TERMINATOR = {'.', '\r', '\n'};
+
+    private final SyntheticMailbox mailbox;
+    private final boolean useSSL;
+    private SelfSignedCertificate certificate;   // TLS模式下的证书
+    private ServerSocket serverSocket;
+    private ExecutorService executor;             // 会话线程
+    private final Set<Socket> sessions = Collections.synchronizedSet(new HashSet<>());
+    private final BitSet expunged = new BitSet(); // 已在QUIT时删除的邮件（下标为序号-1）
+
+    private String username = "user";            // 接受的用户名
+    private String password = "pass";            // 接受的密码
+    private boolean pipelining = true;            // 是否在CAPA中声明PIPELINING
+    private long latency;                         // 每条响应的固定延迟（毫秒）
+    private long jitter;                          // 每条响应的随机附加延迟上限（毫秒）
+
+    private final AtomicLong connectionCount = new AtomicLong();
+    private final AtomicLong commandCount = new AtomicLong();
+
+    /**
+     * 构造函数
+     * @param mailbox 提供的邮箱
+     * @param useSSL 是否使用TLS
+     */
+    public MockPOP3Server(SyntheticMailbox mailbox, boolean useSSL) {
+        this.mailbox = mailbox;
+        this.useSSL = useSSL;
+    }
+
+    /**
+     * 在本机回环地址的随机端口上启动
+     * @return 自身
+     * @throws IOException 监听失败或创建证书失败
+     */
+    public MockPOP3Server start() throws IOException {
+        return start(0);
+    }
+
+    /**
+     * 在本机回环地址上启动
+     * @param port 端口，0表示随机端口
+     * @return 自身
+     * @throws IOException 监听失败或创建证书失败
+     */
+    public synchronized MockPOP3Server start(int port) throws IOException {
+        if (serverSocket != null) {
+            throw new IllegalStateException("服务器已启动");
+        }
+        InetAddress loopback = InetAddress.getLoopbackAddress();
+        if (useSSL) {
+            try {
+                certificate = new SelfSignedCertificate("localhost");
+                SSLContext context = certificate.createServerContext();
+                serverSocket = context.getServerSocketFactory().createServerSocket(port, 1024, loopback);
+                ((SSLServerSocket) serverSocket).setEnabledProtocols(new String[]{"TLSv1.3", "TLSv1.2"});
+            } catch (GeneralSecurityException e) {
+                throw new IOException("创建自签名证书失败: " + e.getMessage(), e);
+            }
+        } else {
+            serverSocket = new ServerSocket(port, 1024, loopback);
+        }
+
+        executor = Executors.newCachedThreadPool(r -> {
+            Thread thread = new Thread(r, "pop3-mock");
+            thread.setDaemon(true);
+            return thread;
+        });
+        ServerSocket listener = serverSocket;
+        executor.execute(() -> acceptLoop(listener));
+        return this;
+    }
+
+    /**
+     * 创建信任本服务器证书的客户端SSL上下文，可用于new TLSConfig(context)
+     * @return SSL上下文
+     * @throws IOException 服务器未以TLS模式启动或初始化失败
+     */
+    public SSLContext createClientContext() throws IOException {
+        if (certificate == null) {
+            throw new IOException("服务器未以TLS模式启动");
+        }
+        try {
+            return certificate.createClientContext();
+        } catch (GeneralSecurityException e) {
+            throw new IOException("创建客户端SSL上下文失败: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * 创建连接本服务器的客户端，TLS模式下使用信任自签名证书的配置
+     * @return 未连接的客户端
+     * @throws IOException 创建SSL上下文失败
+     */
+    public POP3SSLClient createClient() throws IOException {
+        POP3SSLClient client = new POP3SSLClient("localhost", getPort(), useSSL);
+        if (useSSL) {
+            client.setTLSConfig(new TLSConfig(createClientContext()));
+        }
+        return client;
+    }
+
+    private void acceptLoop(ServerSocket listener) {
+        while (!listener.isClosed()) {
+            try {
+                Socket socket = listener.accept();
+                connectionCount.incrementAndGet();
+                sessions.add(socket);
+                executor.execute(() -> {
+                    try {
+                        new Session(socket).run();
+                    } catch (IOException e) {
+                        // 客户端断开或超时，结束会话
+                    } finally {
+                        sessions.remove(socket);
+                        closeQuietly(socket);
+                    }
+                });
+            } catch (IOException e) {
+                if (!listener.isClosed()) {
+                    System.err.println("模拟服务器接受连接失败: " + e.getMessage());
+                }
+            }
+        }
+    }
+
+    /**
+     * 一个客户端会话
+     */
+    private class Session {
+        private final Socket socket;
+        private final InputStream in;
+        private final OutputStream out;
+        private final byte[] lineBuffer = new byte[1024];
+        private boolean authenticated;
+        private String pendingUser;           // USER命令给出的用户名
+        private int[] numbers;                // 本会话的邮件序号 -> 邮箱中的序号，登录时确定
+        private BitSet deleted;               // 本会话标记删除的邮件（下标为本会话序号-1）
+
+        Session(Socket socket) throws IOException {
+            this.socket = socket;
+            this.in = new BufferedInputStream(socket.getInputStream(), 16 * 1024);
+            this.out = new BufferedOutputStream(socket.getOutputStream(), 64 * 1024);
+        }
+
+        void run() throws IOException {
+            socket.setTcpNoDelay(true);
+            reply("+OK mock POP3 server ready");
+            out.flush();
+
+            String line;
+            while ((line = readLine()) != null) {
+                commandCount.incrementAndGet();
+                if (!handle(line)) {
+                    out.flush();
+                    return;
+                }
+                // 流水线中后续命令已经到达时先处理它们，读空后再一次性发送响应
+                if (in.available() == 0) {
+                    out.flush();
+                }
+            }
+        }
+
+        /**
+         * 处理一条命令
+         * @return 会话是否继续
+         */
+        private boolean handle(String line) throws IOException {
+            String[] parts = line.trim().split(" +");
+            String verb = parts[0].toUpperCase();
+            delay();
+
+            switch (verb) {
+                case "CAPA":
+                    reply("+OK capability list follows");
+                    reply("USER");
+                    reply("UIDL");
+                    reply("TOP");
+                    if (pipelining) {
+                        reply("PIPELINING");
+                    }
+                    reply("RESP-CODES");
+                    reply("IMPLEMENTATION mock");
+                    out.write(TERMINATOR);
+                    return true;
+                case "QUIT":
+                    if (authenticated) {
+                        commitDeletes();
+                    }
+                    reply("+OK bye");
+                    return false;
+                case "NOOP":
+                    reply(authenticated ? "+OK" : "-ERR not authenticated");
+                    return true;
+                default:
+                    break;
+            }
+
+            if (!authenticated) {
+                if (verb.equals("USER") && parts.length >= 2) {
+                    pendingUser = parts[1];
+                    reply("+OK");
+                } else if (verb.equals("PASS") && pendingUser != null) {
+                    String pass = line.trim().length() > 5 ? line.trim().substring(5) : "";
+                    if (pendingUser.equals(username) && pass.equals(password)) {
+                        login();
+                        reply("+OK " + numbers.length + " messages");
+                    } else {
+                        pendingUser = null;
+                        reply("-ERR [AUTH] invalid username or password");
+                    }
+                } else {
+                    reply("-ERR command not valid in this state");
+                }
+                return true;
+            }
+
+            switch (verb) {
+                case "STAT": {
+                    long size = 0;
+                    int count = 0;
+                    for (int i = 1; i <= numbers.length; i++) {
+                        if (!deleted.get(i - 1)) {
+                            count++;
+                            size += mailbox.getSize(numbers[i - 1]);
+                        }
+                    }
+                    reply("+OK " + count + " " + size);
+                    break;
+                }
+                case "LIST":
+                case "UIDL": {
+                    boolean list = verb.equals("LIST");
+                    if (parts.length >= 2) {
+                        int n = messageNumber(parts[1]);
+                        if (n > 0) {
+                            reply("+OK " + n + " " + (list ? mailbox.getSize(numbers[n - 1]) : mailbox.getUid(numbers[n - 1])));
+                        }
+                        break;
+                    }
+                    reply("+OK");
+                    for (int i = 1; i <= numbers.length; i++) {
+                        if (!deleted.get(i - 1)) {
+                            reply(i + " " + (list ? mailbox.getSize(numbers[i - 1]) : mailbox.getUid(numbers[i - 1])));
+                        }
+                    }
+                    out.write(TERMINATOR);
+                    break;
+                }
+                case "RETR": {
+                    int n = parts.length >= 2 ? messageNumber(parts[1]) : -1;
+                    if (n > 0) {
+                        reply("+OK " + mailbox.getSize(numbers[n - 1]) + " octets");
+                        out.write(mailbox.getWireMessage(numbers[n - 1]));
+                        out.write(TERMINATOR);
+                    } else if (parts.length < 2) {
+                        reply("-ERR message number required");
+                    }
+                    break;
+                }
+                case "TOP": {
+                    int n = parts.length >= 3 ? messageNumber(parts[1]) : -1;
+                    if (n > 0) {
+                        int lines;
+                        try {
+                            lines = Integer.parseInt(parts[2]);
+                        } catch (NumberFormatException e) {
+                            reply("-ERR invalid line count");
+                            break;
+                        }
+                        reply("+OK");
+                        writeTop(mailbox.getWireMessage(numbers[n - 1]), lines);
+                        out.write(TERMINATOR);
+                    } else if (parts.length < 3) {
+                        reply("-ERR message number and line count required");
+                    }
+                    break;
+                }
+                case "DELE": {
+                    int n = parts.length >= 2 ? messageNumber(parts[1]) : -1;
+                    if (n > 0) {
+                        deleted.set(n - 1);
+                        reply("+OK message " + n + " deleted");
+                    } else if (parts.length < 2) {
+                        reply("-ERR message number required");
+                    }
+                    break;
+                }
+                case "RSET":
+                    deleted.clear();
+                    reply("+OK");
+                    break;
+                default:
+                    reply("-ERR unknown command");
+                    break;
+            }
+            return true;
+        }
+
+        /**
+         * 登录成功：以当前未被删除的邮件建立本会话的序号
+         */
+        private void login() {
+            synchronized (expunged) {
+                int[] live = new int[mailbox.getCount() - expunged.cardinality()];
+                int index = 0;
+                for (int i = 1; i <= mailbox.getCount(); i++) {
+                    if (!expunged.get(i - 1)) {
+                        live[index++] = i;
+                    }
+                }
+                numbers = live;
+            }
+            deleted = new BitSet(numbers.length);
+            authenticated = true;
+        }
+
+        private void commitDeletes() {
+            synchronized (expunged) {
+                for (int i = deleted.nextSetBit(0); i >= 0; i = deleted.nextSetBit(i + 1)) {
+                    expunged.set(numbers[i] - 1);
+                }
+            }
+        }
+
+        /**
+         * 解析邮件序号，无效或已删除时回复-ERR
+         * @return 本会话的序号，无效时返回-1
+         */
+        private int messageNumber(String value) throws IOException {
+            int n;
+            try {
+                n = Integer.parseInt(value);
+            } catch (NumberFormatException e) {
+                reply("-ERR invalid message number");
+                return -1;
+            }
+            if (n < 1 || n > numbers.length) {
+                reply("-ERR no such message");
+                return -1;
+            }
+            if (deleted.get(n - 1)) {
+                reply("-ERR message " + n + " already deleted");
+                return -1;
+            }
+            return n;
+        }
+
+        /**
+         * 写出邮件头和正文的前若干行
+         */
+        private void writeTop(byte[] wire, int bodyLines) throws IOException {
+            int pos = 0;
+            boolean inBody = false;
+            int written = 0;
+            while (pos < wire.length) {
+                int end = pos;
+                while (end < wire.length && wire[end] != '\n') {
+                    end++;
+                }
+                end = Math.min(end + 1, wire.length);
+                if (inBody) {
+                    if (written++ >= bodyLines) {
+                        break;
+                    }
+                } else if ((wire[pos] == '\r' && end - pos == 2) || wire[pos] == '\n') {
+                    inBody = true;  // 空行：邮件头结束
+                }
+                out.write(wire, pos, end - pos);
+                pos = end;
+            }
+        }
+
+        /**
+         * 读取一行命令（ASCII，去掉行结束符）
+         * @return 命令，连接关闭时返回null
+         */
+        private String readLine() throws IOException {
+            int length = 0;
+            int b;
+            while ((b = in.read()) != -1) {
+                if (b == '\n') {
+                    if (length > 0 && lineBuffer[length - 1] == '\r') {
+                        length--;
+                    }
+                    return new String(lineBuffer, 0, length, StandardCharsets.ISO_8859_1);
+                }
+                if (length < lineBuffer.length) {
+                    lineBuffer[length++] = (byte) b;
+                }
+            }
+            return null;
+        }
+
+        private void reply(String line) throws IOException {
+            out.write(line.getBytes(StandardCharsets.ISO_8859_1));
+            out.write(CRLF);
+        }
+
+        /**
+         * 注入延迟：先发出已缓冲的响应，再等待
+         */
+        private void delay() throws IOException {
+            if (latency <= 0 && jitter <= 0) {
+                return;
+            }
+            out.flush();
+            long millis = latency + (jitter > 0 ? ThreadLocalRandom.current().nextLong(jitter + 1) : 0);
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException();
+            }
+        }
+    }
+
+    /**
+     * 恢复被删除的邮件
+     */
+    public void reset() {
+        synchronized (expunged) {
+            expunged.clear();
+        }
+    }
+
+    /**
+     * 停止监听并关闭所有会话
+     */
+    @Override
+    public synchronized void close() {
+        if (serverSocket == null) {
+            return;
+        }
+        closeQuietly(serverSocket);
+        synchronized (sessions) {
+            for (Socket socket : sessions) {
+                closeQuietly(socket);
+            }
+        }
+        executor.shutdownNow();
+        serverSocket = null;
+    }
+
+    /**
+     * 设置接受的用户名和密码
+     * @param username 用户名
+     * @param password 密码
+     */
+    public void setCredentials(String username, String password) {
+        this.username = username;
+        this.password = password;
+    }
+
+    /**
+     * 设置每条响应的注入延迟
+     * @param latency 固定延迟（毫秒）
+     * @param jitter 随机附加延迟的上限（毫秒）
+     */
+    public void setLatency(long latency, long jitter) {
+        this.latency = latency;
+        this.jitter = jitter;
+    }
+
+    public void setPipelining(boolean pipelining) { this.pipelining = pipelining; }
+    public String getUsername() { return username; }
+    public String getPassword() { return password; }
+    public SyntheticMailbox getMailbox() { return mailbox; }
+    public boolean isUseSSL() { return useSSL; }
+    public long getConnectionCount() { return connectionCount.get(); }
+    public long getCommandCount() { return commandCount.get(); }
+
+    /**
+     * 获取监听端口
+     * @return 端口，未启动时返回-1
+     */
+    public synchronized int getPort() {
+        return serverSocket != null ? serverSocket.getLocalPort() : -1;
+    }
+
+    private static void closeQuietly(Closeable closeable) {
+        try {
+            closeable.close();
+        } catch (IOException e) {
+            // 静默处理关闭异常
+        }
+    }
+}
@@ -0,0 +1,129 @@
+package org.pop3;
+
+import org.junit.jupiter.api.AfterAll;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 客户端对模拟服务器的端到端测试
+ * 合成邮箱覆盖全部邮件结构，下载的字节必须与原始邮件一致，流式解析与按字节数组解析的结果必须一致
+ */
+class MockServerTest {
+    private static SyntheticMailbox mailbox;
+    private static MockPOP3Server server;
+
+    @BeforeAll
+    static void startServer() throws IOException {
+        mailbox = new SyntheticMailbox(7, 20);
+        server = new MockPOP3Server(mailbox, false).start();
+    }
+
+    @AfterAll
+    static void stopServer() {
+        server.close();
+    }
+
+    private static POP3SSLClient login() throws IOException {
+        POP3SSLClient client = server.createClient();
+        assertTrue(client.connect());
+        assertTrue(client.login(server.getUsername(), server.getPassword()));
+        return client;
+    }
+
+    @Test
+    void retrieveMatchesMailbox() throws IOException {
+        POP3SSLClient client = login();
+        try {
+            int[] stat = client.getMailboxStat();
+            assertEquals(mailbox.getCount(), stat[0]);
+            assertEquals(mailbox.getTotalSize(), stat[1]);
+
+            Map<Integer, String> uidl = client.getUidlList();
+            for (int n = 1; n <= mailbox.getCount(); n++) {
+                assertEquals(mailbox.getUid(n), uidl.get(n));
+                assertArrayEquals(mailbox.getMessage(n), client.retrieveMessageBytes(n), "message " + n);
+            }
+        } finally {
+            client.quit();
+        }
+    }
+
+    @Test
+    void streamReadByteAtATime() throws IOException {
+        POP3SSLClient client = login();
+        try {
+            for (int n = 1; n <= 3; n++) {
+                ByteArrayOutputStream out = new ByteArrayOutputStream();
+                try (InputStream in = client.retrieveMessageStream(n)) {
+                    int b;
+                    while ((b = in.read()) != -1) {
+                        out.write(b);
+                    }
+                }
+                assertArrayEquals(mailbox.getMessage(n), out.toByteArray(), "message " + n);
+            }
+            // 流读完后连接可以继续使用
+            assertEquals(mailbox.getCount(), client.getMailboxStat()[0]);
+        } finally {
+            client.quit();
+        }
+    }
+
+    @Test
+    void pipelinedBatch() throws IOException {
+        POP3SSLClient client = login();
+        try {
+            assertTrue(client.supportsPipelining());
+            List<String> commands = new ArrayList<>();
+            for (int n = 1; n <= mailbox.getCount(); n++) {
+                commands.add("RETR " + n);
+            }
+            long before = server.getCommandCount();
+            List<POP3Response> responses = client.executeBatch(commands);
+            assertEquals(commands.size(), server.getCommandCount() - before);
+            for (int n = 1; n <= mailbox.getCount(); n++) {
+                POP3Response response = responses.get(n - 1);
+                assertTrue(response.isOk());
+                assertArrayEquals(mailbox.getMessage(n), response.getData(), "message " + n);
+            }
+        } finally {
+            client.quit();
+        }
+    }
+
+    @Test
+    void streamedParseMatchesArrayParse() throws IOException {
+        for (int n = 1; n <= mailbox.getCount(); n++) {
+            byte[] raw = mailbox.getMessage(n);
+            EmailMessage fromBytes = new EmailMessage(n, raw);
+            EmailMessage fromString = new EmailMessage(n, new String(raw, java.nio.charset.StandardCharsets.ISO_8859_1));
+            assertEquals(fromBytes.getSubject(), fromString.getSubject(), "message " + n);
+            assertFalse(fromBytes.getSubject().contains("=?"), fromBytes.getSubject());
+
+            List<EmailMessage.EmailPart> parts = fromBytes.getParts();
+            if (mailbox.getShape(n) != SyntheticMailbox.Shape.PLAIN_TEXT
+                    && mailbox.getShape(n) != SyntheticMailbox.Shape.QUOTED_PRINTABLE) {
+                assertTrue(fromBytes.isMultipart(), "message " + n);
+                assertFalse(parts.isEmpty(), "message " + n);
+            }
+            if (mailbox.getShape(n) == SyntheticMailbox.Shape.ATTACHMENT
+                    || mailbox.getShape(n) == SyntheticMailbox.Shape.NESTED_MULTIPART) {
+                assertFalse(fromBytes.getAttachments().isEmpty(), "message " + n);
+                for (EmailMessage.EmailPart attachment : fromBytes.getAttachments()) {
+                    ByteArrayOutputStream out = new ByteArrayOutputStream();
+                    out.write(attachment.getDecodedBytes());
+                    assertTrue(out.size() > 0, attachment.getFileName());
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,77 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * POP3LineReader的测试：行切分、字节填充和行长度上限
+ */
+class POP3LineReaderTest {
+
+    private static POP3LineReader reader(String data, int bufferSize) {
+        return new POP3LineReader(new ByteArrayInputStream(data.getBytes(StandardCharsets.ISO_8859_1)), bufferSize);
+    }
+
+    @Test
+    void splitsCrlfAndLf() throws IOException {
+        POP3LineReader reader = reader("+OK ready\r\nline1\nline2\r\n.\r\n", 8);
+        assertEquals("+OK ready", reader.readLineAsString());
+        assertEquals(5, reader.readDataLine());
+        assertEquals("line1", reader.getLineAsString(StandardCharsets.ISO_8859_1));
+        assertEquals(5, reader.readDataLine());
+        assertEquals(-1, reader.readDataLine());
+        assertNull(reader.readLineAsString());
+    }
+
+    @Test
+    void removesDotStuffing() throws IOException {
+        POP3LineReader reader = reader("..hidden\r\n.\r\n", 64);
+        assertEquals(7, reader.readDataLine());
+        assertEquals(".hidden", reader.getLineAsString(StandardCharsets.ISO_8859_1));
+        assertEquals(-1, reader.readDataLine());
+    }
+
+    @Test
+    void longDataLineWithinLimit() throws IOException {
+        char[] filler = new char[200_000];
+        Arrays.fill(filler, 'x');
+        POP3LineReader reader = reader(new String(filler) + "\r\n.\r\n", 16);
+        assertEquals(filler.length, reader.readDataLine());
+        assertEquals(-1, reader.readDataLine());
+    }
+
+    @Test
+    void statusLineLimit() throws IOException {
+        char[] filler = new char[600];
+        Arrays.fill(filler, 'x');
+        POP3LineReader reader = reader("+OK " + new String(filler) + "\r\n", 64);
+        assertThrows(IOException.class, reader::readLineAsString);
+    }
+
+    @Test
+    void endlessLineFailsInsteadOfGrowing() {
+        // 永不换行的服务器：读取器必须在上限处失败，而不是耗尽内存
+        InputStream endless = new InputStream() {
+            @Override
+            public int read() {
+                return 'x';
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) {
+                Arrays.fill(b, off, off + len, (byte) 'x');
+                return len;
+            }
+        };
+        POP3LineReader reader = new POP3LineReader(endless, 1024);
+        assertThrows(IOException.class, reader::readDataLine);
+        assertTrue(reader.getBuffer().length <= 4 * 1024 * 1024 + 3);
+    }
+}
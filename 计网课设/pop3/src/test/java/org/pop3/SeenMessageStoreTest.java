@@ -0,0 +1,83 @@
+package org.pop3;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * 已下载邮件记录的测试：追加、重新加载、中途退出留下的不完整行和清理
+ */
+class SeenMessageStoreTest {
+
+    @Test
+    void persistsAcrossReopen(@TempDir File dir) throws IOException {
+        File file = new File(dir, "seen.uidl");
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            store.markSeen("a1");
+            store.markSeen("b2");
+            store.markSeen("a1");
+        }
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            assertEquals(2, store.size());
+            assertTrue(store.isSeen("a1"));
+            assertTrue(store.isSeen("b2"));
+        }
+    }
+
+    @Test
+    void incompleteLastLineIsDropped(@TempDir File dir) throws IOException {
+        // 写入"uid-3"时中途退出，只留下了"uid-"
+        File file = new File(dir, "seen.uidl");
+        Files.write(file.toPath(), "uid-1\nuid-2\nuid-".getBytes(StandardCharsets.UTF_8));
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            assertEquals(2, store.size());
+            assertFalse(store.isSeen("uid-"));
+            store.markSeen("uid-3");
+            store.markSeen("uid-4");
+        }
+        assertEquals("uid-1\nuid-2\nuid-3\nuid-4\n", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            assertEquals(4, store.size());
+            assertTrue(store.isSeen("uid-3"));
+        }
+    }
+
+    @Test
+    void retainOnlyPrunesMissing(@TempDir File dir) throws IOException {
+        File file = new File(dir, "seen.uidl");
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            store.markSeen("a");
+            store.markSeen("b");
+            store.markSeen("c");
+            store.retainOnly(Arrays.asList("b", "c", "d"));
+            assertFalse(store.isSeen("a"));
+            store.markSeen("e");
+        }
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            assertEquals(3, store.size());
+            assertTrue(store.isSeen("e"));
+        }
+    }
+
+    @Test
+    void emptyServerListKeepsRecords(@TempDir File dir) throws IOException {
+        File file = new File(dir, "seen.uidl");
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            store.markSeen("a");
+            store.markSeen("b");
+            store.retainOnly(Collections.emptyList());
+            assertEquals(2, store.size());
+        }
+        try (SeenMessageStore store = new SeenMessageStore(file)) {
+            assertEquals(2, store.size());
+        }
+    }
+}
@@ -0,0 +1,191 @@
+package org.pop3;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.security.*;
+import java.security.cert.Certificate;
+import java.security.cert.CertificateFactory;
+import java.security.cert.X509Certificate;
+import java.text.SimpleDateFormat;
+import java.util.Date;
+import java.util.TimeZone;
+
+/**
+ * 自签名证书
+ * 生成RSA密钥对，按DER编码手工构造X.509 v3证书（主题CN=localhost，SAN为localhost和127.0.0.1）
+ * 并用SHA256withRSA自签名。JDK没有公开的证书生成接口，这里只实现所需的少量ASN.1结构，
+ * 供模拟服务器提供TLS，客户端通过createClientContext()信任该证书。
+ */
+class SelfSignedCertificate {
+    private static final long VALIDITY = 10L * 365 * 24 * 60 * 60 * 1000; // 有效期：10年
+    private static final char[] KEY_PASSWORD = "mock".toCharArray();       // 内存密钥库的密码
+
+    private final KeyPair keyPair;
+    private final X509Certificate certificate;
+
+    /**
+     * 生成新的密钥对和证书
+     * @param commonName 证书主题的CN
+     * @throws GeneralSecurityException 生成或签名失败
+     */
+    SelfSignedCertificate(String commonName) throws GeneralSecurityException {
+        KeyPairGenerator generator = KeyPairGenerator.getInstance("RSA");
+        generator.initialize(2048);
+        keyPair = generator.generateKeyPair();
+
+        byte[] name = name(commonName);
+        long now = System.currentTimeMillis();
+        byte[] signatureAlgorithm = sequence(oid(1, 2, 840, 113549, 1, 1, 11), tlv(0x05)); // sha256WithRSAEncryption
+        byte[] tbs = sequence(
+                tlv(0xA0, integer(BigInteger.valueOf(2))),                                  // 版本：v3
+                integer(new BigInteger(64, new SecureRandom())),                             // 序列号
+                signatureAlgorithm,
+                name,                                                                        // 颁发者
+                sequence(utcTime(now - 60 * 60 * 1000), utcTime(now + VALIDITY)),            // 有效期
+                name,                                                                        // 主题
+                keyPair.getPublic().getEncoded(),                                            // SubjectPublicKeyInfo
+                tlv(0xA3, sequence(subjectAltName())));                                      // 扩展
+
+        Signature signer = Signature.getInstance("SHA256withRSA");
+        signer.initSign(keyPair.getPrivate());
+        signer.update(tbs);
+        byte[] der = sequence(tbs, signatureAlgorithm, bitString(signer.sign()));
+
+        CertificateFactory factory = CertificateFactory.getInstance("X.509");
+        certificate = (X509Certificate) factory.generateCertificate(new ByteArrayInputStream(der));
+        certificate.verify(keyPair.getPublic());
+    }
+
+    /**
+     * 创建服务端使用的SSL上下文
+     * @return 持有该证书和私钥的SSL上下文
+     * @throws GeneralSecurityException 初始化失败
+     */
+    SSLContext createServerContext() throws GeneralSecurityException {
+        KeyStore keyStore = emptyKeyStore();
+        keyStore.setKeyEntry("mock", keyPair.getPrivate(), KEY_PASSWORD, new Certificate[]{certificate});
+        KeyManagerFactory factory = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+        factory.init(keyStore, KEY_PASSWORD);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(factory.getKeyManagers(), null, null);
+        return context;
+    }
+
+    /**
+     * 创建客户端使用的SSL上下文
+     * @return 只信任该证书的SSL上下文
+     * @throws GeneralSecurityException 初始化失败
+     */
+    SSLContext createClientContext() throws GeneralSecurityException {
+        KeyStore trustStore = emptyKeyStore();
+        trustStore.setCertificateEntry("mock", certificate);
+        TrustManagerFactory factory = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+        factory.init(trustStore);
+        SSLContext context = SSLContext.getInstance("TLS");
+        context.init(null, factory.getTrustManagers(), null);
+        return context;
+    }
+
+    X509Certificate getCertificate() {
+        return certificate;
+    }
+
+    private static KeyStore emptyKeyStore() throws GeneralSecurityException {
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try {
+            keyStore.load(null, null);
+        } catch (IOException e) {
+            throw new KeyStoreException(e);
+        }
+        return keyStore;
+    }
+
+    /**
+     * Name ::= SEQUENCE { SET { SEQUENCE { OID(CN), UTF8String } } }
+     */
+    private static byte[] name(String commonName) {
+        byte[] cn = sequence(oid(2, 5, 4, 3), tlv(0x0C, commonName.getBytes(StandardCharsets.UTF_8)));
+        return sequence(tlv(0x31, cn));
+    }
+
+    /**
+     * subjectAltName扩展：DNS:localhost, IP:127.0.0.1
+     */
+    private static byte[] subjectAltName() {
+        byte[] names = sequence(
+                tlv(0x82, "localhost".getBytes(StandardCharsets.US_ASCII)),
+                tlv(0x87, new byte[]{127, 0, 0, 1}));
+        return sequence(oid(2, 5, 29, 17), tlv(0x04, names));
+    }
+
+    private static byte[] utcTime(long millis) {
+        SimpleDateFormat format = new SimpleDateFormat("yyMMddHHmmss'Z'");
+        format.setTimeZone(TimeZone.getTimeZone("UTC"));
+        return tlv(0x17, format.format(new Date(millis)).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] integer(BigInteger value) {
+        return tlv(0x02, value.toByteArray());
+    }
+
+    private static byte[] bitString(byte[] bits) {
+        byte[] content = new byte[bits.length + 1]; // 首字节为未使用的位数：0
+        System.arraycopy(bits, 0, content, 1, bits.length);
+        return tlv(0x03, content);
+    }
+
+    /**
+     * 编码对象标识符：前两段合并为一个字节，其余各段按7位一组、高位在前编码
+     */
+    private static byte[] oid(int... arcs) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        out.write(arcs[0] * 40 + arcs[1]);
+        for (int i = 2; i < arcs.length; i++) {
+            int arc = arcs[i];
+            int shift = 28;
+            while (shift > 0 && (arc >>> shift) == 0) {
+                shift -= 7;
+            }
+            for (; shift > 0; shift -= 7) {
+                out.write(0x80 | ((arc >>> shift) & 0x7F));
+            }
+            out.write(arc & 0x7F);
+        }
+        return tlv(0x06, out.toByteArray());
+    }
+
+    private static byte[] sequence(byte[]... elements) {
+        return tlv(0x30, elements);
+    }
+
+    /**
+     * 编码一个TLV：标签、长度（短格式或长格式）、内容
+     */
+    private static byte[] tlv(int tag, byte[]... contents) {
+        int length = 0;
+        for (byte[] content : contents) {
+            length += content.length;
+        }
+        ByteArrayOutputStream out = new ByteArrayOutputStream(length + 6);
+        out.write(tag);
+        if (length < 0x80) {
+            out.write(length);
+        } else {
+            int bytes = (32 - Integer.numberOfLeadingZeros(length) + 7) / 8;
+            out.write(0x80 | bytes);
+            for (int i = bytes - 1; i >= 0; i--) {
+                out.write(length >>> (8 * i));
+            }
+        }
+        for (byte[] content : contents) {
+            out.write(content, 0, content.length);
+        }
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,386 @@
+package org.pop3;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.text.SimpleDateFormat;
+import java.util.*;
+
+/**
+ * 合成邮箱
+ * 按随机种子确定性地生成一批MIME邮件，供模拟服务器和基准测试使用：同样的种子和参数总是得到逐字节相同的邮箱。
+ * 邮件大小服从对数正态分布（大多数邮件较小，少数带大附件），结构在纯文本、quoted-printable、
+ * multipart/alternative、base64附件和多层嵌套multipart之间轮换；主题和发件人混合使用
+ * GBK、GB2312、UTF-8编码字和纯ASCII，正文包含GBK 8bit、UTF-8 QP和base64等传输编码。
+ * 邮件在构造时全部生成并以CRLF分行保存，同时保存字节填充后的线路格式，RETR可以直接写出。
+ */
+public class SyntheticMailbox {
+    private static final int DEFAULT_MEDIAN_SIZE = 8 * 1024;   // 默认邮件大小中位数：8KB
+    private static final double DEFAULT_SPREAD = 1.0;          // 默认对数正态分布的σ
+    private static final int DEFAULT_MAX_SIZE = 1024 * 1024;   // 默认邮件大小上限：1MB
+    private static final int MIN_SIZE = 600;                   // 邮件大小下限（邮件头已占用约500字节）
+    private static final Charset GBK = Charset.forName("GBK");
+    private static final byte[] CRLF = {'\r', '\n'};
+
+    // 正文使用的中文短语和英文单词
+    private static final String[] CHINESE = {
+            "计算机网络", "课程设计", "邮件客户端", "实验报告", "请查收附件", "会议通知",
+            "期末考试安排", "项目进度", "下周一", "上午十点", "在线讨论", "谢谢！", "收到请回复。"
+    };
+    private static final String[] ENGLISH = {
+            "the", "quick", "brown", "fox", "jumps", "over", "lazy", "dog", "POP3", "mailbox",
+            "protocol", "message", "server", "client", "pipeline", "latency", "throughput"
+    };
+
+    /**
+     * 邮件结构
+     */
+    public enum Shape {
+        PLAIN_TEXT,         // text/plain; charset=GBK，8bit
+        QUOTED_PRINTABLE,   // text/plain; charset=UTF-8，quoted-printable
+        ALTERNATIVE,        // multipart/alternative：base64纯文本 + QP HTML
+        ATTACHMENT,         // multipart/mixed：正文 + base64附件
+        NESTED_MULTIPART    // multipart/mixed { multipart/related { multipart/alternative, 内嵌图片 }, 附件 }
+    }
+
+    private final long seed;
+    private final byte[][] messages;     // 各邮件的原始字节（CRLF分行）
+    private final byte[][] wireMessages; // 各邮件的线路格式（已做字节填充，不含结束行）
+    private final String[] uids;
+    private final Shape[] shapes;
+    private final long totalSize;
+
+    /**
+     * 构造函数，使用默认的大小分布（中位数8KB，上限1MB）和全部邮件结构
+     * @param seed 随机种子
+     * @param count 邮件数量
+     */
+    public SyntheticMailbox(long seed, int count) {
+        this(seed, count, DEFAULT_MEDIAN_SIZE, DEFAULT_SPREAD, DEFAULT_MAX_SIZE, Shape.values());
+    }
+
+    /**
+     * 构造函数
+     * @param seed 随机种子
+     * @param count 邮件数量
+     * @param medianSize 邮件大小的中位数（字节）
+     * @param spread 对数正态分布的σ，0表示所有邮件大小相同
+     * @param maxSize 邮件大小上限（字节）
+     * @param shapes 使用的邮件结构，按随机顺序出现
+     */
+    public SyntheticMailbox(long seed, int count, int medianSize, double spread, int maxSize, Shape... shapes) {
+        if (shapes.length == 0) {
+            throw new IllegalArgumentException("至少需要一种邮件结构");
+        }
+        this.seed = seed;
+        this.messages = new byte[count][];
+        this.wireMessages = new byte[count][];
+        this.uids = new String[count];
+        this.shapes = new Shape[count];
+
+        long total = 0;
+        for (int i = 0; i < count; i++) {
+            // 每封邮件使用独立的随机数序列，改变数量不影响已有邮件的内容
+            Random random = new Random(seed * 1_000_003L + i);
+            int target = (int) Math.min(maxSize, Math.max(MIN_SIZE,
+                    medianSize * Math.exp(spread * random.nextGaussian())));
+            this.shapes[i] = shapes[random.nextInt(shapes.length)];
+            this.uids[i] = String.format("%08x%08x", seed & 0xFFFFFFFFL, i);
+            this.messages[i] = new Generator(random, i + 1, target).generate(this.shapes[i]);
+            this.wireMessages[i] = dotStuff(this.messages[i]);
+            total += this.messages[i].length;
+        }
+        this.totalSize = total;
+    }
+
+    public long getSeed() { return seed; }
+    public int getCount() { return messages.length; }
+    public long getTotalSize() { return totalSize; }
+
+    /**
+     * 获取邮件原始字节
+     * @param number 邮件序号，从1开始
+     * @return 原始字节（CRLF分行），与LIST报告的大小一致
+     */
+    public byte[] getMessage(int number) { return messages[number - 1]; }
+
+    /**
+     * 获取邮件的线路格式：以"."开头的行已加倍，可直接作为RETR的数据部分发送
+     * @param number 邮件序号，从1开始
+     * @return 线路格式字节，最后一行以CRLF结尾，不含结束行
+     */
+    public byte[] getWireMessage(int number) { return wireMessages[number - 1]; }
+
+    public int getSize(int number) { return messages[number - 1].length; }
+    public String getUid(int number) { return uids[number - 1]; }
+    public Shape getShape(int number) { return shapes[number - 1]; }
+
+    /**
+     * 对以"."开头的行做字节填充（RFC 1939）
+     */
+    private static byte[] dotStuff(byte[] message) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(message.length + 16);
+        boolean lineStart = true;
+        for (byte b : message) {
+            if (lineStart && b == '.') {
+                out.write('.');
+            }
+            out.write(b);
+            lineStart = b == '\n';
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * 单封邮件的生成器
+     */
+    private static class Generator {
+        private final Random random;
+        private final int number;
+        private final int target;      // 目标大小（字节）
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int boundaryCount;
+
+        Generator(Random random, int number, int target) {
+            this.random = random;
+            this.number = number;
+            this.target = target;
+        }
+
+        byte[] generate(Shape shape) {
+            writeEnvelope();
+            switch (shape) {
+                case PLAIN_TEXT:
+                    line("Content-Type: text/plain; charset=GBK");
+                    line("Content-Transfer-Encoding: 8bit");
+                    line("");
+                    gbkText(remaining());
+                    break;
+                case QUOTED_PRINTABLE:
+                    line("Content-Type: text/plain; charset=UTF-8");
+                    line("Content-Transfer-Encoding: quoted-printable");
+                    line("");
+                    quotedPrintable(text(remaining() / 2).getBytes(StandardCharsets.UTF_8));
+                    break;
+                case ALTERNATIVE:
+                    alternative(newBoundary(), remaining());
+                    break;
+                case ATTACHMENT: {
+                    String boundary = newBoundary();
+                    line("Content-Type: multipart/mixed; boundary=\"" + boundary + "\"");
+                    line("");
+                    line("This is a multi-part message in MIME format.");
+                    line("--" + boundary);
+                    line("Content-Type: text/plain; charset=GBK");
+                    line("Content-Transfer-Encoding: base64");
+                    line("");
+                    base64(text(200).getBytes(GBK));
+                    line("--" + boundary);
+                    attachment("application/octet-stream", attachmentName(), remaining());
+                    line("--" + boundary + "--");
+                    break;
+                }
+                case NESTED_MULTIPART: {
+                    String mixed = newBoundary();
+                    String related = newBoundary();
+                    line("Content-Type: multipart/mixed; boundary=\"" + mixed + "\"");
+                    line("");
+                    line("--" + mixed);
+                    line("Content-Type: multipart/related; boundary=\"" + related + "\"; type=\"multipart/alternative\"");
+                    line("");
+                    line("--" + related);
+                    alternative(newBoundary(), 800);
+                    line("--" + related);
+                    line("Content-Type: image/png");
+                    line("Content-Transfer-Encoding: base64");
+                    line("Content-ID: <img" + number + "@mock>");
+                    line("Content-Disposition: inline");
+                    line("");
+                    base64(randomBytes(Math.max(64, remaining() / 8)));
+                    line("--" + related + "--");
+                    line("--" + mixed);
+                    attachment("application/pdf", attachmentName(), remaining());
+                    line("--" + mixed + "--");
+                    break;
+                }
+            }
+            return out.toByteArray();
+        }
+
+        /**
+         * 通用邮件头
+         */
+        private void writeEnvelope() {
+            SimpleDateFormat format = new SimpleDateFormat("EEE, dd MMM yyyy HH:mm:ss Z", Locale.US);
+            format.setTimeZone(TimeZone.getTimeZone("GMT+8"));
+            long date = 1_700_000_000_000L + number * 60_000L;
+
+            line("Return-Path: <sender" + number % 17 + "@example.com>");
+            line("From: " + encodedWord(CHINESE[random.nextInt(CHINESE.length)]) + " <sender" + number % 17 + "@example.com>");
+            line("To: student@example.com");
+            line("Subject: " + subject());
+            line("Date: " + format.format(new Date(date)));
+            line("Message-ID: <" + number + "." + Long.toHexString(random.nextLong()) + "@mock.example.com>");
+            line("MIME-Version: 1.0");
+        }
+
+        /**
+         * 主题：纯ASCII、GBK的B编码、GB2312的B编码或UTF-8的Q编码
+         */
+        private String subject() {
+            String text = CHINESE[random.nextInt(CHINESE.length)] + " #" + number;
+            switch (random.nextInt(4)) {
+                case 0:
+                    return ENGLISH[random.nextInt(ENGLISH.length)] + " report #" + number;
+                case 1:
+                    return "=?GBK?B?" + Base64.getEncoder().encodeToString(text.getBytes(GBK)) + "?=";
+                case 2:
+                    return "=?gb2312?B?" + Base64.getEncoder().encodeToString(text.getBytes(GBK)) + "?=";
+                default:
+                    return "=?UTF-8?Q?" + qEncode(text.getBytes(StandardCharsets.UTF_8)) + "?=";
+            }
+        }
+
+        private String encodedWord(String text) {
+            return "=?GBK?B?" + Base64.getEncoder().encodeToString(text.getBytes(GBK)) + "?=";
+        }
+
+        private String attachmentName() {
+            String name = CHINESE[random.nextInt(CHINESE.length)] + number + ".dat";
+            return random.nextBoolean() ? "report" + number + ".dat" : encodedWord(name);
+        }
+
+        /**
+         * multipart/alternative：base64编码的UTF-8纯文本和QP编码的HTML
+         */
+        private void alternative(String boundary, int size) {
+            line("Content-Type: multipart/alternative; boundary=\"" + boundary + "\"");
+            line("");
+            line("--" + boundary);
+            line("Content-Type: text/plain; charset=UTF-8");
+            line("Content-Transfer-Encoding: base64");
+            line("");
+            String text = text(Math.max(100, size / 3));
+            base64(text.getBytes(StandardCharsets.UTF_8));
+            line("--" + boundary);
+            line("Content-Type: text/html; charset=UTF-8");
+            line("Content-Transfer-Encoding: quoted-printable");
+            line("");
+            quotedPrintable(("<html><body><p>" + text.replace("\n", "</p>\n<p>") + "</p></body></html>")
+                    .getBytes(StandardCharsets.UTF_8));
+            line("--" + boundary + "--");
+        }
+
+        private void attachment(String contentType, String fileName, int size) {
+            line("Content-Type: " + contentType + "; name=\"" + fileName + "\"");
+            line("Content-Transfer-Encoding: base64");
+            line("Content-Disposition: attachment; filename=\"" + fileName + "\"");
+            line("");
+            base64(randomBytes(Math.max(16, size * 3 / 4)));
+        }
+
+        /**
+         * GBK 8bit正文，按字节数填充
+         */
+        private void gbkText(int size) {
+            byte[] bytes = text(size).getBytes(GBK);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        /**
+         * 生成中英文混合的文本，每行约60个字符；偶尔以"."开头以覆盖字节填充
+         */
+        private String text(int size) {
+            StringBuilder sb = new StringBuilder(size + 80);
+            StringBuilder line = new StringBuilder();
+            while (sb.length() < size) {
+                if (line.length() == 0 && random.nextInt(40) == 0) {
+                    line.append('.');
+                }
+                line.append(random.nextInt(3) == 0 ? CHINESE[random.nextInt(CHINESE.length)]
+                        : ENGLISH[random.nextInt(ENGLISH.length)] + ' ');
+                if (line.length() >= 60) {
+                    sb.append(line).append("\r\n");
+                    line.setLength(0);
+                }
+            }
+            if (line.length() > 0) {
+                sb.append(line).append("\r\n");
+            }
+            return sb.toString();
+        }
+
+        /**
+         * base64编码，每行76个字符
+         */
+        private void base64(byte[] data) {
+            byte[] encoded = Base64.getMimeEncoder(76, CRLF).encode(data);
+            out.write(encoded, 0, encoded.length);
+            out.write(CRLF, 0, CRLF.length);
+        }
+
+        /**
+         * quoted-printable编码：可打印ASCII原样输出，其余字节编码为=XX，每行不超过76个字符
+         * 原文中的CRLF保留为硬换行
+         */
+        private void quotedPrintable(byte[] data) {
+            StringBuilder sb = new StringBuilder(data.length * 2);
+            int column = 0;
+            for (int i = 0; i < data.length; i++) {
+                int b = data[i] & 0xFF;
+                if (b == '\r' && i + 1 < data.length && data[i + 1] == '\n') {
+                    sb.append("\r\n");
+                    column = 0;
+                    i++;
+                    continue;
+                }
+                String token = (b >= 33 && b <= 126 && b != '=') || b == ' '
+                        ? String.valueOf((char) b) : String.format("=%02X", b);
+                if (column + token.length() > 75) {
+                    sb.append("=\r\n");  // 软换行
+                    column = 0;
+                }
+                sb.append(token);
+                column += token.length();
+            }
+            sb.append("\r\n");
+            byte[] bytes = sb.toString().getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+        }
+
+        private static String qEncode(byte[] data) {
+            StringBuilder sb = new StringBuilder();
+            for (byte value : data) {
+                int b = value & 0xFF;
+                if (b == ' ') {
+                    sb.append('_');
+                } else if (Character.isLetterOrDigit(b) && b < 128) {
+                    sb.append((char) b);
+                } else {
+                    sb.append(String.format("=%02X", b));
+                }
+            }
+            return sb.toString();
+        }
+
+        private byte[] randomBytes(int size) {
+            byte[] bytes = new byte[size];
+            random.nextBytes(bytes);
+            return bytes;
+        }
+
+        private String newBoundary() {
+            return "----=_Part_" + number + "_" + (boundaryCount++) + "_" + Integer.toHexString(random.nextInt());
+        }
+
+        private int remaining() {
+            return Math.max(64, target - out.size());
+        }
+
+        private void line(String line) {
+            byte[] bytes = line.getBytes(StandardCharsets.US_ASCII);
+            out.write(bytes, 0, bytes.length);
+            out.write(CRLF, 0, CRLF.length);
+        }
+    }
+}